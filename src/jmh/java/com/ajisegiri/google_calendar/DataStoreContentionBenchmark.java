@@ -0,0 +1,84 @@
+package com.ajisegiri.google_calendar;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.DataStoreFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Credential store access under contention, as seen by concurrent requests loading credentials while
+ * token refreshes write them back: seven reader threads per writer thread over 10k users. The encrypted
+ * log store is measured with its fsync per write batch, so its writer numbers reflect the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataStoreContentionBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"memory", "encrypted-log"})
+    public String store;
+
+    private Path directory;
+    private DataStore<StoredCredential> dataStore;
+
+    @Setup
+    public void setUp() throws IOException {
+        DataStoreFactory factory;
+        if ("memory".equals(store)) {
+            factory = new InMemoryDataStoreFactory();
+        } else {
+            directory = Files.createTempDirectory("credential-store-bench");
+            factory = new EncryptedLogDataStoreFactory(directory, new byte[32], USERS);
+        }
+        dataStore = StoredCredential.getDefaultDataStore(factory);
+        for (int i = 0; i < USERS; i++) {
+            dataStore.set("user" + i, credential(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(7)
+    public StoredCredential read() throws IOException {
+        return dataStore.get("user" + ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public DataStore<StoredCredential> write() throws IOException {
+        int user = ThreadLocalRandom.current().nextInt(USERS);
+        return dataStore.set("user" + user, credential(user));
+    }
+
+    private static StoredCredential credential(int user) {
+        return new StoredCredential()
+                .setAccessToken("ya29.a0AfH6SMC" + user + "x".repeat(150))
+                .setRefreshToken("1//0gLx" + user + "y".repeat(90))
+                .setExpirationTimeMilliseconds(System.currentTimeMillis() + 3_600_000L);
+    }
+}
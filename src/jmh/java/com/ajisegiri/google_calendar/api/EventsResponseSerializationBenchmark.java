@@ -0,0 +1,62 @@
+package com.ajisegiri.google_calendar.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventAttendee;
+import com.google.api.services.calendar.model.EventDateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of EventsResponse, as returned by the /calendar/events endpoints, with large
+ * pages of Google events. The mapper is configured like the application's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventsResponseSerializationBenchmark {
+
+    @Param({"100", "1000", "2500"})
+    public int events;
+
+    private ObjectMapper objectMapper;
+    private EventsResponse response;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+
+        List<Event> items = new ArrayList<>(events);
+        long start = 1742810400000L;
+        for (int i = 0; i < events; i++) {
+            items.add(new Event()
+                    .setId("evt" + i)
+                    .setStatus("confirmed")
+                    .setSummary("Weekly sync " + i)
+                    .setDescription("Agenda: status, blockers, next steps")
+                    .setLocation("Online")
+                    .setHtmlLink("https://www.google.com/calendar/event?eid=ZXZ0" + i)
+                    .setStart(new EventDateTime().setDateTime(new DateTime(start + i * 3_600_000L)).setTimeZone("Europe/London"))
+                    .setEnd(new EventDateTime().setDateTime(new DateTime(start + i * 3_600_000L + 1_800_000L)).setTimeZone("Europe/London"))
+                    .setAttendees(List.of(
+                            new EventAttendee().setEmail("john@example.com").setResponseStatus("needsAction"),
+                            new EventAttendee().setEmail("mary@example.com").setResponseStatus("accepted")))
+                    .setHangoutLink("https://meet.google.com/abc-defg-hij"));
+        }
+        response = new EventsResponse(items, "CigKGjVvZnFvbmVhcHIwaXNqaG9r", null);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
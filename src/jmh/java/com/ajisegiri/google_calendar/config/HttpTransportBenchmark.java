@@ -0,0 +1,93 @@
+package com.ajisegiri.google_calendar.config;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request throughput of the pooled Apache transport against NetHttpTransport, both calling a local stub
+ * server that returns a small events().list-sized JSON body with a little simulated server latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(32)
+public class HttpTransportBenchmark {
+
+    private static final byte[] BODY = ("{\"kind\":\"calendar#events\",\"items\":[" +
+            "{\"id\":\"abc\",\"summary\":\"Standup\",\"start\":{\"dateTime\":\"2025-03-24T10:00:00Z\"}," +
+            "\"end\":{\"dateTime\":\"2025-03-24T10:15:00Z\"}}]}").getBytes(StandardCharsets.UTF_8);
+
+    @Param({"net", "apache"})
+    public String transport;
+
+    @Param({"0", "2"})
+    public int serverLatencyMillis;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private HttpTransport httpTransport;
+    private HttpRequestFactory requestFactory;
+    private GenericUrl url;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(serverExecutor);
+        server.createContext("/calendar/v3/calendars/primary/events", exchange -> {
+            if (serverLatencyMillis > 0) {
+                try {
+                    Thread.sleep(serverLatencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(BODY);
+            }
+        });
+        server.start();
+
+        httpTransport = "apache".equals(transport)
+                ? HttpTransportConfig.pooledTransport(200, 64, Duration.ofSeconds(5), Duration.ofSeconds(20), Duration.ofSeconds(60))
+                : new NetHttpTransport();
+        requestFactory = httpTransport.createRequestFactory();
+        url = new GenericUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/calendar/v3/calendars/primary/events");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        httpTransport.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public String listEvents() throws IOException {
+        HttpResponse response = requestFactory.buildGetRequest(url).execute();
+        try {
+            return response.parseAsString();
+        } finally {
+            response.disconnect();
+        }
+    }
+}
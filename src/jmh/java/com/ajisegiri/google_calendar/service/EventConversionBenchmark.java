@@ -0,0 +1,52 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.CalendarEventRequest;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request CPU cost of turning a tool's CalendarEventRequest into a Google Event: the local time and
+ * zone conversion to an RFC 3339 EventDateTime, and building the full event (create) or the patch (update).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventConversionBenchmark {
+
+    private CalendarEventRequest request;
+
+    @Setup
+    public void setUp() {
+        request = new CalendarEventRequest();
+        request.setSummary("Quarterly planning");
+        request.setDescription("Agenda: roadmap, staffing, risks");
+        request.setLocation("Online");
+        request.setStartDateTime("2025-03-24T10:00:00");
+        request.setEndDateTime("2025-03-24T11:30:00");
+        request.setTimeZone("Europe/London");
+        request.setAttendees(List.of("john@example.com", "mary@example.com", "ade@example.com"));
+        request.setOnlineMeeting(true);
+    }
+
+    @Benchmark
+    public EventDateTime toEventDateTime() {
+        return EventRequestMapper.toEventDateTime(request.getStartDateTime(), request.getTimeZone());
+    }
+
+    @Benchmark
+    public Event buildEvent() {
+        return EventRequestMapper.buildEvent(request);
+    }
+
+    @Benchmark
+    public Event buildPatch() {
+        return EventRequestMapper.buildPatch(request, false);
+    }
+}
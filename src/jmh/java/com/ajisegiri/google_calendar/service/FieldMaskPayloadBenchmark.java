@@ -0,0 +1,89 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.calendar.model.Events;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size and parse cost of an events().list page with and without the partial-response field mask.
+ * Bytes per page are reported as the "bytes" secondary metric; on the wire the saving also cuts
+ * transfer time in proportion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldMaskPayloadBenchmark {
+
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+    // A typical event as returned without a field mask
+    private static final String FULL_EVENT = """
+            {"kind":"calendar#event","etag":"\\"3391848290000000\\"","id":"evt%1$d","status":"confirmed",
+            "htmlLink":"https://www.google.com/calendar/event?eid=ZXZ0JTFkIGdyb3VwQGNhbGVuZGFy","created":"2025-03-20T09:12:45.000Z",
+            "updated":"2025-03-20T09:12:45.362Z","summary":"Weekly sync %1$d","description":"Agenda: status, blockers, next steps",
+            "location":"Online","creator":{"email":"owner@example.com","self":true},"organizer":{"email":"group@group.calendar.google.com",
+            "displayName":"Team calendar","self":true},"start":{"dateTime":"2025-03-24T10:00:00+01:00","timeZone":"Europe/London"},
+            "end":{"dateTime":"2025-03-24T11:00:00+01:00","timeZone":"Europe/London"},"iCalUID":"evt%1$d@google.com","sequence":0,
+            "attendees":[{"email":"john@example.com","responseStatus":"needsAction"},{"email":"mary@example.com","responseStatus":"accepted"}],
+            "hangoutLink":"https://meet.google.com/abc-defg-hij","conferenceData":{"createRequest":{"requestId":"meet-1742461965000",
+            "conferenceSolutionKey":{"type":"hangoutsMeet"},"status":{"statusCode":"success"}},"entryPoints":[{"entryPointType":"video",
+            "uri":"https://meet.google.com/abc-defg-hij","label":"meet.google.com/abc-defg-hij"},{"entryPointType":"more",
+            "uri":"https://tel.meet/abc-defg-hij?pin=123","pin":"123"},{"entryPointType":"phone","uri":"tel:+44-20-3937-0000",
+            "label":"+44 20 3937 0000","pin":"123456789","regionCode":"GB"}],"conferenceSolution":{"key":{"type":"hangoutsMeet"},
+            "name":"Google Meet","iconUri":"https://fonts.gstatic.com/s/i/productlogos/meet_2020q4/v6/web-512dp/logo_meet_2020q4_color_2x_web_512dp.png"},
+            "conferenceId":"abc-defg-hij"},"reminders":{"useDefault":true},"eventType":"default"}""";
+
+    // The same event restricted to CalendarFieldMasks.DEFAULT_EVENT_FIELDS
+    private static final String MASKED_EVENT = """
+            {"id":"evt%1$d","status":"confirmed","htmlLink":"https://www.google.com/calendar/event?eid=ZXZ0JTFkIGdyb3VwQGNhbGVuZGFy",
+            "updated":"2025-03-20T09:12:45.362Z","summary":"Weekly sync %1$d","description":"Agenda: status, blockers, next steps",
+            "location":"Online","organizer":{"email":"group@group.calendar.google.com","displayName":"Team calendar"},
+            "start":{"dateTime":"2025-03-24T10:00:00+01:00","timeZone":"Europe/London"},
+            "end":{"dateTime":"2025-03-24T11:00:00+01:00","timeZone":"Europe/London"},"iCalUID":"evt%1$d@google.com",
+            "attendees":[{"email":"john@example.com","responseStatus":"needsAction"},{"email":"mary@example.com","responseStatus":"accepted"}],
+            "hangoutLink":"https://meet.google.com/abc-defg-hij","conferenceData":{"entryPoints":[{"entryPointType":"video",
+            "uri":"https://meet.google.com/abc-defg-hij"},{"entryPointType":"more","uri":"https://tel.meet/abc-defg-hij?pin=123"},
+            {"entryPointType":"phone","uri":"tel:+44-20-3937-0000"}],"conferenceId":"abc-defg-hij"}}""";
+
+    @Param({"full", "masked"})
+    public String payload;
+
+    @Param({"250"})
+    public int eventsPerPage;
+
+    private byte[] page;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Setup
+    public void setUp() {
+        String template = "full".equals(payload) ? FULL_EVENT : MASKED_EVENT;
+        StringBuilder json = new StringBuilder("{\"kind\":\"calendar#events\",\"items\":[");
+        for (int i = 0; i < eventsPerPage; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(template, i).replace("\n", ""));
+        }
+        json.append("],\"nextPageToken\":\"CigKGjVvZnFvbmVhcHIwaXNqaG9r\"}");
+        page = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Events parsePage(Bytes counter) throws IOException {
+        counter.bytes += page.length;
+        return JSON_FACTORY.fromString(new String(page, StandardCharsets.UTF_8), Events.class);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Week-window overlap queries against the interval index versus the linear scan plus sort it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class IntervalIndexBenchmark {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long WEEK = TimeUnit.DAYS.toMillis(7);
+
+    @Param({"10000", "100000", "1000000"})
+    public int events;
+
+    private List<Interval> intervals;
+    private IntervalIndex<Interval> index;
+    private long[] windowStarts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        // Spread the events over ten years, mostly 30-120 minute meetings with the odd multi-day event
+        long horizon = 520 * WEEK;
+        intervals = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            long start = random.nextLong(horizon);
+            long duration = random.nextInt(100) == 0 ? random.nextLong(72 * HOUR) : (1 + random.nextInt(4)) * HOUR / 2;
+            intervals.add(new Interval(i, start, start + duration));
+        }
+        index = IntervalIndex.build(intervals, Interval::start, Interval::end, Comparator.comparingInt(Interval::id));
+
+        windowStarts = new long[1024];
+        for (int i = 0; i < windowStarts.length; i++) {
+            windowStarts[i] = random.nextLong(horizon - WEEK);
+        }
+    }
+
+    @Benchmark
+    public void indexOverlap(Blackhole blackhole) {
+        long from = nextWindow();
+        blackhole.consume(index.overlapping(from, from + WEEK));
+    }
+
+    @Benchmark
+    public void linearScanOverlap(Blackhole blackhole) {
+        long from = nextWindow();
+        long to = from + WEEK;
+        blackhole.consume(intervals.stream()
+                .filter(interval -> interval.start() < to && interval.end() > from)
+                .sorted(Comparator.comparingLong(Interval::start).thenComparingInt(Interval::id))
+                .toList());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public IntervalIndex<Interval> build() {
+        return IntervalIndex.build(intervals, Interval::start, Interval::end, Comparator.comparingInt(Interval::id));
+    }
+
+    private long nextWindow() {
+        return windowStarts[next++ & (windowStarts.length - 1)];
+    }
+
+    public record Interval(int id, long start, long end) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.CalendarEventRequest;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Argument handling on every tool call: the LocalDateTime.parse done by CalendarTools for date ranges,
+ * and binding a model-produced JSON argument object to CalendarEventRequest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ToolArgumentParsingBenchmark {
+
+    private static final String START = "2025-03-24T00:00:00";
+    private static final String END = "2025-03-30T23:59:59";
+    private static final String CREATE_ARGUMENTS = """
+            {"summary":"Quarterly planning","description":"Agenda: roadmap, staffing, risks","location":"Online",
+            "startDateTime":"2025-03-24T10:00:00","endDateTime":"2025-03-24T11:30:00","timeZoneInIANA":"Europe/London",
+            "attendees":["john@example.com","mary@example.com"],"isOnlineMeeting":true}""";
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Benchmark
+    public LocalDateTime[] parseDateRange() {
+        return new LocalDateTime[]{LocalDateTime.parse(START), LocalDateTime.parse(END)};
+    }
+
+    @Benchmark
+    public CalendarEventRequest bindEventRequest() throws Exception {
+        return objectMapper.readValue(CREATE_ARGUMENTS, CalendarEventRequest.class);
+    }
+}
@@ -0,0 +1,465 @@
+package com.ajisegiri.google_calendar.loadtest;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.CalendarList;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Channel;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventAttendee;
+import com.google.api.services.calendar.model.EventDateTime;
+import com.google.api.services.calendar.model.Events;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the Google Calendar REST API and OAuth token endpoint, for load tests that must not
+ * spend Google quota. It implements what the application uses: calendarList list and get, events list (time
+ * window, q, page and sync tokens), get, insert, patch, update, delete, multipart batch requests,
+ * events.watch / channels.stop and token refresh. Every HTTP request (a batch counts once) is delayed by
+ * the configured latency. Calendars are seeded with events around the current date on first use.
+ * <p>
+ * Watch channels get push notifications like Google's: a {@code sync} message when opened, then an
+ * {@code exists} message after every change. {@code POST /fake/calendars/{id}/external-edit} changes a
+ * random event as another client would, to exercise notification-driven refreshes.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class FakeGoogleCalendarServer implements InitializingBean, DisposableBean {
+
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private static final String API_PREFIX = "/calendar/v3/";
+    private static final String BATCH_PATH = "/batch/calendar/v3";
+    private static final String BOUNDARY = "batch_fake_google";
+    private static final String[] TITLES = {"Standup", "Design review", "1:1 with Mary", "Sprint planning", "Customer call",
+            "Lunch and learn", "Quarterly planning", "Interview", "Architecture sync", "Retro"};
+
+    private final int port;
+    private final Duration latency;
+    private final int seedEvents;
+    private final Map<String, FakeCalendar> calendars = new ConcurrentHashMap<>();
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+    private final HttpClient notificationClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final Random editRandom = new Random();
+    private HttpServer server;
+
+    public FakeGoogleCalendarServer(@Value("${loadtest.google.port:8089}") int port,
+                                    @Value("${loadtest.google.latency:30ms}") Duration latency,
+                                    @Value("${loadtest.google.seed-events:500}") int seedEvents) {
+        this.port = port;
+        this.latency = latency;
+        this.seedEvents = seedEvents;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::serve);
+        server.start();
+        log.info("Fake Google Calendar API listening on http://localhost:{}/ ({} latency)", port, latency);
+    }
+
+    @Override
+    public void destroy() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sleep(latency);
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String target = exchange.getRequestURI().toString();
+            Response response;
+            if (exchange.getRequestURI().getPath().equals(BATCH_PATH)) {
+                response = batch(exchange.getRequestHeaders().getFirst("Content-Type"), body);
+            } else {
+                response = handle(exchange.getRequestMethod(), target, new String(body, StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().set("Content-Type", response.contentType());
+            byte[] bytes = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(response.status(), bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Fake Google server failed on {}", exchange.getRequestURI(), e);
+        }
+    }
+
+    private Response handle(String method, String target, String body) throws IOException {
+        URI uri = URI.create(target);
+        String path = uri.getRawPath();
+        Map<String, String> query = parseQuery(uri.getRawQuery());
+
+        if (path.equals("/token")) {
+            return json(200, "{\"access_token\":\"fake-access-" + UUID.randomUUID() + "\",\"expires_in\":3600,\"token_type\":\"Bearer\"}");
+        }
+        if (path.startsWith("/fake/calendars/") && path.endsWith("/external-edit") && method.equals("POST")) {
+            String calendarId = decode(path.substring("/fake/calendars/".length(), path.length() - "/external-edit".length()));
+            return externalEdit(calendarId);
+        }
+        if (!path.startsWith(API_PREFIX)) {
+            return error(404, "notFound", "No such endpoint " + path);
+        }
+        String[] segments = path.substring(API_PREFIX.length()).split("/");
+        if (segments.length == 2 && segments[0].equals("channels") && segments[1].equals("stop") && method.equals("POST")) {
+            watches.remove(JSON_FACTORY.fromString(body, Channel.class).getId());
+            return new Response(204, "application/json", "");
+        }
+        if (segments.length == 3 && segments[0].equals("users") && segments[2].equals("calendarList")) {
+            return json(200, JSON_FACTORY.toString(new CalendarList().setItems(List.of(
+                    new CalendarListEntry().setId("primary").setSummary("Load test calendar").setAccessRole("owner")))));
+        }
+        if (segments.length == 4 && segments[0].equals("users") && segments[2].equals("calendarList")) {
+            return json(200, JSON_FACTORY.toString(new CalendarListEntry().setId(decode(segments[3])).setAccessRole("owner")));
+        }
+        if (segments.length < 3 || !segments[0].equals("calendars") || !segments[2].equals("events")) {
+            return error(404, "notFound", "No such endpoint " + path);
+        }
+
+        String calendarId = decode(segments[1]);
+        FakeCalendar calendar = calendars.computeIfAbsent(calendarId, id -> new FakeCalendar(seedEvents));
+        if (segments.length == 3) {
+            return switch (method) {
+                case "GET" -> json(200, JSON_FACTORY.toString(calendar.list(query)));
+                case "POST" -> {
+                    Event inserted = calendar.insert(JSON_FACTORY.fromString(body, Event.class));
+                    notifyWatches(calendarId);
+                    yield json(200, JSON_FACTORY.toString(inserted));
+                }
+                default -> error(405, "methodNotAllowed", method);
+            };
+        }
+        if (segments.length == 4 && segments[3].equals("watch") && method.equals("POST")) {
+            return json(200, JSON_FACTORY.toString(watch(calendarId, JSON_FACTORY.fromString(body, Channel.class))));
+        }
+
+        String eventId = decode(segments[3]);
+        Event event = switch (method) {
+            case "GET" -> calendar.get(eventId);
+            case "PATCH" -> calendar.patch(eventId, JSON_FACTORY.fromString(body, Event.class));
+            case "PUT" -> calendar.replace(eventId, JSON_FACTORY.fromString(body, Event.class));
+            case "DELETE" -> calendar.delete(eventId);
+            default -> null;
+        };
+        if (event == null) {
+            return error(404, "notFound", "Not Found");
+        }
+        if (!method.equals("GET")) {
+            notifyWatches(calendarId);
+        }
+        return method.equals("DELETE") ? new Response(204, "application/json", "") : json(200, JSON_FACTORY.toString(event));
+    }
+
+    private Channel watch(String calendarId, Channel request) {
+        long ttlSeconds = request.getParams() != null && request.getParams().containsKey("ttl")
+                ? Long.parseLong(request.getParams().get("ttl")) : Duration.ofDays(7).toSeconds();
+        Channel channel = new Channel()
+                .setKind("api#channel")
+                .setId(request.getId())
+                .setResourceId("resource-" + UUID.nameUUIDFromBytes(calendarId.getBytes(StandardCharsets.UTF_8)))
+                .setResourceUri("http://localhost:" + port + API_PREFIX + "calendars/" + calendarId + "/events")
+                .setToken(request.getToken())
+                .setExpiration(System.currentTimeMillis() + ttlSeconds * 1000);
+        Watch watch = new Watch(calendarId, request.getAddress(), channel, new AtomicLong());
+        watches.put(channel.getId(), watch);
+        sendNotification(watch, "sync");
+        return channel;
+    }
+
+    private Response externalEdit(String calendarId) throws IOException {
+        FakeCalendar calendar = calendars.computeIfAbsent(calendarId, id -> new FakeCalendar(seedEvents));
+        Event edited = calendar.editRandom(editRandom);
+        if (edited == null) {
+            return error(404, "notFound", "No events in " + calendarId);
+        }
+        notifyWatches(calendarId);
+        return json(200, JSON_FACTORY.toString(edited));
+    }
+
+    private void notifyWatches(String calendarId) {
+        for (Watch watch : watches.values()) {
+            if (watch.calendarId().equals(calendarId)) {
+                sendNotification(watch, "exists");
+            }
+        }
+    }
+
+    /**
+     * Post a header-only notification to the channel's address, as Google does. Failures are ignored.
+     */
+    private void sendNotification(Watch watch, String resourceState) {
+        Channel channel = watch.channel();
+        if (channel.getExpiration() < System.currentTimeMillis()) {
+            watches.remove(channel.getId());
+            return;
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(watch.address()))
+                .timeout(Duration.ofSeconds(5))
+                .header("X-Goog-Channel-ID", channel.getId())
+                .header("X-Goog-Channel-Expiration", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        Instant.ofEpochMilli(channel.getExpiration()).atOffset(ZoneOffset.UTC)))
+                .header("X-Goog-Resource-ID", channel.getResourceId())
+                .header("X-Goog-Resource-URI", channel.getResourceUri())
+                .header("X-Goog-Resource-State", resourceState)
+                .header("X-Goog-Message-Number", String.valueOf(watch.messageNumber().incrementAndGet()))
+                .POST(HttpRequest.BodyPublishers.noBody());
+        if (channel.getToken() != null) {
+            request.header("X-Goog-Channel-Token", channel.getToken());
+        }
+        notificationClient.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    if (failure != null) {
+                        log.debug("Notification to {} failed: {}", watch.address(), failure.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Run each part of a multipart/mixed batch through {@link #handle} and answer in the same order.
+     */
+    private Response batch(String contentType, byte[] body) throws IOException {
+        String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length()).replace("\"", "");
+        String content = new String(body, StandardCharsets.UTF_8);
+        StringBuilder out = new StringBuilder();
+        int partNumber = 0;
+        for (String part : content.split("--" + Pattern.quote(boundary))) {
+            int embedded = part.indexOf("\r\n\r\n");
+            if (part.isBlank() || part.startsWith("--") || embedded < 0) {
+                continue;
+            }
+            String request = part.substring(embedded + 4);
+            int headersEnd = request.indexOf("\r\n\r\n");
+            String head = headersEnd >= 0 ? request.substring(0, headersEnd) : request.strip();
+            String requestBody = headersEnd >= 0 ? request.substring(headersEnd + 4).strip() : "";
+            String[] requestLine = head.lines().findFirst().orElse("").split(" ");
+            URI target = URI.create(requestLine[1]);
+            String pathAndQuery = target.getRawPath() + (target.getRawQuery() != null ? "?" + target.getRawQuery() : "");
+
+            Response response = handle(requestLine[0], pathAndQuery, requestBody);
+            partNumber++;
+            out.append("--").append(BOUNDARY).append("\r\n")
+                    .append("Content-Type: application/http\r\n")
+                    .append("Content-ID: response-").append(partNumber).append("\r\n\r\n")
+                    .append("HTTP/1.1 ").append(response.status()).append(response.status() < 300 ? " OK" : " Error").append("\r\n")
+                    .append("Content-Type: ").append(response.contentType()).append("\r\n")
+                    .append("Content-Length: ").append(response.body().getBytes(StandardCharsets.UTF_8).length).append("\r\n\r\n")
+                    .append(response.body()).append("\r\n");
+        }
+        out.append("--").append(BOUNDARY).append("--\r\n");
+        return new Response(200, "multipart/mixed; boundary=" + BOUNDARY, out.toString());
+    }
+
+    private static Response json(int status, String body) {
+        return new Response(status, "application/json; charset=UTF-8", body);
+    }
+
+    private static Response error(int status, String reason, String message) {
+        return json(status, "{\"error\":{\"code\":%d,\"message\":\"%s\",\"errors\":[{\"domain\":\"global\",\"reason\":\"%s\",\"message\":\"%s\"}]}}"
+                .formatted(status, message, reason, message));
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    query.put(decode(pair.substring(0, separator)), decode(pair.substring(separator + 1)));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Response(int status, String contentType, String body) {
+    }
+
+    private record Watch(String calendarId, String address, Channel channel, AtomicLong messageNumber) {
+    }
+
+    /**
+     * One calendar's events. Every change bumps a version; sync tokens are versions, so an incremental
+     * list returns the events (cancelled ones included) changed after the token's version.
+     */
+    private static class FakeCalendar {
+
+        private final Map<String, Event> events = new ConcurrentHashMap<>();
+        private final Map<String, Long> versions = new ConcurrentHashMap<>();
+        private final AtomicLong version = new AtomicLong();
+
+        FakeCalendar(int seedEvents) {
+            Random random = new Random(42);
+            long weekStart = System.currentTimeMillis() - Duration.ofDays(14).toMillis();
+            for (int i = 0; i < seedEvents; i++) {
+                long start = weekStart + Duration.ofDays(random.nextInt(42)).toMillis()
+                        + Duration.ofMinutes(30L * random.nextInt(20)).toMillis();
+                Event event = new Event()
+                        .setSummary(TITLES[i % TITLES.length] + " #" + i)
+                        .setDescription("Seeded event " + i)
+                        .setLocation(i % 3 == 0 ? "Online" : "Room " + (i % 7))
+                        .setStart(new EventDateTime().setDateTime(new DateTime(start)).setTimeZone("Europe/London"))
+                        .setEnd(new EventDateTime().setDateTime(new DateTime(start + Duration.ofMinutes(30 + 30L * (i % 3)).toMillis()))
+                                .setTimeZone("Europe/London"))
+                        .setAttendees(List.of(new EventAttendee().setEmail("user" + (i % 13) + "@example.com").setResponseStatus("accepted")));
+                insert(event);
+            }
+        }
+
+        synchronized Event insert(Event event) {
+            String id = UUID.randomUUID().toString().replace("-", "");
+            event.setId(id).setICalUID(id + "@google.com").setStatus("confirmed")
+                    .setHtmlLink("https://www.google.com/calendar/event?eid=" + id);
+            if (event.getConferenceData() != null) {
+                event.setHangoutLink("https://meet.google.com/" + id.substring(0, 10));
+            }
+            return store(event);
+        }
+
+        synchronized Event get(String eventId) {
+            Event event = events.get(eventId);
+            return event != null && !"cancelled".equals(event.getStatus()) ? event : null;
+        }
+
+        synchronized Event patch(String eventId, Event patch) {
+            Event current = get(eventId);
+            if (current == null) {
+                return null;
+            }
+            Event updated = current.clone();
+            patch.forEach(updated::set);
+            return store(updated);
+        }
+
+        synchronized Event replace(String eventId, Event replacement) {
+            Event current = get(eventId);
+            if (current == null) {
+                return null;
+            }
+            replacement.setId(eventId).setICalUID(current.getICalUID()).setStatus("confirmed").setHtmlLink(current.getHtmlLink());
+            return store(replacement);
+        }
+
+        synchronized Event editRandom(Random random) {
+            List<Event> live = events.values().stream().filter(event -> !"cancelled".equals(event.getStatus())).toList();
+            if (live.isEmpty()) {
+                return null;
+            }
+            Event current = live.get(random.nextInt(live.size()));
+            return store(current.clone().setDescription("Edited elsewhere at " + new DateTime(System.currentTimeMillis())));
+        }
+
+        synchronized Event delete(String eventId) {
+            Event current = get(eventId);
+            if (current == null) {
+                return null;
+            }
+            return store(current.clone().setStatus("cancelled"));
+        }
+
+        synchronized Events list(Map<String, String> query) {
+            String syncToken = query.get("syncToken");
+            long since = syncToken != null ? Long.parseLong(syncToken) : -1;
+            String q = query.containsKey("q") ? query.get("q").toLowerCase(Locale.ROOT) : null;
+            long timeMin = query.containsKey("timeMin") ? DateTime.parseRfc3339(query.get("timeMin")).getValue() : Long.MIN_VALUE;
+            long timeMax = query.containsKey("timeMax") ? DateTime.parseRfc3339(query.get("timeMax")).getValue() : Long.MAX_VALUE;
+
+            List<Event> matches = new ArrayList<>();
+            for (Event event : events.values()) {
+                boolean cancelled = "cancelled".equals(event.getStatus());
+                if (syncToken != null) {
+                    if (versions.get(event.getId()) > since) {
+                        matches.add(event);
+                    }
+                    continue;
+                }
+                if (cancelled) {
+                    continue;
+                }
+                long start = event.getStart().getDateTime().getValue();
+                long end = event.getEnd().getDateTime().getValue();
+                boolean inWindow = start < timeMax && end > timeMin;
+                boolean matchesQuery = q == null || (event.getSummary() + " " + event.getDescription()).toLowerCase(Locale.ROOT).contains(q);
+                if (inWindow && matchesQuery) {
+                    matches.add(event);
+                }
+            }
+            matches.sort(Comparator.comparingLong(event -> event.getStart() != null && event.getStart().getDateTime() != null
+                    ? event.getStart().getDateTime().getValue() : 0));
+
+            int offset = query.containsKey("pageToken") ? Integer.parseInt(query.get("pageToken")) : 0;
+            int pageSize = query.containsKey("maxResults") ? Integer.parseInt(query.get("maxResults")) : 250;
+            int to = Math.min(offset + pageSize, matches.size());
+            Events page = new Events().setItems(new ArrayList<>(matches.subList(Math.min(offset, to), to)));
+            if (to < matches.size()) {
+                page.setNextPageToken(String.valueOf(to));
+            } else {
+                page.setNextSyncToken(String.valueOf(version.get()));
+            }
+            return page;
+        }
+
+        private Event store(Event event) {
+            long next = version.incrementAndGet();
+            event.setUpdated(new DateTime(System.currentTimeMillis()));
+            events.put(event.getId(), event);
+            versions.put(event.getId(), next);
+            return event;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.ajisegiri.google_calendar.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load driver for a running server (see the loadTestServer task). For each concurrency
+ * level, that many virtual-thread clients repeatedly send a chat turn or an events read, with no think
+ * time, for the configured duration. Reports throughput and p50/p99 latency per endpoint; for chat it
+ * also reports time to first streamed token.
+ * <p>
+ * Settings are system properties: {@code loadtest.url} (default http://localhost:8080),
+ * {@code loadtest.concurrency} (comma-separated, default 1,4,16,64), {@code loadtest.duration} (seconds
+ * per level, default 30), {@code loadtest.chat-ratio} (share of chat requests, default 0.5) and
+ * {@code loadtest.output} (optional JSON results file).
+ */
+public final class LoadDriver {
+
+    private static final String[] CHAT_MESSAGES = {
+            "What meetings do I have this week?",
+            "search review",
+            "Please create a meeting with the design team",
+            "compare this week with next week",
+    };
+
+    private LoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("loadtest.url", "http://localhost:8080");
+        int[] levels = Arrays.stream(System.getProperty("loadtest.concurrency", "1,4,16,64").split(","))
+                .map(String::strip).mapToInt(Integer::parseInt).toArray();
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 30));
+        double chatRatio = Double.parseDouble(System.getProperty("loadtest.chat-ratio", "0.5"));
+        String output = System.getProperty("loadtest.output");
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        List<LevelResult> results = new ArrayList<>();
+        System.out.printf("%-6s %-7s %9s %9s %9s %9s %9s %7s%n",
+                "conc", "kind", "req/s", "p50 ms", "p99 ms", "ttft50", "ttft99", "errors");
+        for (int concurrency : levels) {
+            Stats chat = new Stats();
+            Stats events = new Stats();
+            runLevel(client, baseUrl, concurrency, duration, chatRatio, chat, events);
+            LevelResult chatResult = chat.summarize("chat", concurrency, duration);
+            LevelResult eventsResult = events.summarize("events", concurrency, duration);
+            results.add(chatResult);
+            results.add(eventsResult);
+            chatResult.print();
+            eventsResult.print();
+        }
+
+        if (output != null) {
+            Path path = Path.of(output);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, "[\n" + String.join(",\n", results.stream().map(LevelResult::toJson).toList()) + "\n]\n");
+            System.out.println("Results written to " + path.toAbsolutePath());
+        }
+    }
+
+    private static void runLevel(HttpClient client, String baseUrl, int concurrency, Duration duration,
+                                 double chatRatio, Stats chat, Stats events) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < concurrency; worker++) {
+                int workerId = worker;
+                workers.submit(() -> {
+                    String chatId = UUID.randomUUID().toString();
+                    long iteration = 0;
+                    while (System.nanoTime() < deadline) {
+                        // Deterministic mix so every level sees the same request blend
+                        boolean sendChat = ((iteration * 7919 + workerId) % 1000) < chatRatio * 1000;
+                        if (sendChat) {
+                            chat(client, baseUrl, chatId, CHAT_MESSAGES[(int) (iteration % CHAT_MESSAGES.length)], chat);
+                        } else {
+                            events(client, baseUrl, events);
+                        }
+                        iteration++;
+                    }
+                });
+            }
+        }
+    }
+
+    private static void chat(HttpClient client, String baseUrl, String chatId, String message, Stats stats) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/chat/" + chatId + "?userMessage="
+                        + URLEncoder.encode(message, StandardCharsets.UTF_8)))
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            long firstToken = -1;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (firstToken < 0 && line.startsWith("data:")) {
+                        firstToken = System.nanoTime() - start;
+                    }
+                }
+            }
+            stats.record(response.statusCode(), System.nanoTime() - start, firstToken);
+        } catch (IOException e) {
+            stats.recordError();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void events(HttpClient client, String baseUrl, Stats stats) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/calendar/events?pageSize=50"))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            stats.record(response.statusCode(), System.nanoTime() - start, -1);
+        } catch (IOException e) {
+            stats.recordError();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Stats {
+
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Long> firstTokens = new ConcurrentLinkedQueue<>();
+        private final AtomicLong errors = new AtomicLong();
+
+        void record(int status, long latencyNanos, long firstTokenNanos) {
+            if (status >= 400) {
+                errors.incrementAndGet();
+                return;
+            }
+            latencies.add(latencyNanos);
+            if (firstTokenNanos >= 0) {
+                firstTokens.add(firstTokenNanos);
+            }
+        }
+
+        void recordError() {
+            errors.incrementAndGet();
+        }
+
+        LevelResult summarize(String kind, int concurrency, Duration duration) {
+            long[] sortedLatencies = sorted(latencies);
+            long[] sortedFirstTokens = sorted(firstTokens);
+            return new LevelResult(kind, concurrency, sortedLatencies.length / (double) duration.toSeconds(),
+                    percentile(sortedLatencies, 0.50), percentile(sortedLatencies, 0.99),
+                    percentile(sortedFirstTokens, 0.50), percentile(sortedFirstTokens, 0.99), errors.get());
+        }
+
+        private static long[] sorted(ConcurrentLinkedQueue<Long> values) {
+            long[] array = values.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(array);
+            return array;
+        }
+
+        private static double percentile(long[] sortedNanos, double quantile) {
+            if (sortedNanos.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(quantile * sortedNanos.length) - 1);
+            return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+
+    private record LevelResult(String kind, int concurrency, double throughput, double p50Millis, double p99Millis,
+                               double ttftP50Millis, double ttftP99Millis, long errors) {
+
+        void print() {
+            System.out.printf(Locale.ROOT, "%-6d %-7s %9.1f %9.1f %9.1f %9.1f %9.1f %7d%n",
+                    concurrency, kind, throughput, p50Millis, p99Millis, ttftP50Millis, ttftP99Millis, errors);
+        }
+
+        String toJson() {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("kind", kind);
+            fields.put("concurrency", concurrency);
+            fields.put("throughput", throughput);
+            fields.put("p50Millis", p50Millis);
+            fields.put("p99Millis", p99Millis);
+            fields.put("ttftP50Millis", ttftP50Millis);
+            fields.put("ttftP99Millis", ttftP99Millis);
+            fields.put("errors", errors);
+            StringBuilder json = new StringBuilder("  {");
+            fields.forEach((name, value) -> {
+                if (json.length() > 3) {
+                    json.append(", ");
+                }
+                json.append('"').append(name).append("\": ");
+                if (value instanceof String text) {
+                    json.append('"').append(text).append('"');
+                } else if (value instanceof Double number && number.isNaN()) {
+                    json.append("null");
+                } else {
+                    json.append(value);
+                }
+            });
+            return json.append('}').toString();
+        }
+    }
+}
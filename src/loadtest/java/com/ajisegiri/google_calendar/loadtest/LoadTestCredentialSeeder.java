@@ -0,0 +1,40 @@
+package com.ajisegiri.google_calendar.loadtest;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Stores a credential for the load-test user so requests skip the OAuth consent flow. The fake server
+ * accepts any token and answers refreshes at its /token endpoint.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+@RequiredArgsConstructor
+public class LoadTestCredentialSeeder implements ApplicationRunner {
+
+    private final GoogleAuthorizationCodeFlow googleAuthorizationCodeFlow;
+
+    @Value("${calendar.user-id}")
+    private String userId;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        StoredCredential credential = new StoredCredential()
+                .setAccessToken("fake-access-token")
+                .setRefreshToken("fake-refresh-token")
+                .setExpirationTimeMilliseconds(System.currentTimeMillis() + Duration.ofHours(1).toMillis());
+        googleAuthorizationCodeFlow.getCredentialDataStore().set(userId, credential);
+        log.info("Seeded load-test credential for {}", userId);
+    }
+}
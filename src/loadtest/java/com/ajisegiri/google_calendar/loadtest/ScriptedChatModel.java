@@ -0,0 +1,164 @@
+package com.ajisegiri.google_calendar.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Deterministic stand-in for the OpenAI chat model. A user turn is answered with the tool calls a real model
+ * would typically make for it, executed through the application's {@link ToolCallingManager} so tool and
+ * Google API costs are real, followed by a reply streamed token by token at the configured pace:
+ * <ul>
+ *     <li>"search ..." searches the current week for the words after "search"</li>
+ *     <li>"create ..." / "schedule ..." creates a 30-minute event tomorrow</li>
+ *     <li>"compare ..." fetches this week and next week as parallel tool calls</li>
+ *     <li>anything else fetches the current week</li>
+ * </ul>
+ * Prompts that do not offer tools (e.g. memory summaries) get a short text reply without tool calls.
+ */
+@Slf4j
+@Primary
+@Component
+@Profile("loadtest")
+public class ScriptedChatModel implements ChatModel {
+
+    private final ToolCallingManager toolCallingManager;
+    private final Scheduler toolExecutionScheduler;
+    private final ObjectMapper objectMapper;
+    private final Duration toolCallLatency;
+    private final Duration firstTokenLatency;
+    private final Duration tokenLatency;
+    private final int replyTokens;
+    private final String userId;
+
+    public ScriptedChatModel(ToolCallingManager toolCallingManager,
+                             @Qualifier("toolExecutionScheduler") Scheduler toolExecutionScheduler,
+                             ObjectMapper objectMapper,
+                             @Value("${loadtest.model.tool-call-latency:400ms}") Duration toolCallLatency,
+                             @Value("${loadtest.model.first-token-latency:300ms}") Duration firstTokenLatency,
+                             @Value("${loadtest.model.token-latency:15ms}") Duration tokenLatency,
+                             @Value("${loadtest.model.reply-tokens:60}") int replyTokens,
+                             @Value("${calendar.user-id}") String userId) {
+        this.toolCallingManager = toolCallingManager;
+        this.toolExecutionScheduler = toolExecutionScheduler;
+        this.objectMapper = objectMapper;
+        this.toolCallLatency = toolCallLatency;
+        this.firstTokenLatency = firstTokenLatency;
+        this.tokenLatency = tokenLatency;
+        this.replyTokens = replyTokens;
+        this.userId = userId;
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        // Tool callbacks are only attached to prompts whose options support tool calling
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        sleep(firstTokenLatency);
+        return textResponse("Summary of the earlier conversation: the user asked about their calendar.");
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        Mono<Integer> toolResults = Mono.fromCallable(() -> runTools(prompt))
+                .subscribeOn(toolExecutionScheduler);
+        return toolResults.flatMapMany(results -> Flux.range(0, replyTokens)
+                .delayUntil(i -> Mono.delay(i == 0 ? firstTokenLatency : tokenLatency))
+                .map(i -> textResponse(i == 0 ? "Here is what I found (" + results + " tool results)." : " token" + i)));
+    }
+
+    /**
+     * Run the scripted tool calls for the last user message, if the prompt offers tools.
+     *
+     * @return the number of tool responses produced
+     */
+    private int runTools(Prompt prompt) throws JsonProcessingException {
+        List<Message> instructions = prompt.getInstructions();
+        if (instructions.isEmpty() || !(instructions.get(instructions.size() - 1) instanceof UserMessage userMessage)
+                || !(prompt.getOptions() instanceof ToolCallingChatOptions options) || options.getToolCallbacks().isEmpty()) {
+            return 0;
+        }
+        List<AssistantMessage.ToolCall> toolCalls = script(userMessage.getText());
+        sleep(toolCallLatency);
+        ChatResponse toolCallResponse = new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), toolCalls))));
+        ToolExecutionResult result = toolCallingManager.executeToolCalls(prompt, toolCallResponse);
+        return result.conversationHistory().size() - instructions.size() - 1;
+    }
+
+    private List<AssistantMessage.ToolCall> script(String text) throws JsonProcessingException {
+        String message = text == null ? "" : text.toLowerCase(Locale.ROOT);
+        LocalDate monday = LocalDate.now().with(DayOfWeek.MONDAY);
+        List<AssistantMessage.ToolCall> calls = new ArrayList<>();
+
+        if (message.contains("search")) {
+            String query = message.substring(message.indexOf("search") + "search".length()).strip();
+            calls.add(toolCall("searchEvents", Map.of("userId", userId, "query", query.isEmpty() ? "review" : query,
+                    "startDate", monday.atStartOfDay().toString(), "endDate", monday.plusDays(7).atStartOfDay().toString(),
+                    "pageSize", 100)));
+        } else if (message.contains("create") || message.contains("schedule")) {
+            var start = LocalDate.now().plusDays(1).atTime(10, 0);
+            calls.add(toolCall("createEvent", Map.of("userId", userId, "request", Map.of(
+                    "summary", "Load test meeting", "startDateTime", start.toString(),
+                    "endDateTime", start.plusMinutes(30).toString(), "timeZoneInIANA", "Europe/London",
+                    "isOnlineMeeting", false))));
+        } else if (message.contains("compare")) {
+            calls.add(weekCall(userId, monday));
+            calls.add(weekCall(userId, monday.plusWeeks(1)));
+        } else {
+            calls.add(weekCall(userId, monday));
+        }
+        return calls;
+    }
+
+    private AssistantMessage.ToolCall weekCall(String userId, LocalDate monday) throws JsonProcessingException {
+        return toolCall("getCalendarEvent", Map.of("userId", userId, "startDate", monday.atStartOfDay().toString(),
+                "endDate", monday.plusDays(7).atStartOfDay().toString(), "pageSize", 100));
+    }
+
+    private AssistantMessage.ToolCall toolCall(String name, Map<String, Object> arguments) throws JsonProcessingException {
+        return new AssistantMessage.ToolCall("call_" + UUID.randomUUID(), "function", name, objectMapper.writeValueAsString(arguments));
+    }
+
+    private static ChatResponse textResponse(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.ajisegiri.google_calendar;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.api.client.util.IOUtils;
+import com.google.api.client.util.store.AbstractDataStore;
+import com.google.api.client.util.store.AbstractDataStoreFactory;
+import com.google.api.client.util.store.DataStore;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * File-backed data stores for OAuth credentials, one append-only log per store id.
+ * <p>
+ * Each record is {@code [length][op][key id][iv][AES-GCM ciphertext of key and value]}. The key id is a
+ * truncated HMAC of the key, so opening a store only walks the record headers through a memory-mapped
+ * view to index key ids by file offset; nothing is decrypted or deserialized until a key is read, and
+ * decoded values are kept in a bounded cache. Writers append under a lock and then wait for an fsync,
+ * and one fsync covers every record appended before it (group commit). When superseded records take up
+ * more space than live ones the log is rewritten with only the live records.
+ */
+@Slf4j
+public class EncryptedLogDataStoreFactory extends AbstractDataStoreFactory {
+
+    private static final byte OP_SET = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_CLEAR = 3;
+    private static final int KEY_ID_BYTES = 16;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int HEADER_BYTES = 1 + KEY_ID_BYTES + IV_BYTES;
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Path directory;
+    private final SecretKeySpec encryptionKey;
+    private final SecretKeySpec indexKey;
+    private final int valueCacheSize;
+
+    /**
+     * @param masterKey 256-bit key; separate encryption and key-id keys are derived from it
+     */
+    public EncryptedLogDataStoreFactory(Path directory, byte[] masterKey, int valueCacheSize) throws IOException {
+        if (masterKey.length != 32) {
+            throw new IllegalArgumentException("Credential store key must be 256 bits, got " + masterKey.length * 8);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.encryptionKey = new SecretKeySpec(derive(masterKey, "encryption"), "AES");
+        this.indexKey = new SecretKeySpec(derive(masterKey, "key-id"), "HmacSHA256");
+        this.valueCacheSize = valueCacheSize;
+    }
+
+    @Override
+    protected <V extends Serializable> DataStore<V> createDataStore(String id) throws IOException {
+        return new LogDataStore<>(this, id, directory.resolve(id.replaceAll("[^A-Za-z0-9_.-]", "_") + ".log"));
+    }
+
+    /**
+     * A key for one purpose, so the same master key never encrypts two kinds of data directly.
+     */
+    static byte[] derive(byte[] masterKey, String purpose) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+            return mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private KeyId keyId(String key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(indexKey);
+            ByteBuffer digest = ByteBuffer.wrap(mac.doFinal(key.getBytes(StandardCharsets.UTF_8)));
+            return new KeyId(digest.getLong(), digest.getLong());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ByteBuffer encode(byte op, KeyId keyId, byte[] plaintext) throws IOException {
+        byte[] iv = new byte[IV_BYTES];
+        RANDOM.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(associatedData(op, keyId));
+            byte[] ciphertext = cipher.doFinal(plaintext);
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + HEADER_BYTES + ciphertext.length);
+            record.putInt(HEADER_BYTES + ciphertext.length)
+                    .put(op)
+                    .putLong(keyId.high())
+                    .putLong(keyId.low())
+                    .put(iv)
+                    .put(ciphertext)
+                    .flip();
+            return record;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt credential record", e);
+        }
+    }
+
+    private Entry decode(ByteBuffer buffer, long offset) throws IOException {
+        int position = Math.toIntExact(offset);
+        int length = buffer.getInt(position);
+        byte op = buffer.get(position + Integer.BYTES);
+        KeyId keyId = new KeyId(buffer.getLong(position + Integer.BYTES + 1), buffer.getLong(position + Integer.BYTES + 1 + Long.BYTES));
+        byte[] iv = new byte[IV_BYTES];
+        buffer.get(position + Integer.BYTES + 1 + KEY_ID_BYTES, iv);
+        byte[] ciphertext = new byte[length - HEADER_BYTES];
+        buffer.get(position + Integer.BYTES + HEADER_BYTES, ciphertext);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(associatedData(op, keyId));
+            return IOUtils.deserialize(cipher.doFinal(ciphertext));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Credential record at offset " + offset + " failed authentication", e);
+        }
+    }
+
+    private static byte[] associatedData(byte op, KeyId keyId) {
+        return ByteBuffer.allocate(1 + KEY_ID_BYTES).put(op).putLong(keyId.high()).putLong(keyId.low()).array();
+    }
+
+    private record KeyId(long high, long low) {
+    }
+
+    private record Entry(String key, Serializable value) implements Serializable {
+    }
+
+    private static class LogDataStore<V extends Serializable> extends AbstractDataStore<V> {
+
+        private final EncryptedLogDataStoreFactory factory;
+        private final Path file;
+        private final Map<KeyId, Long> index = new ConcurrentHashMap<>();
+        private final Cache<KeyId, V> values;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Object syncLock = new Object();
+
+        private FileChannel channel;
+        private volatile MappedByteBuffer mapped;
+        private volatile long end;
+        private long synced;
+        private long liveBytes;
+        private long deadBytes;
+
+        LogDataStore(EncryptedLogDataStoreFactory factory, String id, Path file) throws IOException {
+            super(factory, id);
+            this.factory = factory;
+            this.file = file;
+            this.values = Caffeine.newBuilder().maximumSize(factory.valueCacheSize).build();
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            scan();
+        }
+
+        /**
+         * Build the key-id index from record headers and drop a torn record left at the tail by a crash.
+         */
+        private void scan() throws IOException {
+            long size = channel.size();
+            ByteBuffer buffer = map(size);
+            long position = 0;
+            while (position + Integer.BYTES <= size) {
+                int length = buffer.getInt(Math.toIntExact(position));
+                if (length < HEADER_BYTES || position + Integer.BYTES + length > size) {
+                    break;
+                }
+                int recordBytes = Integer.BYTES + length;
+                byte op = buffer.get(Math.toIntExact(position + Integer.BYTES));
+                KeyId keyId = new KeyId(buffer.getLong(Math.toIntExact(position + Integer.BYTES + 1)),
+                        buffer.getLong(Math.toIntExact(position + Integer.BYTES + 1 + Long.BYTES)));
+                switch (op) {
+                    case OP_SET -> track(keyId, position, recordBytes);
+                    case OP_DELETE -> untrack(keyId, recordBytes);
+                    case OP_CLEAR -> untrackAll(recordBytes);
+                    default -> throw new IOException("Unknown record type " + op + " in " + file);
+                }
+                position += recordBytes;
+            }
+            if (position < size) {
+                log.warn("Truncating {} bytes of incomplete record at the end of {}", size - position, file);
+                channel.truncate(position);
+                channel.force(true);
+            }
+            end = position;
+            synced = position;
+            log.info("Opened credential store {} with {} entries", file.getFileName(), index.size());
+            compactIfWasteful();
+        }
+
+        @Override
+        public int size() {
+            return index.size();
+        }
+
+        @Override
+        public Set<String> keySet() throws IOException {
+            Set<String> keys = new HashSet<>();
+            for (Entry entry : liveEntries()) {
+                keys.add(entry.key());
+            }
+            return Collections.unmodifiableSet(keys);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Collection<V> values() throws IOException {
+            List<V> result = new ArrayList<>();
+            for (Entry entry : liveEntries()) {
+                result.add((V) entry.value());
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(String key) throws IOException {
+            if (key == null) {
+                return null;
+            }
+            KeyId keyId = factory.keyId(key);
+            V cached = values.getIfPresent(keyId);
+            if (cached != null) {
+                return cached;
+            }
+            lock.readLock().lock();
+            try {
+                Long offset = index.get(keyId);
+                if (offset == null) {
+                    return null;
+                }
+                Entry entry = factory.decode(readable(offset), offset);
+                if (!key.equals(entry.key())) {
+                    return null;
+                }
+                V value = (V) entry.value();
+                values.put(keyId, value);
+                return value;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public DataStore<V> set(String key, V value) throws IOException {
+            KeyId keyId = factory.keyId(key);
+            ByteBuffer record = factory.encode(OP_SET, keyId, IOUtils.serialize(new Entry(key, value)));
+            long written;
+            lock.writeLock().lock();
+            try {
+                long offset = append(record);
+                track(keyId, offset, Math.toIntExact(end - offset));
+                values.put(keyId, value);
+                written = end;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            awaitDurable(written);
+            compactIfWasteful();
+            return this;
+        }
+
+        @Override
+        public DataStore<V> delete(String key) throws IOException {
+            if (key == null) {
+                return this;
+            }
+            KeyId keyId = factory.keyId(key);
+            ByteBuffer record = factory.encode(OP_DELETE, keyId, IOUtils.serialize(new Entry(key, null)));
+            long written;
+            lock.writeLock().lock();
+            try {
+                if (!index.containsKey(keyId)) {
+                    return this;
+                }
+                long offset = append(record);
+                untrack(keyId, Math.toIntExact(end - offset));
+                values.invalidate(keyId);
+                written = end;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            awaitDurable(written);
+            compactIfWasteful();
+            return this;
+        }
+
+        @Override
+        public DataStore<V> clear() throws IOException {
+            KeyId none = new KeyId(0, 0);
+            ByteBuffer record = factory.encode(OP_CLEAR, none, IOUtils.serialize(new Entry("", null)));
+            long written;
+            lock.writeLock().lock();
+            try {
+                long offset = append(record);
+                untrackAll(Math.toIntExact(end - offset));
+                values.invalidateAll();
+                written = end;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            awaitDurable(written);
+            compactIfWasteful();
+            return this;
+        }
+
+        private List<Entry> liveEntries() throws IOException {
+            lock.readLock().lock();
+            try {
+                List<Entry> entries = new ArrayList<>(index.size());
+                for (Long offset : index.values()) {
+                    entries.add(factory.decode(readable(offset), offset));
+                }
+                return entries;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Callers hold the write lock
+        private long append(ByteBuffer record) throws IOException {
+            long offset = end;
+            long position = offset;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            end = position;
+            return offset;
+        }
+
+        /**
+         * Return once everything up to {@code written} is on disk. Writers queue on the sync lock while an
+         * fsync runs, and that fsync usually covers their records too, so they return without another one.
+         */
+        private void awaitDurable(long written) throws IOException {
+            synchronized (syncLock) {
+                if (synced >= written) {
+                    return;
+                }
+                long target = end;
+                channel.force(false);
+                synced = target;
+            }
+        }
+
+        private void compactIfWasteful() throws IOException {
+            lock.writeLock().lock();
+            try {
+                if (deadBytes < MIN_COMPACTION_BYTES || deadBytes < liveBytes) {
+                    return;
+                }
+                compact();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // Callers hold the write lock
+        private void compact() throws IOException {
+            long started = System.nanoTime();
+            ByteBuffer buffer = readable(end);
+            Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+            Map<KeyId, Long> offsets = new HashMap<>(index.size());
+            long position = 0;
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                for (Map.Entry<KeyId, Long> entry : index.entrySet()) {
+                    int from = Math.toIntExact(entry.getValue());
+                    ByteBuffer record = buffer.slice(from, Integer.BYTES + buffer.getInt(from));
+                    offsets.put(entry.getKey(), position);
+                    while (record.hasRemaining()) {
+                        position += out.write(record, position);
+                    }
+                }
+                out.force(true);
+            }
+            synchronized (syncLock) {
+                channel.close();
+                Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                mapped = null;
+                index.putAll(offsets);
+                end = position;
+                synced = position;
+            }
+            log.info("Compacted credential store {}: {} live bytes kept, {} dropped in {} ms", file.getFileName(),
+                    liveBytes, deadBytes, (System.nanoTime() - started) / 1_000_000);
+            liveBytes = position;
+            deadBytes = 0;
+        }
+
+        private void track(KeyId keyId, long offset, int recordBytes) throws IOException {
+            Long previous = index.put(keyId, offset);
+            if (previous != null) {
+                int previousBytes = recordBytes(previous);
+                liveBytes -= previousBytes;
+                deadBytes += previousBytes;
+            }
+            liveBytes += recordBytes;
+        }
+
+        private void untrack(KeyId keyId, int recordBytes) throws IOException {
+            Long previous = index.remove(keyId);
+            if (previous != null) {
+                int previousBytes = recordBytes(previous);
+                liveBytes -= previousBytes;
+                deadBytes += previousBytes;
+            }
+            deadBytes += recordBytes;
+        }
+
+        private void untrackAll(int recordBytes) {
+            index.clear();
+            deadBytes += liveBytes + recordBytes;
+            liveBytes = 0;
+        }
+
+        private int recordBytes(long offset) throws IOException {
+            return Integer.BYTES + readable(offset).getInt(Math.toIntExact(offset));
+        }
+
+        /**
+         * A mapped view covering at least the record at {@code offset}; remapped when the log has grown past it.
+         */
+        private ByteBuffer readable(long offset) throws IOException {
+            MappedByteBuffer current = mapped;
+            if (current != null && offset + Integer.BYTES <= current.capacity()
+                    && offset + Integer.BYTES + current.getInt(Math.toIntExact(offset)) <= current.capacity()) {
+                return current;
+            }
+            synchronized (syncLock) {
+                return map(end);
+            }
+        }
+
+        private MappedByteBuffer map(long size) throws IOException {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Credential log " + file + " exceeds 2 GB");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped = buffer;
+            return buffer;
+        }
+    }
+}
@@ -1,20 +1,14 @@
 package com.ajisegiri.google_calendar;
 
-import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class GoogleCalendarApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(GoogleCalendarApplication.class, args);
     }
-
-    @Bean
-    public ChatMemory chatMemory() {
-        return new InMemoryChatMemory();
-    }
 }
\ No newline at end of file
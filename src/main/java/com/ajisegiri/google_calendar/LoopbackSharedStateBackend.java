@@ -0,0 +1,137 @@
+package com.ajisegiri.google_calendar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for a shared state server. Every instance created with the same cluster name
+ * talks to the same state, so several application contexts in one JVM behave like nodes of one
+ * cluster. Values are copied on the way in and out and messages are delivered on another thread,
+ * as they would be over the network.
+ */
+public class LoopbackSharedStateBackend implements SharedStateBackend, AutoCloseable {
+
+    private static final ConcurrentMap<String, Cluster> CLUSTERS = new ConcurrentHashMap<>();
+
+    private final Cluster cluster;
+    private final ExecutorService delivery = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("loopback-delivery-", 0).factory());
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public LoopbackSharedStateBackend(String clusterName) {
+        this.cluster = CLUSTERS.computeIfAbsent(clusterName, name -> new Cluster());
+    }
+
+    @Override
+    public byte[] get(String namespace, String key) {
+        byte[] value = cluster.values(namespace).get(key);
+        return value != null ? value.clone() : null;
+    }
+
+    @Override
+    public void put(String namespace, String key, byte[] value) {
+        cluster.values(namespace).put(key, value.clone());
+    }
+
+    @Override
+    public void delete(String namespace, String key) {
+        cluster.values(namespace).remove(key);
+        cluster.lists(namespace).remove(key);
+    }
+
+    @Override
+    public Set<String> keys(String namespace) {
+        return Set.copyOf(cluster.values(namespace).keySet());
+    }
+
+    @Override
+    public void clear(String namespace) {
+        cluster.values(namespace).clear();
+        cluster.lists(namespace).clear();
+    }
+
+    @Override
+    public void append(String namespace, String key, List<byte[]> values, int maxLength) {
+        cluster.lists(namespace).compute(key, (k, current) -> {
+            List<byte[]> list = current != null ? new ArrayList<>(current) : new ArrayList<>();
+            values.forEach(value -> list.add(value.clone()));
+            return List.copyOf(list.subList(Math.max(list.size() - maxLength, 0), list.size()));
+        });
+    }
+
+    @Override
+    public List<byte[]> tail(String namespace, String key, int count) {
+        List<byte[]> list = cluster.lists(namespace).getOrDefault(key, List.of());
+        return list.subList(Math.max(list.size() - count, 0), list.size()).stream()
+                .map(byte[]::clone)
+                .toList();
+    }
+
+    @Override
+    public void publish(String channel, String message) {
+        for (Subscription subscription : cluster.subscriptions(channel)) {
+            subscription.backend().delivery.execute(() -> subscription.listener().accept(message));
+        }
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        Subscription subscription = new Subscription(this, channel, listener);
+        subscriptions.add(subscription);
+        cluster.subscriptions(channel).add(subscription);
+    }
+
+    @Override
+    public boolean tryLease(String name, String owner, Duration ttl) {
+        long now = System.currentTimeMillis();
+        Lease lease = cluster.leases.compute(name, (n, current) ->
+                current == null || current.expiresAt() <= now || current.owner().equals(owner)
+                        ? new Lease(owner, now + ttl.toMillis())
+                        : current);
+        return lease.owner().equals(owner);
+    }
+
+    /**
+     * Disconnect this node: its subscriptions stop receiving messages. Stored state stays with the cluster.
+     */
+    @Override
+    public void close() {
+        subscriptions.forEach(subscription -> cluster.subscriptions(subscription.channel()).remove(subscription));
+        delivery.shutdown();
+    }
+
+    private record Subscription(LoopbackSharedStateBackend backend, String channel, Consumer<String> listener) {
+    }
+
+    private record Lease(String owner, long expiresAt) {
+    }
+
+    private static class Cluster {
+
+        private final ConcurrentMap<String, Map<String, byte[]>> values = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, ConcurrentMap<String, List<byte[]>>> lists = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+        Map<String, byte[]> values(String namespace) {
+            return values.computeIfAbsent(namespace, n -> new ConcurrentHashMap<>());
+        }
+
+        ConcurrentMap<String, List<byte[]>> lists(String namespace) {
+            return lists.computeIfAbsent(namespace, n -> new ConcurrentHashMap<>());
+        }
+
+        List<Subscription> subscriptions(String channel) {
+            return subscriptions.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>());
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.ajisegiri.google_calendar;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chat memory with a bounded heap footprint. Every message is appended to a per-conversation log on disk
+ * (one JSON line per message), which is the source of truth. Only recently used conversations are held
+ * in memory, each trimmed to its newest messages; the cache is bounded by total size and idle time, and
+ * an evicted conversation is read back lazily from its log when it is next used. Once a log holds twice
+ * as many lines as can be recalled, the next write rewrites it with just the recallable tail.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "calendar.state.backend", havingValue = "local", matchIfMissing = true)
+public class PersistentChatMemory implements ChatMemory {
+
+    private static final int LOCK_STRIPES = 256;
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+
+    private final Path directory;
+    private final int maxMessagesPerConversation;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Conversation> conversations;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public PersistentChatMemory(MeterRegistry meterRegistry,
+                                @Value("${calendar.chat-memory.directory:data/chat-memory}") Path directory,
+                                @Value("${calendar.chat-memory.max-heap:64MB}") DataSize maxHeap,
+                                @Value("${calendar.chat-memory.max-messages-per-conversation:200}") int maxMessagesPerConversation,
+                                @Value("${calendar.chat-memory.expire-after-access:30m}") Duration expireAfterAccess) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxMessagesPerConversation = maxMessagesPerConversation;
+        // Private mapper: the log format must not change with the application's JSON settings
+        this.objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.conversations = Caffeine.newBuilder()
+                .maximumWeight(maxHeap.toBytes())
+                .weigher((String id, Conversation conversation) -> conversation.weight())
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, conversations, "chat.memory.conversations");
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<StoredMessage> stored = messages.stream().map(StoredMessage::from).toList();
+        synchronized (lock(conversationId)) {
+            Conversation conversation = load(conversationId);
+            append(conversationId, stored);
+            conversation.addAll(stored, maxMessagesPerConversation);
+            conversation.logLines += stored.size();
+            if (conversation.logLines >= 2 * maxMessagesPerConversation) {
+                compact(conversationId, conversation);
+            }
+            // Re-insert so the cache re-weighs the grown conversation
+            conversations.put(conversationId, conversation);
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        synchronized (lock(conversationId)) {
+            return load(conversationId).last(lastN).stream().map(StoredMessage::toMessage).toList();
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        synchronized (lock(conversationId)) {
+            conversations.invalidate(conversationId);
+            try {
+                Files.deleteIfExists(logFile(conversationId));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to clear conversation " + conversationId, e);
+            }
+        }
+    }
+
+    private Conversation load(String conversationId) {
+        Conversation conversation = conversations.getIfPresent(conversationId);
+        if (conversation == null) {
+            conversation = readLog(conversationId);
+            conversations.put(conversationId, conversation);
+        }
+        return conversation;
+    }
+
+    private Conversation readLog(String conversationId) {
+        Path file = logFile(conversationId);
+        Conversation conversation = new Conversation();
+        if (!Files.exists(file)) {
+            return conversation;
+        }
+        // Stream the log keeping only the recallable tail, so a long log never sits in memory whole
+        Deque<String> tailLines = new ArrayDeque<>(maxMessagesPerConversation);
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (tailLines.size() == maxMessagesPerConversation) {
+                    tailLines.removeFirst();
+                }
+                tailLines.addLast(line);
+                lines++;
+            }
+            List<StoredMessage> tail = new ArrayList<>(tailLines.size());
+            for (String line : tailLines) {
+                tail.add(objectMapper.readValue(line, StoredMessage.class));
+            }
+            conversation.addAll(tail, maxMessagesPerConversation);
+            conversation.logLines = lines;
+            log.debug("Reloaded {} messages of conversation {}", tail.size(), conversationId);
+            return conversation;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read conversation " + conversationId, e);
+        }
+    }
+
+    private void append(String conversationId, List<StoredMessage> messages) {
+        Path file = logFile(conversationId);
+        try {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (StoredMessage message : messages) {
+                    writer.write(objectMapper.writeValueAsString(message));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to conversation " + conversationId, e);
+        }
+    }
+
+    // The log only grows; drop the history that can no longer be recalled. Callers hold the conversation's lock
+    private void compact(String conversationId, Conversation conversation) {
+        Path file = logFile(conversationId);
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        List<StoredMessage> tail = conversation.last(maxMessagesPerConversation);
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                for (StoredMessage message : tail) {
+                    writer.write(objectMapper.writeValueAsString(message));
+                    writer.newLine();
+                }
+            }
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            conversation.logLines = tail.size();
+        } catch (IOException e) {
+            // The full log is still intact; compaction is retried on the next write
+            log.warn("Failed to compact conversation {}: {}", conversationId, e.getMessage());
+        }
+    }
+
+    // Conversation ids come from the URL, so they are hashed into file names and fanned out over subdirectories
+    private Path logFile(String conversationId) {
+        String hash = sha256(conversationId);
+        return directory.resolve(hash.substring(0, 2)).resolve(hash + ".jsonl");
+    }
+
+    private Object lock(String conversationId) {
+        return locks[Math.floorMod(conversationId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Conversation {
+
+        private final Deque<StoredMessage> messages = new ArrayDeque<>();
+        private volatile int weight;
+        // Lines in the conversation's log, guarded by the conversation's lock stripe
+        private int logLines;
+
+        synchronized void addAll(List<StoredMessage> added, int maxMessages) {
+            int total = weight;
+            for (StoredMessage message : added) {
+                messages.addLast(message);
+                total += message.weight();
+            }
+            while (messages.size() > maxMessages) {
+                total -= messages.removeFirst().weight();
+            }
+            weight = total;
+        }
+
+        synchronized List<StoredMessage> last(int lastN) {
+            List<StoredMessage> all = new ArrayList<>(messages);
+            return all.subList(Math.max(all.size() - Math.max(lastN, 0), 0), all.size());
+        }
+
+        int weight() {
+            return Math.max(weight, 1);
+        }
+    }
+
+    /**
+     * On-disk form of a message; only the fields needed to rebuild it for a prompt are kept.
+     */
+    record StoredMessage(MessageType type, String text, List<AssistantMessage.ToolCall> toolCalls,
+                         List<ToolResponseMessage.ToolResponse> toolResponses) {
+
+        static StoredMessage from(Message message) {
+            return switch (message) {
+                case AssistantMessage assistant -> new StoredMessage(MessageType.ASSISTANT, assistant.getText(),
+                        assistant.hasToolCalls() ? assistant.getToolCalls() : null, null);
+                case ToolResponseMessage toolResponse -> new StoredMessage(MessageType.TOOL, null, null,
+                        toolResponse.getResponses());
+                default -> new StoredMessage(message.getMessageType(), message.getText(), null, null);
+            };
+        }
+
+        Message toMessage() {
+            return switch (type) {
+                case USER -> new UserMessage(text);
+                case SYSTEM -> new SystemMessage(text);
+                case ASSISTANT -> new AssistantMessage(text, Map.of(), toolCalls != null ? toolCalls : List.of());
+                case TOOL -> new ToolResponseMessage(toolResponses);
+            };
+        }
+
+        int weight() {
+            // Strings are at most two bytes per char on the heap
+            int chars = text != null ? text.length() : 0;
+            if (toolCalls != null) {
+                chars += toolCalls.stream().mapToInt(call -> call.name().length() + call.arguments().length()).sum();
+            }
+            if (toolResponses != null) {
+                chars += toolResponses.stream().mapToInt(response -> response.name().length() + response.responseData().length()).sum();
+            }
+            return MESSAGE_OVERHEAD_BYTES + 2 * chars;
+        }
+    }
+}
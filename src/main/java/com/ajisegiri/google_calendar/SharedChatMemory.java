@@ -0,0 +1,94 @@
+package com.ajisegiri.google_calendar;
+
+import com.ajisegiri.google_calendar.PersistentChatMemory.StoredMessage;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Chat memory kept in a {@link SharedStateBackend} so a conversation can continue on any node. Each
+ * node keeps recently used conversations in a near cache, updated in place by its own writes and
+ * dropped when another node appends to or clears the conversation.
+ */
+public class SharedChatMemory implements ChatMemory {
+
+    private static final String NAMESPACE = "chat-memory";
+    private static final String CHANNEL = "chat-memory";
+
+    private final SharedStateBackend backend;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final int maxMessagesPerConversation;
+    private final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final Cache<String, List<StoredMessage>> nearCache;
+
+    public SharedChatMemory(SharedStateBackend backend, int maxMessagesPerConversation, long nearCacheSize, Duration nearCacheTtl) {
+        this.backend = backend;
+        this.maxMessagesPerConversation = maxMessagesPerConversation;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfterAccess(nearCacheTtl)
+                .build();
+        backend.subscribe(CHANNEL, this::onChange);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<StoredMessage> stored = messages.stream().map(StoredMessage::from).toList();
+        backend.append(NAMESPACE, conversationId, stored.stream().map(this::serialize).toList(), maxMessagesPerConversation);
+        nearCache.asMap().computeIfPresent(conversationId, (id, current) -> {
+            List<StoredMessage> updated = new ArrayList<>(current);
+            updated.addAll(stored);
+            return List.copyOf(updated.subList(Math.max(updated.size() - maxMessagesPerConversation, 0), updated.size()));
+        });
+        backend.publish(CHANNEL, nodeId + "|" + conversationId);
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        List<StoredMessage> messages = nearCache.get(conversationId, id ->
+                backend.tail(NAMESPACE, id, maxMessagesPerConversation).stream().map(this::deserialize).toList());
+        return messages.subList(Math.max(messages.size() - Math.max(lastN, 0), 0), messages.size()).stream()
+                .map(StoredMessage::toMessage)
+                .toList();
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        backend.delete(NAMESPACE, conversationId);
+        nearCache.invalidate(conversationId);
+        backend.publish(CHANNEL, nodeId + "|" + conversationId);
+    }
+
+    private void onChange(String message) {
+        int separator = message.indexOf('|');
+        if (separator >= 0 && !message.substring(0, separator).equals(nodeId)) {
+            nearCache.invalidate(message.substring(separator + 1));
+        }
+    }
+
+    private byte[] serialize(StoredMessage message) {
+        try {
+            return objectMapper.writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private StoredMessage deserialize(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, StoredMessage.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.ajisegiri.google_calendar;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.util.store.AbstractDataStore;
+import com.google.api.client.util.store.AbstractDataStoreFactory;
+import com.google.api.client.util.store.DataStore;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Data stores kept in a {@link SharedStateBackend}, so every node sees the same OAuth credentials.
+ * Reads go through a per-node near cache. Every write publishes the changed key, and other nodes drop
+ * it from their near cache and notify listeners registered with {@link #onRemoteChange}. The near
+ * cache also expires entries after a short TTL in case an invalidation message is lost.
+ * <p>
+ * Values are encrypted before they leave the node, with AES-GCM under a key derived from the credential
+ * store key, and bound to their store and key so a value copied under another key fails authentication.
+ * The plaintext is a small fixed layout of the {@link StoredCredential} fields rather than Java
+ * serialization, so bytes read from the backend are never deserialized into arbitrary objects.
+ */
+@Slf4j
+public class SharedDataStoreFactory extends AbstractDataStoreFactory {
+
+    private static final String NAMESPACE_PREFIX = "datastore:";
+    private static final String CHANNEL_PREFIX = "datastore.";
+    private static final String ALL_KEYS = "*";
+    private static final byte FORMAT_VERSION = 1;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SharedStateBackend backend;
+    private final SecretKeySpec encryptionKey;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final long nearCacheSize;
+    private final Duration nearCacheTtl;
+    private final Map<String, List<Consumer<String>>> remoteChangeListeners = new ConcurrentHashMap<>();
+
+    /**
+     * @param masterKey the 256-bit credential store key; a key for the shared values is derived from it
+     */
+    public SharedDataStoreFactory(SharedStateBackend backend, byte[] masterKey, long nearCacheSize, Duration nearCacheTtl) {
+        if (masterKey.length != 32) {
+            throw new IllegalArgumentException("Credential store key must be 256 bits, got " + masterKey.length * 8);
+        }
+        this.backend = backend;
+        this.encryptionKey = new SecretKeySpec(EncryptedLogDataStoreFactory.derive(masterKey, "shared-state"), "AES");
+        this.nearCacheSize = nearCacheSize;
+        this.nearCacheTtl = nearCacheTtl;
+    }
+
+    /**
+     * Call the listener with the key whenever another node changes it in the given store ({@code "*"} when
+     * the store is cleared).
+     */
+    public void onRemoteChange(String storeId, Consumer<String> listener) {
+        remoteChangeListeners.computeIfAbsent(storeId, id -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    protected <V extends Serializable> DataStore<V> createDataStore(String id) {
+        return new SharedDataStore<>(this, id);
+    }
+
+    private byte[] seal(String namespace, String key, Serializable value) throws IOException {
+        if (!(value instanceof StoredCredential credential)) {
+            throw new IOException("Shared data stores only hold StoredCredential values, got " + value.getClass().getName());
+        }
+        ByteArrayOutputStream plaintext = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(plaintext)) {
+            out.writeByte(FORMAT_VERSION);
+            writeNullable(out, credential.getAccessToken());
+            writeNullable(out, credential.getRefreshToken());
+            out.writeBoolean(credential.getExpirationTimeMilliseconds() != null);
+            if (credential.getExpirationTimeMilliseconds() != null) {
+                out.writeLong(credential.getExpirationTimeMilliseconds());
+            }
+        }
+        byte[] iv = new byte[IV_BYTES];
+        RANDOM.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(associatedData(namespace, key));
+            byte[] ciphertext = cipher.doFinal(plaintext.toByteArray());
+            return ByteBuffer.allocate(IV_BYTES + ciphertext.length).put(iv).put(ciphertext).array();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt shared credential", e);
+        }
+    }
+
+    private StoredCredential open(String namespace, String key, byte[] sealed) throws IOException {
+        if (sealed.length <= IV_BYTES) {
+            throw new IOException("Shared value " + key + " in " + namespace + " is truncated");
+        }
+        byte[] plaintext;
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_BYTES));
+            cipher.updateAAD(associatedData(namespace, key));
+            plaintext = cipher.doFinal(sealed, IV_BYTES, sealed.length - IV_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Shared value " + key + " in " + namespace + " failed authentication", e);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plaintext))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unknown shared credential format " + version);
+            }
+            StoredCredential credential = new StoredCredential()
+                    .setAccessToken(readNullable(in))
+                    .setRefreshToken(readNullable(in));
+            return credential.setExpirationTimeMilliseconds(in.readBoolean() ? in.readLong() : null);
+        }
+    }
+
+    private static byte[] associatedData(String namespace, String key) {
+        return (namespace + "|" + key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static class SharedDataStore<V extends Serializable> extends AbstractDataStore<V> {
+
+        private final SharedDataStoreFactory factory;
+        private final String namespace;
+        private final String channel;
+        private final Cache<String, Optional<V>> nearCache;
+
+        SharedDataStore(SharedDataStoreFactory factory, String id) {
+            super(factory, id);
+            this.factory = factory;
+            this.namespace = NAMESPACE_PREFIX + id;
+            this.channel = CHANNEL_PREFIX + id;
+            this.nearCache = Caffeine.newBuilder()
+                    .maximumSize(factory.nearCacheSize)
+                    .expireAfterWrite(factory.nearCacheTtl)
+                    .build();
+            factory.backend.subscribe(channel, this::onChange);
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return factory.backend.keys(namespace);
+        }
+
+        @Override
+        public Collection<V> values() throws IOException {
+            List<V> values = new ArrayList<>();
+            for (String key : keySet()) {
+                V value = get(key);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(String key) throws IOException {
+            if (key == null) {
+                return null;
+            }
+            Optional<V> cached = nearCache.getIfPresent(key);
+            if (cached != null) {
+                return cached.orElse(null);
+            }
+            byte[] bytes = factory.backend.get(namespace, key);
+            V value = bytes != null ? (V) factory.open(namespace, key, bytes) : null;
+            nearCache.put(key, Optional.ofNullable(value));
+            return value;
+        }
+
+        @Override
+        public DataStore<V> set(String key, V value) throws IOException {
+            factory.backend.put(namespace, key, factory.seal(namespace, key, value));
+            nearCache.put(key, Optional.of(value));
+            publish(key);
+            return this;
+        }
+
+        @Override
+        public DataStore<V> delete(String key) {
+            if (key == null) {
+                return this;
+            }
+            factory.backend.delete(namespace, key);
+            nearCache.put(key, Optional.empty());
+            publish(key);
+            return this;
+        }
+
+        @Override
+        public DataStore<V> clear() {
+            factory.backend.clear(namespace);
+            nearCache.invalidateAll();
+            publish(ALL_KEYS);
+            return this;
+        }
+
+        private void publish(String key) {
+            factory.backend.publish(channel, factory.nodeId + "|" + key);
+        }
+
+        private void onChange(String message) {
+            int separator = message.indexOf('|');
+            if (separator < 0 || message.substring(0, separator).equals(factory.nodeId)) {
+                return;
+            }
+            String key = message.substring(separator + 1);
+            if (ALL_KEYS.equals(key)) {
+                nearCache.invalidateAll();
+            } else {
+                nearCache.invalidate(key);
+            }
+            log.debug("Key {} of {} changed on another node", key, getId());
+            factory.remoteChangeListeners.getOrDefault(getId(), List.of()).forEach(listener -> listener.accept(key));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ajisegiri.google_calendar;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Storage and messaging that state shared between nodes is built on. The operations mirror Redis
+ * (GET/SET/DEL/KEYS, RPUSH+LTRIM/LRANGE, PUBLISH/SUBSCRIBE, SET NX PX) so a Redis client maps onto it one to one.
+ * Values are opaque bytes; callers own serialization.
+ */
+public interface SharedStateBackend {
+
+    byte[] get(String namespace, String key);
+
+    void put(String namespace, String key, byte[] value);
+
+    void delete(String namespace, String key);
+
+    Set<String> keys(String namespace);
+
+    void clear(String namespace);
+
+    /**
+     * Append to the list stored under the key, keeping only its last {@code maxLength} elements.
+     */
+    void append(String namespace, String key, List<byte[]> values, int maxLength);
+
+    /**
+     * The last {@code count} elements of the list stored under the key, oldest first.
+     */
+    List<byte[]> tail(String namespace, String key, int count);
+
+    /**
+     * Deliver a message to every subscriber of the channel, on every node, including the publisher.
+     * Delivery is asynchronous and best effort.
+     */
+    void publish(String channel, String message);
+
+    void subscribe(String channel, Consumer<String> listener);
+
+    /**
+     * Take the named lease for the owner if it is free or expired, or extend it if the owner already holds
+     * it. Work that only one node should do runs while its node holds the lease.
+     *
+     * @return whether the owner holds the lease for {@code ttl} from now
+     */
+    boolean tryLease(String name, String owner, Duration ttl);
+}
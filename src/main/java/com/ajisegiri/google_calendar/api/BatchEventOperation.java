@@ -0,0 +1,35 @@
+package com.ajisegiri.google_calendar.api;
+
+import com.fasterxml.jackson.annotation.JsonClassDescription;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonClassDescription("A single create, update or delete operation in a batch of calendar changes")
+public class BatchEventOperation {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+
+    @ToolParam(description = "The kind of change: CREATE, UPDATE or DELETE")
+    @JsonProperty(required = true, value = "type")
+    @JsonPropertyDescription("The kind of change: CREATE, UPDATE or DELETE")
+    private Type type;
+
+    @ToolParam(required = false, description = "ID of the event to update or delete. Use the id field, not htmlLink eid. Not needed for CREATE")
+    @JsonProperty(required = false, value = "eventId")
+    @JsonPropertyDescription("ID of the event to update or delete. Use the id field, not htmlLink eid. Not needed for CREATE")
+    private String eventId;
+
+    @ToolParam(required = false, description = "Event details for CREATE and UPDATE. Not needed for DELETE")
+    @JsonProperty(required = false, value = "event")
+    @JsonPropertyDescription("Event details for CREATE and UPDATE. Not needed for DELETE")
+    private CalendarEventRequest event;
+}
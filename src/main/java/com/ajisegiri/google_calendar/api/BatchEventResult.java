@@ -0,0 +1,26 @@
+package com.ajisegiri.google_calendar.api;
+
+import com.google.api.services.calendar.model.Event;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchEventResult {
+    private int index;
+    private BatchEventOperation.Type type;
+    private String eventId;
+    private boolean success;
+    private Event event;
+    private String errorMessage;
+
+    public static BatchEventResult success(int index, BatchEventOperation.Type type, String eventId, Event event) {
+        return new BatchEventResult(index, type, eventId, true, event, null);
+    }
+
+    public static BatchEventResult failure(int index, BatchEventOperation.Type type, String eventId, String errorMessage) {
+        return new BatchEventResult(index, type, eventId, false, null, errorMessage);
+    }
+}
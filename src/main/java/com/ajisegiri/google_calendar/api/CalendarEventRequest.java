@@ -47,8 +47,9 @@ public class CalendarEventRequest {
     @JsonPropertyDescription("List of attendees' email addresses")
     private List<String> attendees;
 
-    @ToolParam(required = true, description = "Indicates if the event is an online meeting. If true, a Google Meet link will be generated. If true, attendees field cannot be null or empty.")
-    @JsonProperty(required = true, value = "isOnlineMeeting")
-    @JsonPropertyDescription("Indicates if the event is an online meeting. If true, a Google Meet link will be generated. If true, attendees field cannot be null or empty.")
-    private boolean isOnlineMeeting;
+    // Boxed so an update that leaves it out keeps the event's current Meet link
+    @ToolParam(required = false, description = "Indicates if the event is an online meeting. If true, a Google Meet link will be generated. If true, attendees field cannot be null or empty. On updates, leave it out to keep the current setting; false removes the Meet link.")
+    @JsonProperty(required = false, value = "isOnlineMeeting")
+    @JsonPropertyDescription("Indicates if the event is an online meeting. If true, a Google Meet link will be generated. If true, attendees field cannot be null or empty. On updates, leave it out to keep the current setting; false removes the Meet link.")
+    private Boolean onlineMeeting;
 }
@@ -0,0 +1,27 @@
+package com.ajisegiri.google_calendar.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tool-facing view of a {@link BatchEventResult}: the changed event as an {@link EventSummary}, or only its
+ * id and status once the token budget is used up
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CompactBatchEventResult {
+    private int index;
+    private BatchEventOperation.Type type;
+    private String eventId;
+    private boolean success;
+    private EventSummary event;
+    private String errorMessage;
+
+    public static CompactBatchEventResult failure(int index, BatchEventOperation.Type type, String eventId, String errorMessage) {
+        return new CompactBatchEventResult(index, type, eventId, false, null, errorMessage);
+    }
+}
@@ -0,0 +1,25 @@
+package com.ajisegiri.google_calendar.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CompactEventsResponse {
+    private List<EventSummary> events;
+    // Pass back as 'page' to continue where this response stopped
+    private String nextPageToken;
+    private boolean truncated;
+    private String note;
+    private String errorMessage;
+
+    public static CompactEventsResponse error(String errorMessage) {
+        return new CompactEventsResponse(null, null, false, null, errorMessage);
+    }
+}
@@ -0,0 +1,29 @@
+package com.ajisegiri.google_calendar.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Compact view of a calendar event with only the fields the assistant needs
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class EventSummary {
+    private String id;
+    private String summary;
+    private String start;
+    private String end;
+    private String timeZone;
+    private String location;
+    private String description;
+    private List<String> attendees;
+    private String meetLink;
+}
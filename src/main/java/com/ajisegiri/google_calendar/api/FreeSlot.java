@@ -0,0 +1,14 @@
+package com.ajisegiri.google_calendar.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FreeSlot {
+    // ISO 8601 with the offset of the requested time zone
+    private String start;
+    private String end;
+}
@@ -0,0 +1,24 @@
+package com.ajisegiri.google_calendar.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FreeSlotsResponse {
+    // Best first
+    private List<FreeSlot> slots;
+    // Calendars whose free/busy could not be read; their owners' availability was not checked
+    private List<String> unavailableCalendars;
+    private String errorMessage;
+
+    public static FreeSlotsResponse error(String errorMessage) {
+        return new FreeSlotsResponse(null, null, errorMessage);
+    }
+}
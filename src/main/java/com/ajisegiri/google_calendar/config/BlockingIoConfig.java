@@ -0,0 +1,58 @@
+package com.ajisegiri.google_calendar.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution model for blocking work: Google API calls and the tool invocations that make them run on
+ * virtual threads, never on Reactor/Netty event-loop threads.
+ */
+@Configuration
+public class BlockingIoConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService googleIoExecutorService() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("google-io-", 0).factory());
+    }
+
+    /**
+     * Chat-memory summaries are slow model calls made after a turn. They get a few threads of their own,
+     * so a backlog of them never competes with tool calls; when the queue is full a summary is skipped
+     * and attempted again on the conversation's next turn.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService chatSummaryExecutorService(@Value("${calendar.chat-memory.summary-concurrency:4}") int concurrency,
+                                                      @Value("${calendar.chat-memory.summary-queue-size:1000}") int queueSize) {
+        return new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                Thread.ofVirtual().name("chat-summary-", 0).factory());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler toolExecutionScheduler(@Qualifier("googleIoExecutorService") ExecutorService googleIoExecutorService) {
+        return Schedulers.fromExecutorService(googleIoExecutorService, "tool-execution");
+    }
+
+    /**
+     * The streaming chat model runs tool calls inline while handling the model's response stream. Moving
+     * the response body off the Netty event loop makes those tool calls, and the Google requests they
+     * issue, run on virtual threads instead of stalling unrelated streams.
+     */
+    @Bean
+    public WebClientCustomizer toolExecutionWebClientCustomizer(@Qualifier("toolExecutionScheduler") Scheduler toolExecutionScheduler) {
+        return builder -> builder.filter((request, next) -> next.exchange(request)
+                .map(response -> response.mutate()
+                        .body(body -> body.publishOn(toolExecutionScheduler))
+                        .build()));
+    }
+}
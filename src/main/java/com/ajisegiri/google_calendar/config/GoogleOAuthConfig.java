@@ -1,28 +1,39 @@
 package com.ajisegiri.google_calendar.config;
 
+import com.ajisegiri.google_calendar.EncryptedLogDataStoreFactory;
 import com.ajisegiri.google_calendar.InMemoryDataStoreFactory;
+import com.ajisegiri.google_calendar.SharedDataStoreFactory;
+import com.ajisegiri.google_calendar.SharedStateBackend;
+import com.ajisegiri.google_calendar.service.GoogleHttpMetrics;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
+import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.store.DataStoreFactory;
 import com.google.api.services.calendar.CalendarScopes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Objects;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
 
+@Slf4j
 @Configuration
 public class GoogleOAuthConfig {
 
-    private static final String CREDENTIALS_FILE_PATH = "/web_client_secret_798933208414-l2s5tk3pjq2c2p7qt7ie6ggjs975haic.apps.googleusercontent.com.json";
     private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
 
     @Value("${spring.application.name}")
@@ -36,25 +47,58 @@ public class GoogleOAuthConfig {
         return objectMapper;
     }
 
+    /**
+     * Where OAuth credentials are kept, always encrypted with {@code calendar.credential-store.key} when they leave memory:
+     * <ul>
+     *     <li>with a shared state backend, in that backend so every node sees them (the key is then required);</li>
+     *     <li>otherwise with a key, in an encrypted log under {@code calendar.credential-store.directory};</li>
+     *     <li>otherwise in memory only, lost on restart.</li>
+     * </ul>
+     */
     @Bean
-    public DataStoreFactory dataStoreFactory() {
-        return new InMemoryDataStoreFactory();
+    public DataStoreFactory dataStoreFactory(ObjectProvider<SharedStateBackend> sharedStateBackend,
+                                             @Value("${calendar.credential-store.directory:data/credentials}") Path directory,
+                                             @Value("${calendar.credential-store.key:}") String key,
+                                             @Value("${calendar.credential-store.value-cache-size:10000}") int valueCacheSize,
+                                             @Value("${calendar.state.near-cache.max-size:10000}") long nearCacheSize,
+                                             @Value("${calendar.state.near-cache.ttl:5m}") Duration nearCacheTtl) throws IOException {
+        SharedStateBackend backend = sharedStateBackend.getIfAvailable();
+        if (backend != null) {
+            if (key.isBlank()) {
+                throw new IllegalStateException("calendar.credential-store.key must be set when calendar.state.backend is shared;"
+                        + " credentials are encrypted with it before they leave the node");
+            }
+            return new SharedDataStoreFactory(backend, Base64.getDecoder().decode(key), nearCacheSize, nearCacheTtl);
+        }
+        if (key.isBlank()) {
+            log.warn("calendar.credential-store.key is not set, OAuth credentials will not survive a restart");
+            return new InMemoryDataStoreFactory();
+        }
+        return new EncryptedLogDataStoreFactory(directory, Base64.getDecoder().decode(key), valueCacheSize);
     }
 
     @Bean
-    public HttpTransport httpTransport() {
-        return new NetHttpTransport();
-    }
-
-    @Bean
-    public GoogleAuthorizationCodeFlow googleAuthorizationCodeFlow(HttpTransport httpTransport, DataStoreFactory dataStoreFactory) throws Exception {
-        GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY,
-                new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream(CREDENTIALS_FILE_PATH))));
-        return new GoogleAuthorizationCodeFlow.Builder(
+    public GoogleAuthorizationCodeFlow googleAuthorizationCodeFlow(HttpTransport httpTransport, DataStoreFactory dataStoreFactory,
+                                                                   GoogleHttpMetrics googleHttpMetrics,
+                                                                   @Value("${calendar.google.client-secrets}") Resource clientSecretsFile,
+                                                                   @Value("${calendar.google.token-server-url:}") String tokenServerUrl) throws Exception {
+        if (!clientSecretsFile.exists()) {
+            throw new IllegalStateException("OAuth client secrets not found at " + clientSecretsFile.getDescription()
+                    + "; download them from the Google Cloud console and point calendar.google.client-secrets at them");
+        }
+        GoogleClientSecrets clientSecrets;
+        try (InputStreamReader reader = new InputStreamReader(clientSecretsFile.getInputStream(), StandardCharsets.UTF_8)) {
+            clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, reader);
+        }
+        GoogleAuthorizationCodeFlow.Builder builder = new GoogleAuthorizationCodeFlow.Builder(
                 httpTransport, JSON_FACTORY, clientSecrets, CalendarScopes.all())
                 .setDataStoreFactory(dataStoreFactory)
+                .setRequestInitializer(googleHttpMetrics.instrument(null)) // token exchange and refresh
                 .setAccessType("offline")  // Ensures refresh token
-                .setApprovalPrompt("force") // Forces Google to return a refresh token
-                .build();
+                .setApprovalPrompt("force"); // Forces Google to return a refresh token
+        if (!tokenServerUrl.isBlank()) {
+            builder.setTokenServerUrl(new GenericUrl(tokenServerUrl));
+        }
+        return builder.build();
     }
 }
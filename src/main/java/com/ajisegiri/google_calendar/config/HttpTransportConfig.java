@@ -0,0 +1,98 @@
+package com.ajisegiri.google_calendar.config;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v5.Apache5HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * HTTP transport shared by the Calendar clients and the OAuth token endpoint. Defaults to a pooled
+ * Apache HttpClient 5 so calls reuse keep-alive connections instead of paying connection setup each time.
+ */
+@Slf4j
+@Configuration
+public class HttpTransportConfig {
+
+    @Value("${calendar.http.client:apache}")
+    private String client;
+
+    @Value("${calendar.http.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${calendar.http.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${calendar.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${calendar.http.read-timeout:20s}")
+    private Duration readTimeout;
+
+    @Value("${calendar.http.keep-alive:60s}")
+    private Duration keepAlive;
+
+    @Bean(destroyMethod = "shutdown")
+    public HttpTransport httpTransport() {
+        if ("net".equalsIgnoreCase(client)) {
+            log.info("Using NetHttpTransport for Google API calls");
+            return new NetHttpTransport();
+        }
+        log.info("Using pooled Apache HttpClient 5 transport (max {} connections, {} per route)", maxConnections, maxConnectionsPerRoute);
+        return pooledTransport(maxConnections, maxConnectionsPerRoute, connectTimeout, readTimeout, keepAlive);
+    }
+
+    public static HttpTransport pooledTransport(int maxConnections, int maxConnectionsPerRoute, Duration connectTimeout,
+                                                Duration readTimeout, Duration keepAlive) {
+        Timeout socketTimeout = Timeout.ofMilliseconds(readTimeout.toMillis());
+        TimeValue keepAliveTime = TimeValue.ofMilliseconds(keepAlive.toMillis());
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setSoTimeout(socketTimeout)
+                        .setTcpNoDelay(true)
+                        .build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                        .setSocketTimeout(socketTimeout)
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(socketTimeout)
+                        .build())
+                // Keep idle connections for the configured time unless the server asks for less
+                .setKeepAliveStrategy((response, context) -> {
+                    // The server's Keep-Alive timeout, or the request config's default when it sends none
+                    TimeValue serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive.compareTo(keepAliveTime) < 0 ? serverKeepAlive : keepAliveTime;
+                })
+                .evictIdleConnections(keepAliveTime)
+                .evictExpiredConnections()
+                // The Google client handles redirects and retries itself
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .useSystemProperties()
+                .build();
+        return new Apache5HttpTransport(httpClient);
+    }
+}
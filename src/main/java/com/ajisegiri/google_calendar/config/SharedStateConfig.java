@@ -0,0 +1,50 @@
+package com.ajisegiri.google_calendar.config;
+
+import com.ajisegiri.google_calendar.LoopbackSharedStateBackend;
+import com.ajisegiri.google_calendar.SharedChatMemory;
+import com.ajisegiri.google_calendar.SharedStateBackend;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * State shared between nodes, enabled when {@code calendar.state.backend} is anything but {@code local}.
+ * Credentials and chat memory then live in the backend, and each node only keeps near caches.
+ * <p>
+ * The only shared backend is {@code loopback}, an in-process stand-in that lets several application
+ * contexts in one JVM act as a cluster. A networked backend (e.g. Redis) is added by defining its
+ * {@link SharedStateBackend} bean here and its name in {@link #BACKENDS}. Any other name fails startup
+ * here rather than as a missing bean further down.
+ */
+@Configuration
+@ConditionalOnExpression("'${calendar.state.backend:local}' != 'local'")
+public class SharedStateConfig {
+
+    private static final Set<String> BACKENDS = Set.of("loopback");
+
+    public SharedStateConfig(@Value("${calendar.state.backend}") String backend) {
+        if (!BACKENDS.contains(backend)) {
+            throw new IllegalStateException("Unknown calendar.state.backend '" + backend + "', expected local or loopback");
+        }
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "calendar.state.backend", havingValue = "loopback")
+    public LoopbackSharedStateBackend loopbackSharedStateBackend(@Value("${calendar.state.loopback.cluster:default}") String cluster) {
+        return new LoopbackSharedStateBackend(cluster);
+    }
+
+    @Bean
+    public ChatMemory sharedChatMemory(SharedStateBackend sharedStateBackend,
+                                       @Value("${calendar.chat-memory.max-messages-per-conversation:200}") int maxMessagesPerConversation,
+                                       @Value("${calendar.state.near-cache.max-size:10000}") long nearCacheSize,
+                                       @Value("${calendar.chat-memory.expire-after-access:30m}") Duration expireAfterAccess) {
+        return new SharedChatMemory(sharedStateBackend, maxMessagesPerConversation, nearCacheSize, expireAfterAccess);
+    }
+}
@@ -0,0 +1,38 @@
+package com.ajisegiri.google_calendar.config;
+
+import com.ajisegiri.google_calendar.service.ConcurrentToolCallingManager;
+import com.ajisegiri.google_calendar.service.ToolCallInterceptor;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+public class ToolCallingConfig {
+
+    /**
+     * Replaces the auto-configured manager so parallel tool calls from one assistant message run concurrently
+     */
+    @Bean
+    public ToolCallingManager toolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                                 ObjectProvider<ObservationRegistry> observationRegistry,
+                                                 ObjectProvider<ToolCallInterceptor> toolCallInterceptor,
+                                                 @Qualifier("googleIoExecutorService") ExecutorService googleIoExecutorService,
+                                                 @Value("${calendar.tools.call-timeout:20s}") Duration toolTimeout) {
+        ObservationRegistry registry = observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP);
+        ToolCallingManager defaultManager = DefaultToolCallingManager.builder()
+                .observationRegistry(registry)
+                .toolCallbackResolver(toolCallbackResolver)
+                .build();
+        return new ConcurrentToolCallingManager(defaultManager, toolCallbackResolver, googleIoExecutorService, registry,
+                toolCallInterceptor.getIfUnique(() -> ToolCallInterceptor.NONE), toolTimeout);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ajisegiri.google_calendar.controller;
+
+import com.ajisegiri.google_calendar.service.CalendarWatchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Receives Google Calendar push notifications for the channels opened by {@link CalendarWatchService}.
+ * Google only sends headers; the refresh runs asynchronously so the notification is acknowledged at once.
+ */
+@Slf4j
+@RestController
+@ConditionalOnProperty(name = "calendar.watch.enabled", havingValue = "true")
+public class CalendarWebhookController {
+
+    private final CalendarWatchService calendarWatchService;
+
+    @Autowired
+    public CalendarWebhookController(CalendarWatchService calendarWatchService) {
+        this.calendarWatchService = calendarWatchService;
+    }
+
+    @PostMapping("/calendar/notifications")
+    public ResponseEntity<Void> handleNotification(
+            @RequestHeader("X-Goog-Channel-ID") String channelId,
+            @RequestHeader(value = "X-Goog-Channel-Token", required = false) String token,
+            @RequestHeader("X-Goog-Resource-State") String resourceState,
+            @RequestHeader(value = "X-Goog-Message-Number", required = false) String messageNumber) {
+
+        log.debug("Notification {} on channel {}: {}", messageNumber, channelId, resourceState);
+        if (!calendarWatchService.onNotification(channelId, token, resourceState)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+}
@@ -2,6 +2,7 @@ package com.ajisegiri.google_calendar.controller;
 
 import com.ajisegiri.google_calendar.service.CalendarCustomerSupportAssistantService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
@@ -9,14 +10,15 @@ import reactor.core.publisher.Flux;
 
 import java.time.Duration;
 
-import static com.ajisegiri.google_calendar.controller.GoogleCalendarController.USER_ID;
-
 @Controller
 @RequiredArgsConstructor
 public class ChatController {
 
     private final CalendarCustomerSupportAssistantService agent;
 
+    @Value("${calendar.user-id}")
+    private String userId;
+
     /**
      * Renders the chat UI template
      */
@@ -35,7 +37,7 @@ public class ChatController {
     @PostMapping(value = "/chat/{chatId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @ResponseBody
     public Flux<String> chat(@PathVariable String chatId, @RequestParam String userMessage) {
-        return agent.chat(chatId, USER_ID, userMessage)
+        return agent.chat(chatId, userId, userMessage)
                 .timeout(Duration.ofSeconds(30));
     }
 }
\ No newline at end of file
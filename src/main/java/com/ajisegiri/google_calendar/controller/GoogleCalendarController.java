@@ -2,21 +2,26 @@ package com.ajisegiri.google_calendar.controller;
 
 import com.ajisegiri.google_calendar.api.CalendarEventRequest;
 import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.ajisegiri.google_calendar.service.CalendarEventExporter;
 import com.ajisegiri.google_calendar.service.GoogleCalendarService;
+import com.ajisegiri.google_calendar.service.MultiCalendarService;
 import com.google.api.services.calendar.model.CalendarListEntry;
 import com.google.api.services.calendar.model.Event;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/calendar")
@@ -24,12 +29,16 @@ import java.util.UUID;
 public class GoogleCalendarController {
 
     private final GoogleCalendarService googleCalendarService;
+    private final CalendarEventExporter calendarEventExporter;
+    private final MultiCalendarService multiCalendarService;
 
-    public static final String USER_ID = UUID.randomUUID().toString(); // in prod this wil be Actual ID of the user
+    // in prod this wil be Actual ID of the user; every node of one cluster must be configured with the same id
+    @Value("${calendar.user-id}")
+    private String userId;
 
     @GetMapping("/list")
     public List<CalendarListEntry> calendarList() throws IOException {
-        return googleCalendarService.getCalendarList(USER_ID);
+        return googleCalendarService.getCalendarList(userId);
     }
 
     @GetMapping("/events")
@@ -37,7 +46,8 @@ public class GoogleCalendarController {
             @RequestParam(value = "startDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
             @RequestParam(required = false) String page,
-            @RequestParam(value = "pageSize", defaultValue = "10") Integer pageSize) throws Exception {
+            @RequestParam(value = "pageSize", defaultValue = "10") Integer pageSize,
+            @RequestParam(value = "calendarIds", required = false) List<String> calendarIds) throws Exception {
         // Default to current week if no dates are provided
         if (startDate == null || endDate == null) {
             LocalDate today = LocalDate.now();
@@ -45,7 +55,24 @@ public class GoogleCalendarController {
             endDate = today.with(DayOfWeek.SUNDAY).atTime(23, 59, 59);  // End of week (Sunday)
         }
 
-        return googleCalendarService.getEvents(USER_ID, startDate, endDate, page, pageSize);
+        // calendarIds=all (or a comma-separated list) merges several calendars instead of the default one
+        if (calendarIds != null) {
+            return multiCalendarService.getEvents(userId, calendarIds, startDate.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                    endDate.toInstant(ZoneOffset.UTC).toEpochMilli(), page, pageSize);
+        }
+        return googleCalendarService.getEvents(userId, startDate, endDate, page, pageSize);
+    }
+
+    /**
+     * Every event in the range, one JSON object per line (or one SSE event each), fetched from Google
+     * page by page as the client reads
+     */
+    @GetMapping(value = "/events/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Event> exportEvents(
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        return calendarEventExporter.export(userId, startDate.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                endDate.toInstant(ZoneOffset.UTC).toEpochMilli());
     }
 
     @GetMapping("/events/search")
@@ -55,19 +82,19 @@ public class GoogleCalendarController {
             @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
             @RequestParam(required = false) String page,
             @RequestParam(value = "pageSize", defaultValue = "10") Integer pageSize) throws Exception {
-        return googleCalendarService.searchEvents(USER_ID, query, startDate, endDate, page, pageSize);
+        return googleCalendarService.searchEvents(userId, query, startDate, endDate, page, pageSize);
     }
 
     @PostMapping("/events")
     public ResponseEntity<Event> createCalendarEvent(@RequestBody CalendarEventRequest request) throws Exception {
-        var event = googleCalendarService.createEvent(USER_ID, request);
+        var event = googleCalendarService.createEvent(userId, request);
         return new ResponseEntity<>(event, HttpStatus.CREATED);
     }
 
     // 5️⃣ Delete an Event
     @DeleteMapping("/events/{eventId}")
     public String deleteEvent(@PathVariable String eventId) throws Exception {
-        googleCalendarService.deleteEvent(USER_ID, eventId);
+        googleCalendarService.deleteEvent(userId, eventId);
         return "Event Deleted: " + eventId;
     }
 }
@@ -3,6 +3,7 @@ package com.ajisegiri.google_calendar.controller;
 import com.ajisegiri.google_calendar.service.GoogleOAuthService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -10,22 +11,22 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
 
-import static com.ajisegiri.google_calendar.controller.GoogleCalendarController.USER_ID;
-
 @Slf4j
 @RestController
 public class OAuthCallbackController {
 
     private final GoogleOAuthService googleOAuthService;
+    private final String userId;
 
     @Autowired
-    public OAuthCallbackController(GoogleOAuthService googleOAuthService) {
+    public OAuthCallbackController(GoogleOAuthService googleOAuthService, @Value("${calendar.user-id}") String userId) {
         this.googleOAuthService = googleOAuthService;
+        this.userId = userId;
     }
 
     @GetMapping("/oauth2/auth")
     public ResponseEntity<String> getAuthUrl() {
-        String authUrl = googleOAuthService.getAuthUrl(USER_ID);
+        String authUrl = googleOAuthService.getAuthUrl(userId);
         return ResponseEntity.ok(authUrl);
     }
 
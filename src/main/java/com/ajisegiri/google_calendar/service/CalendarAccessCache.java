@@ -0,0 +1,152 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Caches each user's access role on a calendar and derives the scope their reads are served in. Users who
+ * see a group calendar the same way (writers and owners, or readers) share one scope, so one replica and
+ * one in-flight fetch serve all of them; anyone else reads in a scope of their own.
+ * <p>
+ * Roles are re-verified with Google in the background once older than refresh-after, while the cached
+ * role keeps being served; a role that could not be re-verified within expire-after is dropped.
+ */
+@Slf4j
+@Component
+public class CalendarAccessCache {
+
+    public static final String CACHE_NAME = "calendar.access";
+
+    private static final String NONE = "none";
+    private static final String GROUP_CALENDAR_SUFFIX = "@group.calendar.google.com";
+
+    private final GoogleOAuthService googleOAuthService;
+    private final GoogleIoExecutor googleIoExecutor;
+    private final boolean sharingEnabled;
+    private final LoadingCache<AccessKey, String> roles;
+
+    public CalendarAccessCache(GoogleOAuthService googleOAuthService, GoogleIoExecutor googleIoExecutor,
+                               @Qualifier("googleIoExecutorService") ExecutorService executorService,
+                               MeterRegistry meterRegistry,
+                               @Value("${calendar.shared.enabled:true}") boolean sharingEnabled,
+                               @Value("${calendar.shared.acl.max-size:10000}") long maxSize,
+                               @Value("${calendar.shared.acl.refresh-after:2m}") Duration refreshAfter,
+                               @Value("${calendar.shared.acl.expire-after:10m}") Duration expireAfter) {
+        this.googleOAuthService = googleOAuthService;
+        this.googleIoExecutor = googleIoExecutor;
+        this.sharingEnabled = sharingEnabled;
+        this.roles = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .executor(executorService)
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public String load(AccessKey key) throws IOException {
+                        return fetchRole(key);
+                    }
+
+                    @Override
+                    public String reload(AccessKey key, String oldRole) throws IOException {
+                        return RequestPriority.BACKGROUND.run(() -> fetchRole(key));
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, roles, CACHE_NAME);
+    }
+
+    /**
+     * Scope for the user's reads of the calendar, verifying their access with Google if it is not cached.
+     */
+    public String readScope(String userId, String calendarId) throws IOException {
+        if (!isShareable(calendarId)) {
+            return userScope(userId);
+        }
+        return scopeFor(userId, accessRole(userId, calendarId));
+    }
+
+    /**
+     * Scope for the user's reads of the calendar without calling Google; the user's own scope if their
+     * access has not been verified.
+     */
+    public String cachedReadScope(String userId, String calendarId) {
+        if (!isShareable(calendarId)) {
+            return userScope(userId);
+        }
+        String role = roles.getIfPresent(new AccessKey(userId, calendarId));
+        return role != null ? scopeFor(userId, role) : userScope(userId);
+    }
+
+    /**
+     * The user's access role on the calendar: owner, writer, reader, freeBusyReader or none.
+     */
+    public String accessRole(String userId, String calendarId) throws IOException {
+        try {
+            return roles.get(new AccessKey(userId, calendarId));
+        } catch (CompletionException | UncheckedIOException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Forget the user's role, e.g. after Google refused them; the next read verifies it again.
+     */
+    public void invalidate(String userId, String calendarId) {
+        roles.invalidate(new AccessKey(userId, calendarId));
+    }
+
+    private boolean isShareable(String calendarId) {
+        // "primary" and personal calendars are different calendars, or different views, for every user
+        return sharingEnabled && calendarId.endsWith(GROUP_CALENDAR_SUFFIX);
+    }
+
+    private String fetchRole(AccessKey key) throws IOException {
+        try {
+            CalendarListEntry entry = googleIoExecutor.execute(key.userId(), googleOAuthService.getCalendarService(key.userId())
+                    .calendarList().get(key.calendarId())
+                    .setFields("accessRole"));
+            return entry.getAccessRole() != null ? entry.getAccessRole() : NONE;
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
+            }
+            // Not in the user's calendar list; they may still have access, but not one we can share
+            log.debug("{} is not in the calendar list of {}", key.calendarId(), key.userId());
+            return NONE;
+        }
+    }
+
+    private static String scopeFor(String userId, String role) {
+        return switch (role) {
+            case "owner", "writer" -> "shared:writer";
+            case "reader" -> "shared:reader";
+            // Free/busy readers see redacted events; they never share a replica with full readers
+            default -> userScope(userId);
+        };
+    }
+
+    private static String userScope(String userId) {
+        return "user:" + userId;
+    }
+
+    private record AccessKey(String userId, String calendarId) {
+    }
+}
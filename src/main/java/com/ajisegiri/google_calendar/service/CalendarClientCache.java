@@ -0,0 +1,93 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.calendar.Calendar;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Bounded per-user cache of {@link Calendar} clients, so tool calls don't reload the credential
+ * and rebuild the client on every request. Entries are evicted after being idle and whenever the
+ * user's credential is replaced, refreshed out-of-band or revoked.
+ */
+@Slf4j
+@Component
+public class CalendarClientCache {
+
+    public static final String CACHE_NAME = "calendar.clients";
+
+    private final Cache<String, CalendarClient> clients;
+
+    public CalendarClientCache(MeterRegistry meterRegistry,
+                               @Value("${calendar.client-cache.max-size:1000}") long maxSize,
+                               @Value("${calendar.client-cache.expire-after-access:30m}") Duration expireAfterAccess) {
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .removalListener((String userId, CalendarClient client, RemovalCause cause) ->
+                        log.debug("Calendar client for {} removed ({})", userId, cause))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, clients, CACHE_NAME);
+    }
+
+    public CalendarClient get(String userId, ClientLoader loader) throws IOException {
+        try {
+            return clients.get(userId, id -> {
+                try {
+                    return loader.load(id);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public CalendarClient getIfPresent(String userId) {
+        return clients.getIfPresent(userId);
+    }
+
+    /**
+     * Users with a cached client, i.e. those active within the expire-after-access window.
+     */
+    public Set<String> userIds() {
+        return Set.copyOf(clients.asMap().keySet());
+    }
+
+    public void invalidate(String userId) {
+        clients.invalidate(userId);
+    }
+
+    public void invalidateAll() {
+        clients.invalidateAll();
+    }
+
+    /**
+     * Invalidate the user's client unless it is the one holding the given credential, which
+     * already carries the refreshed token.
+     */
+    public void invalidateUnlessHolding(String userId, Credential credential) {
+        clients.asMap().computeIfPresent(userId, (id, client) -> client.credential() == credential ? client : null);
+    }
+
+    @FunctionalInterface
+    public interface ClientLoader {
+        CalendarClient load(String userId) throws IOException;
+    }
+
+    public record CalendarClient(Credential credential, Calendar calendar) {
+    }
+}
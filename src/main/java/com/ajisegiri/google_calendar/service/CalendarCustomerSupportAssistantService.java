@@ -18,12 +18,11 @@ package com.ajisegiri.google_calendar.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.PromptChatMemoryAdvisor;
-import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.time.LocalDate;
+import java.util.Map;
 
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY;
@@ -35,7 +34,8 @@ public class CalendarCustomerSupportAssistantService {
 
     private final ChatClient chatClient;
 
-    public CalendarCustomerSupportAssistantService(ChatClient.Builder modelBuilder, ChatMemory chatMemory, CalendarTools calendarTools) {
+    public CalendarCustomerSupportAssistantService(ChatClient.Builder modelBuilder, CompactingChatMemoryAdvisor chatMemoryAdvisor,
+                                                   ObservabilityAdvisor observabilityAdvisor, CalendarTools calendarTools) {
         this.chatClient = modelBuilder
                 .defaultSystem("""
                         You are an AI agent representing "REHOBOTH LABS" providing chat support to {user}.
@@ -55,8 +55,8 @@ public class CalendarCustomerSupportAssistantService {
                         - Always work with the user's timezone. Current date is {current_date}
                         """)
                 .defaultAdvisors(
-                        new PromptChatMemoryAdvisor(chatMemory), // Chat Memory
-                        new LoggingAdvisor())
+                        chatMemoryAdvisor, // Token-budgeted chat memory
+                        observabilityAdvisor)
 
                 .defaultTools(calendarTools) // FUNCTION CALLING
                 .build();
@@ -70,6 +70,8 @@ public class CalendarCustomerSupportAssistantService {
                 .system(s -> s.param("user", "Sunday Ajisegiri"))
                 .system(s -> s.param("user_id", userId))
                 .user(userMessageContent)
+                // Tools that take a ToolContext are rejected when the context is empty
+                .toolContext(Map.of("userId", userId, "chatId", chatId))
                 .advisors(a -> a
                         .param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
                         .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 100))
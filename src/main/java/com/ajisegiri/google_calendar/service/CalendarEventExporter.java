@@ -0,0 +1,103 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.Events;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams every event in a time range by paging through Google lazily. While one page is being written
+ * to the client, the next one is already being fetched, so a long export costs roughly one round trip per
+ * page instead of a round trip plus the write time. At most the current page and the one read-ahead page
+ * are held in memory, and nothing further is fetched until the client has consumed the current page.
+ * <p>
+ * A read-ahead belongs to its export: when the client disconnects or the stream fails, the fetch still in
+ * flight is cancelled. Only pages fetched while the client still has events to read run at
+ * {@link RequestPriority#PREFETCH}; a page the client is already waiting on, e.g. after an empty page or
+ * when the client reads faster than Google answers, is fetched at {@link RequestPriority#INTERACTIVE}.
+ */
+@Slf4j
+@Service
+public class CalendarEventExporter {
+
+    private final GoogleCalendarService googleCalendarService;
+    private final Scheduler toolExecutionScheduler;
+    private final int pageSize;
+
+    public CalendarEventExporter(GoogleCalendarService googleCalendarService,
+                                 @Qualifier("toolExecutionScheduler") Scheduler toolExecutionScheduler,
+                                 @Value("${calendar.export.page-size:500}") int pageSize) {
+        this.googleCalendarService = googleCalendarService;
+        this.toolExecutionScheduler = toolExecutionScheduler;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Events overlapping [startMillis, endMillis) in start-time order. The first page is fetched when the
+     * returned Flux is subscribed to.
+     */
+    public Flux<Event> export(String userId, long startMillis, long endMillis) {
+        return Flux.defer(() -> {
+            Export export = new Export();
+            return fetch(userId, startMillis, endMillis, null, RequestPriority.INTERACTIVE)
+                    .expand(page -> {
+                        export.fetched.addAndGet(items(page).size());
+                        return page.getNextPageToken() == null ? Mono.empty()
+                                : readAhead(userId, startMillis, endMillis, page.getNextPageToken(), export);
+                    })
+                    .concatMapIterable(CalendarEventExporter::items, 1)
+                    .doOnNext(event -> export.delivered.incrementAndGet())
+                    .doFinally(signal -> export.readAhead.dispose());
+        });
+    }
+
+    /**
+     * Start fetching the page after the one just emitted, without waiting for demand. The expansion is
+     * only invoked once a page has been requested, so this never runs more than one page ahead.
+     */
+    private Mono<Events> readAhead(String userId, long startMillis, long endMillis, String pageToken, Export export) {
+        RequestPriority priority = export.hasUnreadEvents() ? RequestPriority.PREFETCH : RequestPriority.INTERACTIVE;
+        Sinks.One<Events> next = Sinks.one();
+        export.readAhead.update(fetch(userId, startMillis, endMillis, pageToken, priority).subscribe(
+                next::tryEmitValue,
+                error -> {
+                    log.debug("Read-ahead of export page failed: {}", error.getMessage());
+                    next.tryEmitError(error);
+                },
+                next::tryEmitEmpty));
+        return next.asMono();
+    }
+
+    private Mono<Events> fetch(String userId, long startMillis, long endMillis, String pageToken, RequestPriority priority) {
+        return Mono.fromCallable(() -> priority.run(() ->
+                        googleCalendarService.listEventsPage(userId, startMillis, endMillis, pageToken, pageSize)))
+                .subscribeOn(toolExecutionScheduler);
+    }
+
+    private static List<Event> items(Events page) {
+        return page.getItems() != null ? page.getItems() : List.of();
+    }
+
+    // Per-subscription state: events fetched vs. handed to the client, and the read-ahead in flight
+    private static class Export {
+
+        private final AtomicLong fetched = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final Disposable.Swap readAhead = Disposables.swap();
+
+        boolean hasUnreadEvents() {
+            return fetched.get() > delivered.get();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Partial-response field masks for Calendar API calls, limited to what the agent, the REST API and the
+ * local replica use. Every event field read elsewhere in the code must be listed here.
+ */
+@Component
+public class CalendarFieldMasks {
+
+    public static final String DEFAULT_EVENT_FIELDS = "id,status,iCalUID,recurringEventId,updated,summary,description,location," +
+            "start,end,attendees(email,displayName,responseStatus,optional),organizer(email,displayName),htmlLink,hangoutLink," +
+            "conferenceData(conferenceId,entryPoints(entryPointType,uri))";
+
+    private final String event;
+    private final String eventsList;
+
+    public CalendarFieldMasks(@Value("${calendar.fields.event:" + CalendarFieldMasks.DEFAULT_EVENT_FIELDS + "}") String event) {
+        this.event = event;
+        this.eventsList = "nextPageToken,nextSyncToken,items(" + event + ")";
+    }
+
+    /**
+     * Fields of a single event, for get/insert/patch responses
+     */
+    public String event() {
+        return event;
+    }
+
+    /**
+     * Fields of an events().list page, including the paging and sync tokens
+     */
+    public String eventsList() {
+        return eventsList;
+    }
+}
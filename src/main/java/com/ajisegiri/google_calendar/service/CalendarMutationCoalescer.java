@@ -0,0 +1,194 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.BatchEventOperation;
+import com.ajisegiri.google_calendar.api.BatchEventResult;
+import com.google.api.services.calendar.model.Event;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces event mutations issued for the same user within a short window (typically the tool calls of
+ * one chat turn) into a single Google batch request. The first caller in a window waits for the others to
+ * join, then executes every queued mutation on behalf of them.
+ * <p>
+ * As the {@link ToolCallInterceptor} it learns how many mutation tool calls were issued together: a lone
+ * mutation runs at once, and a batch is flushed as soon as the whole set has joined. The window only bounds
+ * the wait, e.g. for a call that failed before reaching here, or for callers outside a tool-call set.
+ */
+@Slf4j
+@Component
+public class CalendarMutationCoalescer implements ToolCallInterceptor {
+
+    private static final ThreadLocal<Integer> EXPECTED_MUTATIONS = new ThreadLocal<>();
+
+    private final GoogleCalendarService googleCalendarService;
+    private final Duration window;
+    private final ConcurrentMap<String, PendingBatch> pending = new ConcurrentHashMap<>();
+
+    public CalendarMutationCoalescer(GoogleCalendarService googleCalendarService,
+                                     @Value("${calendar.batch.coalesce-window:10ms}") Duration window) {
+        this.googleCalendarService = googleCalendarService;
+        this.window = window;
+    }
+
+    /**
+     * Run a mutation tool call knowing how many of its siblings are mutations too.
+     */
+    @Override
+    public String intercept(List<AssistantMessage.ToolCall> toolCalls, AssistantMessage.ToolCall toolCall, Supplier<String> call) {
+        if (!CalendarTools.MUTATION_TOOLS.contains(toolCall.name())) {
+            return call.get();
+        }
+        int mutations = (int) toolCalls.stream().filter(sibling -> CalendarTools.MUTATION_TOOLS.contains(sibling.name())).count();
+        EXPECTED_MUTATIONS.set(mutations);
+        try {
+            return call.get();
+        } finally {
+            EXPECTED_MUTATIONS.remove();
+        }
+    }
+
+    public BatchEventResult submit(String userId, BatchEventOperation operation) throws IOException {
+        Integer expected = EXPECTED_MUTATIONS.get();
+        if (window.isZero() || (expected != null && expected <= 1)) {
+            return executeSingle(userId, operation);
+        }
+
+        PendingMutation mutation = new PendingMutation(operation, new CompletableFuture<>());
+        PendingBatch[] opened = new PendingBatch[1];
+        PendingBatch batch = pending.compute(userId, (id, current) -> {
+            if (current != null && current.add(mutation)) {
+                return current;
+            }
+            PendingBatch fresh = new PendingBatch(expected != null ? expected : GoogleCalendarService.MAX_BATCH_SIZE);
+            fresh.add(mutation);
+            opened[0] = fresh;
+            return fresh;
+        });
+
+        if (opened[0] == batch) {
+            flushWhenJoined(userId, batch);
+        }
+        return await(mutation.result());
+    }
+
+    private void flushWhenJoined(String userId, PendingBatch batch) {
+        try {
+            batch.joined().get(window.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Flushing {} of {} expected mutations for {} after the window", batch.size(), batch.expected(), userId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        pending.remove(userId, batch);
+        List<PendingMutation> mutations = batch.close();
+
+        try {
+            if (mutations.size() == 1) {
+                PendingMutation only = mutations.get(0);
+                only.result().complete(executeSingle(userId, only.operation()));
+                return;
+            }
+            log.info("Coalesced {} event mutations for {} into one batch", mutations.size(), userId);
+            List<BatchEventResult> results = googleCalendarService.batchMutate(userId,
+                    mutations.stream().map(PendingMutation::operation).toList());
+            for (int i = 0; i < mutations.size(); i++) {
+                mutations.get(i).result().complete(results.get(i));
+            }
+        } catch (IOException | RuntimeException e) {
+            mutations.forEach(m -> m.result().completeExceptionally(e));
+        }
+    }
+
+    private BatchEventResult executeSingle(String userId, BatchEventOperation operation) throws IOException {
+        return switch (operation.getType()) {
+            case CREATE -> {
+                Event event = googleCalendarService.createEvent(userId, operation.getEvent());
+                yield BatchEventResult.success(0, operation.getType(), event.getId(), event);
+            }
+            case UPDATE -> {
+                Event event = googleCalendarService.updateEvent(userId, operation.getEventId(), operation.getEvent());
+                yield BatchEventResult.success(0, operation.getType(), event.getId(), event);
+            }
+            case DELETE -> {
+                googleCalendarService.deleteEvent(userId, operation.getEventId());
+                yield BatchEventResult.success(0, operation.getType(), operation.getEventId(), null);
+            }
+        };
+    }
+
+    private BatchEventResult await(CompletableFuture<BatchEventResult> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for batched mutation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(NestedExceptionUtils.getMostSpecificCause(e).getMessage(), e.getCause());
+        }
+    }
+
+    private record PendingMutation(BatchEventOperation operation, CompletableFuture<BatchEventResult> result) {
+    }
+
+    private static class PendingBatch {
+
+        private final int expected;
+        private final List<PendingMutation> mutations = new ArrayList<>();
+        private final CompletableFuture<Void> joined = new CompletableFuture<>();
+        private boolean closed;
+
+        PendingBatch(int expected) {
+            this.expected = Math.min(expected, GoogleCalendarService.MAX_BATCH_SIZE);
+        }
+
+        synchronized boolean add(PendingMutation mutation) {
+            if (closed || mutations.size() >= GoogleCalendarService.MAX_BATCH_SIZE) {
+                return false;
+            }
+            mutations.add(mutation);
+            if (mutations.size() >= expected) {
+                joined.complete(null);
+            }
+            return true;
+        }
+
+        int expected() {
+            return expected;
+        }
+
+        synchronized int size() {
+            return mutations.size();
+        }
+
+        // Completes once every expected mutation has joined
+        CompletableFuture<Void> joined() {
+            return joined;
+        }
+
+        synchronized List<PendingMutation> close() {
+            closed = true;
+            return List.copyOf(mutations);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local copy of one calendar, seeded with a full sync and kept current through Google sync tokens.
+ * Instances of recurring events are stored individually (the replica syncs with singleEvents=true).
+ * Time-range reads go through an {@link IntervalIndex} that is rebuilt lazily after changes; text search
+ * goes through an {@link EventTextIndex} that is updated with every change.
+ */
+public class CalendarReplica {
+
+    static final String CANCELLED = "cancelled";
+
+    private final String scope;
+    private final String calendarId;
+    private final ChangeListener changeListener;
+    private final Map<String, Event> events = new ConcurrentHashMap<>();
+    private final EventTextIndex textIndex = new EventTextIndex();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile IndexSnapshot indexSnapshot = new IndexSnapshot(0, IntervalIndex.empty());
+
+    private volatile String syncToken;
+    private volatile long lastSyncedAt;
+    private volatile long watchedUntil;
+
+    public CalendarReplica(String calendarId) {
+        this(calendarId, ChangeListener.NONE);
+    }
+
+    public CalendarReplica(String calendarId, ChangeListener changeListener) {
+        this(null, calendarId, changeListener);
+    }
+
+    public CalendarReplica(String scope, String calendarId, ChangeListener changeListener) {
+        this.scope = scope;
+        this.calendarId = calendarId;
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Who reads from this replica, see {@link CalendarAccessCache#readScope}.
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    public String getCalendarId() {
+        return calendarId;
+    }
+
+    public boolean isSeeded() {
+        return syncToken != null;
+    }
+
+    public String getSyncToken() {
+        return syncToken;
+    }
+
+    public long getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    /**
+     * Whether a push channel reports changes to this calendar at the given time.
+     */
+    public boolean isWatched(long nowMillis) {
+        return watchedUntil > nowMillis;
+    }
+
+    ReentrantLock syncLock() {
+        return syncLock;
+    }
+
+    /**
+     * Claim the replica's background refresh; false if one is already queued or running.
+     */
+    boolean startRefresh() {
+        return refreshing.compareAndSet(false, true);
+    }
+
+    void refreshDone() {
+        refreshing.set(false);
+    }
+
+    /**
+     * Record a completed sync. {@code startedAt} is when it began listing, so changes made after that are
+     * not assumed to be included.
+     */
+    void markSynced(String nextSyncToken, long startedAt) {
+        this.syncToken = nextSyncToken;
+        this.lastSyncedAt = startedAt;
+    }
+
+    void markWatched(long untilMillis) {
+        this.watchedUntil = untilMillis;
+    }
+
+    void reset() {
+        synchronized (textIndex) {
+            events.clear();
+            textIndex.clear();
+        }
+        changeListener.cleared();
+        version.incrementAndGet();
+        syncToken = null;
+        lastSyncedAt = 0;
+    }
+
+    /**
+     * The replica is no longer cached. Readers that still hold it keep their events; listeners let go.
+     */
+    void evicted() {
+        changeListener.cleared();
+    }
+
+    /**
+     * Apply an event from a sync page or a local write. Cancelled events are removed, and an older
+     * version never overwrites a newer one.
+     */
+    public void apply(Event event) {
+        if (event == null || event.getId() == null) {
+            return;
+        }
+        if (CANCELLED.equals(event.getStatus())) {
+            remove(event.getId());
+            return;
+        }
+        Event stored;
+        // Keeps the text index on the same version of the event as the map when writes race
+        synchronized (textIndex) {
+            stored = events.merge(event.getId(), event, (current, incoming) -> isNewer(current, incoming) ? current : incoming);
+            textIndex.put(stored);
+        }
+        if (stored == event) {
+            changeListener.upserted(stored);
+        }
+        version.incrementAndGet();
+    }
+
+    public void remove(String eventId) {
+        Event removed;
+        synchronized (textIndex) {
+            removed = events.remove(eventId);
+            textIndex.remove(eventId);
+        }
+        if (removed != null) {
+            changeListener.removed(eventId);
+            version.incrementAndGet();
+        }
+    }
+
+    public Event get(String eventId) {
+        return events.get(eventId);
+    }
+
+    /**
+     * Events matching every word of the query, best first, with their text scores.
+     */
+    public List<EventTextIndex.Hit> search(String query) {
+        return textIndex.search(query);
+    }
+
+    /**
+     * Events overlapping [startMillis, endMillis), ordered by start time.
+     */
+    public List<Event> findOverlapping(long startMillis, long endMillis) {
+        return index().overlapping(startMillis, endMillis);
+    }
+
+    private IntervalIndex<Event> index() {
+        IndexSnapshot snapshot = indexSnapshot;
+        long currentVersion = version.get();
+        if (snapshot.version() == currentVersion) {
+            return snapshot.index();
+        }
+        synchronized (this) {
+            snapshot = indexSnapshot;
+            currentVersion = version.get();
+            if (snapshot.version() != currentVersion) {
+                IntervalIndex<Event> index = IntervalIndex.build(events.values(), CalendarReplica::startMillis,
+                        CalendarReplica::endMillis, Comparator.comparing(Event::getId));
+                snapshot = new IndexSnapshot(currentVersion, index);
+                indexSnapshot = snapshot;
+            }
+            return snapshot.index();
+        }
+    }
+
+    public static long startMillis(Event event) {
+        return toMillis(event.getStart(), Long.MIN_VALUE);
+    }
+
+    public static long endMillis(Event event) {
+        long end = toMillis(event.getEnd(), Long.MIN_VALUE);
+        return end == Long.MIN_VALUE ? startMillis(event) : end;
+    }
+
+    private static long toMillis(EventDateTime eventDateTime, long defaultValue) {
+        if (eventDateTime == null) {
+            return defaultValue;
+        }
+        DateTime dateTime = eventDateTime.getDateTime() != null ? eventDateTime.getDateTime() : eventDateTime.getDate();
+        return dateTime != null ? dateTime.getValue() : defaultValue;
+    }
+
+    private static boolean isNewer(Event current, Event incoming) {
+        DateTime currentUpdated = current.getUpdated();
+        DateTime incomingUpdated = incoming.getUpdated();
+        return currentUpdated != null && incomingUpdated != null && currentUpdated.getValue() > incomingUpdated.getValue();
+    }
+
+    private record IndexSnapshot(long version, IntervalIndex<Event> index) {
+    }
+
+    /**
+     * Told about every event stored in or removed from the replica, e.g. to keep a secondary index current.
+     * Called on the thread applying the change.
+     */
+    public interface ChangeListener {
+
+        ChangeListener NONE = new ChangeListener() {
+        };
+
+        default void upserted(Event event) {
+        }
+
+        default void removed(String eventId) {
+        }
+
+        default void cleared() {
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.Events;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Serves time-window reads from local calendar replicas. A replica is seeded with one full sync,
+ * then kept current with incremental syncs using Google's nextSyncToken; a 410 Gone (expired token)
+ * triggers a full resync. Local writes are applied immediately so reads observe them. Replicas covered by a
+ * push channel ({@link CalendarWatchService}) are refreshed on notification and polled far less often.
+ * <p>
+ * Only reads of a replica that is not seeded yet (first read, or during a full resync) wait for Google.
+ * A seeded replica older than max-staleness is served as is while one background sync brings it up to
+ * date, so a read may miss changes made elsewhere for up to max-staleness plus the length of that sync.
+ * <p>
+ * Replicas are kept per read scope ({@link CalendarAccessCache#readScope}): users with the same verified
+ * view of a group calendar share one replica, so its syncs are paid once and concurrent reads that find
+ * it unseeded wait on a single sync, made with the credential of whichever of them got there first.
+ */
+@Slf4j
+@Service
+public class CalendarReplicaService {
+
+    private static final int SYNC_PAGE_SIZE = 2500;
+
+    private final GoogleOAuthService googleOAuthService;
+    private final CalendarFieldMasks calendarFieldMasks;
+    private final GoogleIoExecutor googleIoExecutor;
+    private final CalendarAccessCache calendarAccessCache;
+    private final ExecutorService executorService;
+    private final Cache<ReplicaKey, CalendarReplica> replicas;
+    private final Duration maxStaleness;
+    private final Duration watchedMaxStaleness;
+    private final SemanticEventIndex semanticEventIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CalendarReplicaService(GoogleOAuthService googleOAuthService, CalendarFieldMasks calendarFieldMasks,
+                                  GoogleIoExecutor googleIoExecutor, CalendarAccessCache calendarAccessCache,
+                                  @Qualifier("googleIoExecutorService") ExecutorService executorService,
+                                  MeterRegistry meterRegistry,
+                                  ObjectProvider<SemanticEventIndex> semanticEventIndex,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${calendar.replica.max-calendars:1000}") long maxCalendars,
+                                  @Value("${calendar.replica.expire-after-access:2h}") Duration expireAfterAccess,
+                                  @Value("${calendar.replica.max-staleness:30s}") Duration maxStaleness,
+                                  @Value("${calendar.replica.watched-max-staleness:15m}") Duration watchedMaxStaleness) {
+        this.googleOAuthService = googleOAuthService;
+        this.calendarFieldMasks = calendarFieldMasks;
+        this.googleIoExecutor = googleIoExecutor;
+        this.calendarAccessCache = calendarAccessCache;
+        this.executorService = executorService;
+        this.eventPublisher = eventPublisher;
+        this.maxStaleness = maxStaleness;
+        this.watchedMaxStaleness = watchedMaxStaleness;
+        this.semanticEventIndex = semanticEventIndex.getIfAvailable();
+        this.replicas = Caffeine.newBuilder()
+                .maximumSize(maxCalendars)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                // Drops the replica's secondary indexes along with it
+                .removalListener((ReplicaKey key, CalendarReplica replica, RemovalCause cause) -> {
+                    if (replica != null) {
+                        replica.evicted();
+                    }
+                })
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, replicas, "calendar.replicas");
+    }
+
+    /**
+     * Events overlapping the window, ordered by start time. The page token is an offset into the result.
+     */
+    public EventsResponse getEvents(String userId, String calendarId, long startMillis, long endMillis,
+                                    String page, int pageSize) throws IOException {
+        CalendarReplica replica = getSyncedReplica(userId, calendarId);
+        List<Event> matches = replica.findOverlapping(startMillis, endMillis);
+        return page(matches, page, pageSize);
+    }
+
+    public CalendarReplica getSyncedReplica(String userId, String calendarId) throws IOException {
+        String scope = calendarAccessCache.readScope(userId, calendarId);
+        CalendarReplica replica = replicas.get(new ReplicaKey(scope, calendarId), key -> new CalendarReplica(scope, calendarId,
+                semanticEventIndex != null ? semanticEventIndex.listener(scope, calendarId) : CalendarReplica.ChangeListener.NONE));
+        long now = System.currentTimeMillis();
+        // Push notifications trigger refreshes of watched replicas; polling is only a safety net for lost ones
+        Duration staleness = replica.isWatched(now) ? watchedMaxStaleness : maxStaleness;
+        if (!replica.isSeeded()) {
+            // Nothing to serve yet
+            sync(userId, replica);
+        } else if (now - replica.getLastSyncedAt() > staleness.toMillis()) {
+            refreshInBackground(userId, replica);
+        }
+        return replica;
+    }
+
+    /**
+     * Incrementally sync the replica if it is still loaded, e.g. after a push notification. Evicted replicas
+     * are left alone; the calendar is seeded again when next read.
+     *
+     * @return whether the replica is loaded
+     */
+    public boolean refresh(String userId, CalendarReplica replica) throws IOException {
+        if (!isLoaded(replica)) {
+            return false;
+        }
+        sync(userId, replica);
+        return true;
+    }
+
+    /**
+     * Whether this replica is still the cached one for its scope and calendar. Does not count as an access.
+     */
+    public boolean isLoaded(CalendarReplica replica) {
+        return replicas.asMap().get(new ReplicaKey(replica.getScope(), replica.getCalendarId())) == replica;
+    }
+
+    /**
+     * Bring the replica up to date: a full sync if it has never been seeded, otherwise an incremental one.
+     */
+    public void sync(String userId, CalendarReplica replica) throws IOException {
+        long requestedAt = System.currentTimeMillis();
+        replica.syncLock().lock();
+        try {
+            // Another caller started and finished a sync while we were waiting
+            if (replica.isSeeded() && replica.getLastSyncedAt() >= requestedAt) {
+                return;
+            }
+            long startedAt = System.currentTimeMillis();
+            Calendar calendarService = googleOAuthService.getCalendarService(userId);
+            if (!replica.isSeeded()) {
+                fullSync(userId, calendarService, replica, startedAt);
+                eventPublisher.publishEvent(new ReplicaSeededEvent(userId, replica));
+                return;
+            }
+            try {
+                incrementalSync(userId, calendarService, replica, startedAt);
+            } catch (GoogleJsonResponseException e) {
+                if (e.getStatusCode() != 410) {
+                    throw e;
+                }
+                log.info("Sync token for {} expired, running a full resync", replica.getCalendarId());
+                replica.reset();
+                fullSync(userId, calendarService, replica, startedAt);
+            }
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() == 403 || e.getStatusCode() == 404) {
+                // The user may have lost access; verify it again before they next read a shared replica
+                calendarAccessCache.invalidate(userId, replica.getCalendarId());
+            }
+            throw e;
+        } finally {
+            replica.syncLock().unlock();
+        }
+    }
+
+    private void refreshInBackground(String userId, CalendarReplica replica) {
+        if (!replica.startRefresh()) {
+            return;
+        }
+        try {
+            executorService.execute(() -> {
+                try {
+                    RequestPriority.BACKGROUND.run(() -> {
+                        sync(userId, replica);
+                        return null;
+                    });
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Background sync of {} failed, the next read retries: {}", replica.getCalendarId(), e.getMessage());
+                } finally {
+                    replica.refreshDone();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            replica.refreshDone();
+            log.warn("Background sync of {} rejected, the next read retries", replica.getCalendarId());
+        }
+    }
+
+    /**
+     * Apply a locally written event to the user's replica, if one is loaded.
+     */
+    public void applyWrite(String userId, String calendarId, Event event) {
+        CalendarReplica replica = replicas.getIfPresent(cachedKey(userId, calendarId));
+        if (replica != null) {
+            replica.apply(event);
+        }
+    }
+
+    public void applyDelete(String userId, String calendarId, String eventId) {
+        CalendarReplica replica = replicas.getIfPresent(cachedKey(userId, calendarId));
+        if (replica != null) {
+            replica.remove(eventId);
+        }
+    }
+
+    public Event getCachedEvent(String userId, String calendarId, String eventId) {
+        CalendarReplica replica = replicas.getIfPresent(cachedKey(userId, calendarId));
+        return replica != null ? replica.get(eventId) : null;
+    }
+
+    private void fullSync(String userId, Calendar calendarService, CalendarReplica replica, long startedAt) throws IOException {
+        String pageToken = null;
+        Events events;
+        do {
+            events = googleIoExecutor.execute(userId, calendarService.events().list(replica.getCalendarId())
+                    .setSingleEvents(true)
+                    .setMaxResults(SYNC_PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .setFields(calendarFieldMasks.eventsList()));
+            applyAll(replica, events);
+            pageToken = events.getNextPageToken();
+        } while (pageToken != null);
+
+        replica.markSynced(events.getNextSyncToken(), startedAt);
+        log.info("Seeded replica of {} with {} events", replica.getCalendarId(), replica.size());
+    }
+
+    private void incrementalSync(String userId, Calendar calendarService, CalendarReplica replica, long startedAt) throws IOException {
+        String pageToken = null;
+        Events events;
+        int changes = 0;
+        do {
+            events = googleIoExecutor.execute(userId, calendarService.events().list(replica.getCalendarId())
+                    .setSingleEvents(true)
+                    .setMaxResults(SYNC_PAGE_SIZE)
+                    .setSyncToken(replica.getSyncToken())
+                    .setPageToken(pageToken)
+                    .setFields(calendarFieldMasks.eventsList()));
+            changes += applyAll(replica, events);
+            pageToken = events.getNextPageToken();
+        } while (pageToken != null);
+
+        replica.markSynced(events.getNextSyncToken(), startedAt);
+        log.debug("Incremental sync of {} applied {} changes", replica.getCalendarId(), changes);
+    }
+
+    private int applyAll(CalendarReplica replica, Events events) {
+        List<Event> items = events.getItems();
+        if (items == null) {
+            return 0;
+        }
+        items.forEach(replica::apply);
+        return items.size();
+    }
+
+    private EventsResponse page(List<Event> matches, String page, int pageSize) {
+        int offset = PageTokens.offset(page);
+        int from = Math.min(offset, matches.size());
+        int to = Math.min(from + Math.max(pageSize, 1), matches.size());
+        String nextPageToken = to < matches.size() ? String.valueOf(to) : null;
+        return new EventsResponse(List.copyOf(matches.subList(from, to)), nextPageToken, null);
+    }
+
+    // Writes never wait on an access check: a user whose access is not verified has no shared replica to update
+    private ReplicaKey cachedKey(String userId, String calendarId) {
+        return new ReplicaKey(calendarAccessCache.cachedReadScope(userId, calendarId), calendarId);
+    }
+
+    private record ReplicaKey(String scope, String calendarId) {
+    }
+
+    /**
+     * Published after a replica's first full sync, i.e. when a calendar starts being replicated in a scope.
+     * {@code userId} is the user whose read seeded it.
+     */
+    public record ReplicaSeededEvent(String userId, CalendarReplica replica) {
+    }
+}
@@ -1,7 +1,12 @@
 package com.ajisegiri.google_calendar.service;
 
+import com.ajisegiri.google_calendar.api.BatchEventOperation;
+import com.ajisegiri.google_calendar.api.BatchEventResult;
 import com.ajisegiri.google_calendar.api.CalendarEventRequest;
+import com.ajisegiri.google_calendar.api.CompactBatchEventResult;
+import com.ajisegiri.google_calendar.api.CompactEventsResponse;
 import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.ajisegiri.google_calendar.api.FreeSlotsResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ToolContext;
@@ -10,18 +15,34 @@ import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.core.NestedExceptionUtils;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CalendarTools {
 
+    // Tools whose calls go through the mutation coalescer
+    static final Set<String> MUTATION_TOOLS = Set.of("createEvent", "updateEvent", "deleteEvent");
+
     private final GoogleCalendarService googleCalendarService;
+    private final CalendarMutationCoalescer calendarMutationCoalescer;
+    private final CompactEventProjector compactEventProjector;
+    private final MultiCalendarService multiCalendarService;
+    private final SlotFinderService slotFinderService;
 
     @Tool(description = "This retrieves a calendar events for a specific user. If startDate and endDate are not provided, set them to the current week.Dates are of JAVA LocalDateTime datatype.")
-    public EventsResponse getCalendarEvent(String userId, String startDate, String endDate,
-                                           @ToolParam(required = false, description = "This is nextPageToken,It can be null") String page,
+    public CompactEventsResponse getCalendarEvent(String userId, String startDate, String endDate,
+                                           @ToolParam(required = false, description = "This is nextPageToken from a previous response, use it to continue a truncated result. It can be null") String page,
                                            @ToolParam(required = false, description = "The size of event users wants to see.use default 100") Integer pageSize,
                                            ToolContext toolContext) {
         log.info("Getting calendar events - startDate: {}, endDate: {}, page: {}, pageSize: {}",
@@ -33,21 +54,86 @@ public class CalendarTools {
         }
 
         try {
+            // Event pages are offset based, so a page cut short by the token budget can resume mid-page
+            int offset = PageTokens.offset(page);
             log.debug("Fetching events with pageSize: {}", pageSize);
             var events = googleCalendarService.getEvents(userId, LocalDateTime.parse(startDate), LocalDateTime.parse(endDate), page, pageSize);
             log.info("Successfully retrieved {} events", events.getEvents() != null ? events.getEvents().size() : 0);
-            return events;
+            return compactEventProjector.project(events, offset);
         } catch (Exception e) {
             String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
             log.error("Calendar error while retrieving events: {}", errorMessage, e);
-            return new EventsResponse(null, null, errorMessage);
+            ToolOutcome.failed(errorMessage);
+            return CompactEventsResponse.error(errorMessage);
+        }
+    }
+
+    @Tool(description = "This retrieves events from several of the user's calendars at once, merged by start time with shared events listed once. " +
+            "Use it when the user asks about their whole schedule rather than one calendar. If startDate and endDate are not provided, set them to the current week.Dates are of JAVA LocalDateTime datatype.")
+    public CompactEventsResponse getEventsAcrossCalendars(String userId, String startDate, String endDate,
+                                                          @ToolParam(required = false, description = "Calendar IDs to include. Leave empty for every calendar the user has selected") List<String> calendarIds,
+                                                          @ToolParam(required = false, description = "This is nextPageToken from a previous response, use it to continue a truncated result. It can be null") String page,
+                                                          @ToolParam(required = false, description = "The size of event users wants to see.use default 100") Integer pageSize) {
+        log.info("Getting events across calendars - calendars: {}, startDate: {}, endDate: {}, page: {}", calendarIds, startDate, endDate, page);
+
+        try {
+            int offset = PageTokens.offset(page);
+            long start = LocalDateTime.parse(startDate).toInstant(ZoneOffset.UTC).toEpochMilli();
+            long end = LocalDateTime.parse(endDate).toInstant(ZoneOffset.UTC).toEpochMilli();
+            var events = multiCalendarService.getEvents(userId, calendarIds, start, end, page, pageSize != null ? pageSize : 1000);
+            log.info("Retrieved {} events across calendars", events.getEvents().size());
+            CompactEventsResponse response = compactEventProjector.project(new EventsResponse(events.getEvents(), events.getNextPageToken(), null), offset);
+            // Partial results still go to the model, with the calendars that failed named
+            response.setErrorMessage(events.getErrorMessage());
+            return response;
+        } catch (Exception e) {
+            String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.error("Calendar error while retrieving events across calendars: {}", errorMessage, e);
+            ToolOutcome.failed(errorMessage);
+            return CompactEventsResponse.error(errorMessage);
+        }
+    }
+
+    @Tool(description = "This finds free meeting slots shared by the user and the attendees from their free/busy information, within working hours. " +
+            "Use it instead of fetching events whenever the user wants to find a time to meet. Dates are of JAVA LocalDateTime datatype, in timeZone. " +
+            "Slots are returned best first.")
+    public FreeSlotsResponse findFreeSlots(String userId, String startDate, String endDate,
+                                           @ToolParam(description = "Meeting length in minutes") Integer durationMinutes,
+                                           @ToolParam(description = "The user's IANA time zone") String timeZone,
+                                           @ToolParam(required = false, description = "Attendees' email addresses") List<String> attendees,
+                                           @ToolParam(required = false, description = "Time zones of attendees outside the user's time zone, each as email=IANA zone") List<String> attendeeTimeZones,
+                                           @ToolParam(required = false, description = "Start of the working day, HH:mm. Default 09:00") String workdayStart,
+                                           @ToolParam(required = false, description = "End of the working day, HH:mm. Default 17:00") String workdayEnd,
+                                           @ToolParam(required = false, description = "How many slots to return. Default 5") Integer maxResults) {
+        log.info("Finding free slots - attendees: {}, startDate: {}, endDate: {}, duration: {}", attendees, startDate, endDate, durationMinutes);
+
+        try {
+            ZoneId zone = ZoneId.of(timeZone);
+            Map<String, ZoneId> attendeeZones = new HashMap<>();
+            for (String entry : attendeeTimeZones != null ? attendeeTimeZones : List.<String>of()) {
+                int separator = entry.lastIndexOf('=');
+                attendeeZones.put(entry.substring(0, separator).strip(), ZoneId.of(entry.substring(separator + 1).strip()));
+            }
+            return slotFinderService.findSlots(userId, attendees != null ? attendees : List.of(), attendeeZones, zone,
+                    LocalDateTime.parse(startDate).atZone(zone).toInstant().toEpochMilli(),
+                    LocalDateTime.parse(endDate).atZone(zone).toInstant().toEpochMilli(),
+                    Duration.ofMinutes(durationMinutes != null ? durationMinutes : 30),
+                    LocalTime.parse(workdayStart != null ? workdayStart : "09:00"),
+                    LocalTime.parse(workdayEnd != null ? workdayEnd : "17:00"),
+                    maxResults != null ? maxResults : 5);
+        } catch (Exception e) {
+            String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.error("Calendar error while finding free slots: {}", errorMessage, e);
+            ToolOutcome.failed(errorMessage);
+            return FreeSlotsResponse.error(errorMessage);
         }
     }
 
-    @Tool(description = "This searches calendar events pertaining to a user. If startDate and endDate are not provided, The code uses the current week.Dates are of JAVA LocalDateTime datatype." +
+    @Tool(description = "This searches calendar events pertaining to a user by title, description, location and attendees, tolerating typos and partial words. " +
+            "If startDate and endDate are not provided, all events are searched.Dates are of JAVA LocalDateTime datatype. Results are best match first." +
             "Must be only used when the intention of the user is to look up a specific word or phrase.")
-    public EventsResponse searchEvents(String userId, String query, @ToolParam(required = false) String startDate, @ToolParam(required = false) String endDate,
-                                       @ToolParam(required = false, description = "This is nextPageToken,It can be null") String page,
+    public CompactEventsResponse searchEvents(String userId, String query, @ToolParam(required = false) String startDate, @ToolParam(required = false) String endDate,
+                                       @ToolParam(required = false, description = "This is nextPageToken from a previous response, use it to continue a truncated result. It can be null") String page,
                                        @ToolParam(required = false, description = "The size of event users wants to see. use default as 100") Integer pageSize) {
         log.info("Searching calendar events - query: '{}', startDate: {}, endDate: {}, page: {}, pageSize: {}",
                 query, startDate, endDate, page, pageSize != null ? pageSize : 1000);
@@ -58,15 +144,18 @@ public class CalendarTools {
                 log.debug("Using default pageSize: {}", pageSize);
             }
 
+            // Search results are offset based too, so a page cut short by the token budget can resume mid-page
+            int offset = PageTokens.offset(page);
             var searchResults = googleCalendarService.searchEvents(userId, query, startDate == null ? null : LocalDateTime.parse(startDate),
                     endDate == null ? null : LocalDateTime.parse(endDate), page, pageSize);
             log.info("Search completed - found {} events matching query: '{}'",
                     searchResults.getEvents() != null ? searchResults.getEvents().size() : 0, query);
-            return searchResults;
+            return compactEventProjector.project(searchResults, offset);
         } catch (Exception e) {
             String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
             log.error("Calendar error while searching events: {}", errorMessage, e);
-            return new EventsResponse(null, null, errorMessage);
+            ToolOutcome.failed(errorMessage);
+            return CompactEventsResponse.error(errorMessage);
         }
     }
 
@@ -76,12 +165,13 @@ public class CalendarTools {
 
         try {
             log.debug("Event creation request details: {}", request);
-            String result = googleCalendarService.createEvent(userId, request).toString();
+            String result = mutate(userId, new BatchEventOperation(BatchEventOperation.Type.CREATE, null, request));
             log.info("Event created successfully");
             return result;
         } catch (Exception e) {
             String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
             log.error("Calendar error while creating event: {}", errorMessage, e);
+            ToolOutcome.failed(errorMessage);
             return "Error details: " + errorMessage;
         }
     }
@@ -92,12 +182,13 @@ public class CalendarTools {
 
         try {
             log.debug("Event update details - eventId: {}, request: {}", eventId, request);
-            String result = googleCalendarService.updateEvent(userId, eventId, request).toString();
+            String result = mutate(userId, new BatchEventOperation(BatchEventOperation.Type.UPDATE, eventId, request));
             log.info("Event updated successfully - eventId: {}", eventId);
             return result;
         } catch (Exception e) {
             String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
             log.error("Calendar error while updating event {}: {}", eventId, errorMessage, e);
+            ToolOutcome.failed(errorMessage);
             return "Error details: " + errorMessage;
         }
     }
@@ -107,13 +198,44 @@ public class CalendarTools {
         log.info("Deleting calendar event - eventId: {}", eventId);
 
         try {
-            googleCalendarService.deleteEvent(userId, eventId);
+            String result = mutate(userId, new BatchEventOperation(BatchEventOperation.Type.DELETE, eventId, null));
             log.info("Event deleted successfully - eventId: {}", eventId);
-            return "Successfully deleted";
+            return result;
         } catch (Exception e) {
             String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
             log.error("Calendar error while deleting event {}: {}", eventId, errorMessage, e);
+            ToolOutcome.failed(errorMessage);
             return "Error details: " + errorMessage;
         }
     }
-}
\ No newline at end of file
+
+    @Tool(description = "Create, update and/or delete several calendar events in one request. " +
+            "Prefer this over repeated createEvent/updateEvent/deleteEvent calls when more than one event changes. " +
+            "Returns one result per operation, in the same order.")
+    public List<CompactBatchEventResult> batchMutateEvents(String userId,
+                                                           @ToolParam(description = "The operations to apply") List<BatchEventOperation> operations) {
+        log.info("Applying batch of {} event operations", operations != null ? operations.size() : 0);
+
+        try {
+            if (operations == null || operations.isEmpty()) {
+                ToolOutcome.failed("No operations were given");
+                return List.of(CompactBatchEventResult.failure(0, null, null, "No operations were given"));
+            }
+            return compactEventProjector.project(googleCalendarService.batchMutate(userId, operations));
+        } catch (Exception e) {
+            String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.error("Calendar error while applying batch: {}", errorMessage, e);
+            ToolOutcome.failed(errorMessage);
+            return List.of(CompactBatchEventResult.failure(0, null, null, errorMessage));
+        }
+    }
+
+    // Single mutations from one chat turn are coalesced into a batch request
+    private String mutate(String userId, BatchEventOperation operation) throws IOException {
+        BatchEventResult result = calendarMutationCoalescer.submit(userId, operation);
+        if (!result.isSuccess()) {
+            throw new IOException(result.getErrorMessage());
+        }
+        return result.getEvent() != null ? compactEventProjector.describe(result.getEvent()) : "Successfully deleted";
+    }
+}
@@ -0,0 +1,286 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.SharedStateBackend;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.Channel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps a Google push channel ({@code events.watch}) open for every replicated calendar, so changes made
+ * elsewhere reach the replica within seconds instead of at the next poll. A channel is opened when a
+ * replica is first seeded and renewed shortly before it expires, as long as the replica is still loaded.
+ * Each notification triggers an incremental sync of that one replica at background priority, with the
+ * credential of the user whose read seeded it. A replica shared by several users has a single channel.
+ * <p>
+ * Channels live in memory. After a restart the old channels expire on their own and replicas fall back to
+ * polling until they are seeded, and watched, again.
+ * <p>
+ * With shared state the load balancer may deliver a notification to any node, while the channel and the
+ * replica it refreshes live on the node that opened it. Every channel is therefore also registered in the
+ * backend with its expiry and a hash of its token; a node that does not own the channel verifies the token
+ * against the registry and publishes the notification, and the owning node refreshes its replica.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "calendar.watch.enabled", havingValue = "true")
+public class CalendarWatchService implements DisposableBean {
+
+    private static final String SHARED_CHANNELS = "watch.channels";
+    private static final String SHARED_NOTIFICATIONS = "watch.notifications";
+
+    private final GoogleOAuthService googleOAuthService;
+    private final GoogleIoExecutor googleIoExecutor;
+    private final CalendarReplicaService calendarReplicaService;
+    private final ExecutorService executorService;
+    private final MeterRegistry meterRegistry;
+    private final String address;
+    private final Duration ttl;
+    private final Duration renewBefore;
+    private final SharedStateBackend sharedStateBackend;
+    private final ConcurrentMap<String, WatchedChannel> channels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<CalendarReplica, String> channelByReplica = new ConcurrentHashMap<>();
+
+    public CalendarWatchService(GoogleOAuthService googleOAuthService, GoogleIoExecutor googleIoExecutor,
+                                CalendarReplicaService calendarReplicaService,
+                                @Qualifier("googleIoExecutorService") ExecutorService executorService,
+                                MeterRegistry meterRegistry, ObjectProvider<SharedStateBackend> sharedStateBackend,
+                                @Value("${calendar.watch.address}") String address,
+                                @Value("${calendar.watch.ttl:6h}") Duration ttl,
+                                @Value("${calendar.watch.renew-before:30m}") Duration renewBefore) {
+        this.googleOAuthService = googleOAuthService;
+        this.googleIoExecutor = googleIoExecutor;
+        this.calendarReplicaService = calendarReplicaService;
+        this.executorService = executorService;
+        this.meterRegistry = meterRegistry;
+        this.address = address;
+        this.ttl = ttl;
+        this.renewBefore = renewBefore;
+        this.sharedStateBackend = sharedStateBackend.getIfAvailable();
+        meterRegistry.gaugeMapSize("calendar.watch.channels", List.of(), channels);
+        if (this.sharedStateBackend != null) {
+            this.sharedStateBackend.subscribe(SHARED_NOTIFICATIONS, this::onForwardedNotification);
+        }
+    }
+
+    @EventListener
+    public void onReplicaSeeded(CalendarReplicaService.ReplicaSeededEvent event) {
+        // Published inside the seeding sync; open the channel without holding up the read that caused it
+        executorService.execute(() -> watch(event.userId(), event.replica()));
+    }
+
+    /**
+     * Handle a notification from Google. The initial {@code sync} message only confirms the channel;
+     * {@code exists} and {@code not_exists} mean the calendar changed.
+     *
+     * @return false if the channel is unknown or the token does not match, true otherwise
+     */
+    public boolean onNotification(String channelId, String token, String resourceState) {
+        WatchedChannel channel = channelId != null ? channels.get(channelId) : null;
+        if (channel == null && channelId != null && token != null && sharedStateBackend != null) {
+            return forward(channelId, token, resourceState);
+        }
+        if (channel == null || token == null || !MessageDigest.isEqual(
+                channel.token().getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            meterRegistry.counter("calendar.watch.notifications", "result", "rejected").increment();
+            return false;
+        }
+        meterRegistry.counter("calendar.watch.notifications", "result", resourceState != null ? resourceState : "unknown").increment();
+        if ("sync".equals(resourceState)) {
+            return true;
+        }
+        // Bursts coalesce in the replica's sync lock: waiters whose change a newer sync already covers return early
+        executorService.execute(() -> refresh(channel));
+        return true;
+    }
+
+    // A channel opened by another node: check it against the registry and hand it to its owner
+    private boolean forward(String channelId, String token, String resourceState) {
+        byte[] registered = sharedStateBackend.get(SHARED_CHANNELS, channelId);
+        SharedChannel shared = registered != null ? SharedChannel.parse(new String(registered, StandardCharsets.UTF_8)) : null;
+        if (shared == null || shared.expiration() <= System.currentTimeMillis()
+                || !MessageDigest.isEqual(shared.tokenHash().getBytes(StandardCharsets.UTF_8), hash(token).getBytes(StandardCharsets.UTF_8))) {
+            meterRegistry.counter("calendar.watch.notifications", "result", "rejected").increment();
+            return false;
+        }
+        meterRegistry.counter("calendar.watch.notifications", "result", "forwarded").increment();
+        if (!"sync".equals(resourceState)) {
+            sharedStateBackend.publish(SHARED_NOTIFICATIONS, channelId);
+        }
+        return true;
+    }
+
+    private void onForwardedNotification(String channelId) {
+        WatchedChannel channel = channels.get(channelId);
+        if (channel != null) {
+            executorService.execute(() -> refresh(channel));
+        }
+    }
+
+    /**
+     * Renew channels that expire within the renew-before window; close those whose replica was evicted.
+     * A channel whose renewal fails stays open and is retried on the next run until it expires.
+     */
+    @Scheduled(fixedDelayString = "${calendar.watch.renew-interval:PT5M}",
+            initialDelayString = "${calendar.watch.renew-interval:PT5M}")
+    public void renewExpiringChannels() {
+        long now = System.currentTimeMillis();
+        long renewAt = now + renewBefore.toMillis();
+        for (WatchedChannel channel : List.copyOf(channels.values())) {
+            if (channel.expiration() <= now) {
+                channels.remove(channel.id());
+                channelByReplica.remove(channel.replica(), channel.id());
+                unregister(channel.id());
+            } else if (channel.expiration() <= renewAt) {
+                executorService.execute(() -> renew(channel));
+            }
+        }
+        if (sharedStateBackend != null) {
+            // Channels of nodes that stopped without closing them
+            for (String channelId : sharedStateBackend.keys(SHARED_CHANNELS)) {
+                byte[] registered = sharedStateBackend.get(SHARED_CHANNELS, channelId);
+                SharedChannel shared = registered != null ? SharedChannel.parse(new String(registered, StandardCharsets.UTF_8)) : null;
+                if (shared == null || shared.expiration() <= now) {
+                    unregister(channelId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Otherwise Google keeps notifying this address until the channels expire
+        channels.values().forEach(this::stop);
+    }
+
+    private void renew(WatchedChannel channel) {
+        if (!calendarReplicaService.isLoaded(channel.replica())) {
+            log.debug("Replica of {} is no longer loaded, closing its channel", channel.replica().getCalendarId());
+            channelByReplica.remove(channel.replica(), channel.id());
+            stop(channel);
+        } else if (watch(channel.userId(), channel.replica())) {
+            stop(channel);
+        }
+    }
+
+    /**
+     * Open a channel for the calendar unless one is open and not yet due for renewal.
+     *
+     * @return whether the calendar is now watched by a channel that is not due for renewal
+     */
+    private boolean watch(String userId, CalendarReplica replica) {
+        String calendarId = replica.getCalendarId();
+        String currentId = channelByReplica.get(replica);
+        WatchedChannel current = currentId != null ? channels.get(currentId) : null;
+        if (current != null && current.expiration() > System.currentTimeMillis() + renewBefore.toMillis()) {
+            return true;
+        }
+        String token = UUID.randomUUID().toString();
+        Channel request = new Channel()
+                .setId(UUID.randomUUID().toString())
+                .setType("web_hook")
+                .setAddress(address)
+                .setToken(token)
+                .setParams(Map.of("ttl", String.valueOf(ttl.toSeconds())));
+        try {
+            Calendar calendarService = googleOAuthService.getCalendarService(userId);
+            Channel created = RequestPriority.BACKGROUND.run(() ->
+                    googleIoExecutor.execute(userId, calendarService.events().watch(calendarId, request)));
+            long expiration = created.getExpiration() != null ? created.getExpiration() : System.currentTimeMillis() + ttl.toMillis();
+            WatchedChannel channel = new WatchedChannel(request.getId(), created.getResourceId(), token, userId, replica, expiration);
+            channels.put(channel.id(), channel);
+            channelByReplica.put(replica, channel.id());
+            register(channel);
+            replica.markWatched(expiration);
+            log.info("Watching {} for {} through channel {} until {}", calendarId, userId, channel.id(), expiration);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // The replica keeps polling at its normal staleness
+            log.warn("Could not open a push channel for {}: {}", calendarId, e.getMessage());
+            return false;
+        }
+    }
+
+    private void refresh(WatchedChannel channel) {
+        try {
+            boolean loaded = RequestPriority.BACKGROUND.run(() -> calendarReplicaService.refresh(channel.userId(), channel.replica()));
+            if (!loaded) {
+                log.debug("Notification for {} arrived after its replica was evicted", channel.replica().getCalendarId());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Refresh of {} after a notification failed: {}", channel.replica().getCalendarId(), e.getMessage());
+        }
+    }
+
+    private void stop(WatchedChannel channel) {
+        channels.remove(channel.id());
+        unregister(channel.id());
+        try {
+            Calendar calendarService = googleOAuthService.getCalendarService(channel.userId());
+            RequestPriority.BACKGROUND.run(() -> googleIoExecutor.execute(channel.userId(), calendarService.channels()
+                    .stop(new Channel().setId(channel.id()).setResourceId(channel.resourceId()))));
+        } catch (IOException | RuntimeException e) {
+            // It expires on its own; notifications for it are rejected in the meantime
+            log.debug("Could not stop channel {}: {}", channel.id(), e.getMessage());
+        }
+    }
+
+    private void register(WatchedChannel channel) {
+        if (sharedStateBackend != null) {
+            String registered = new SharedChannel(channel.expiration(), hash(channel.token())).format();
+            sharedStateBackend.put(SHARED_CHANNELS, channel.id(), registered.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void unregister(String channelId) {
+        if (sharedStateBackend != null) {
+            sharedStateBackend.delete(SHARED_CHANNELS, channelId);
+        }
+    }
+
+    // Only a hash of the token leaves the node; it is all another node needs to verify a notification
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record SharedChannel(long expiration, String tokenHash) {
+
+        String format() {
+            return expiration + "|" + tokenHash;
+        }
+
+        static SharedChannel parse(String value) {
+            int separator = value.indexOf('|');
+            return separator > 0 ? new SharedChannel(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1)) : null;
+        }
+    }
+
+    private record WatchedChannel(String id, String resourceId, String token, String userId, CalendarReplica replica,
+                                  long expiration) {
+    }
+}
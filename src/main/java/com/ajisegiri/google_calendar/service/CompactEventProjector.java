@@ -0,0 +1,171 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.BatchEventResult;
+import com.ajisegiri.google_calendar.api.CompactBatchEventResult;
+import com.ajisegiri.google_calendar.api.CompactEventsResponse;
+import com.ajisegiri.google_calendar.api.EventSummary;
+import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.services.calendar.model.EntryPoint;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventAttendee;
+import com.google.api.services.calendar.model.EventDateTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Projects Google events onto {@link EventSummary} for tool results and keeps the result within a token
+ * budget. Tokens are approximated as serialized JSON characters / 4, which is close enough for GPT models
+ * on this kind of content and far cheaper than running a tokenizer per event.
+ */
+@Component
+public class CompactEventProjector {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final ObjectMapper objectMapper;
+    private final int tokenBudget;
+    private final int descriptionMaxChars;
+
+    public CompactEventProjector(ObjectMapper objectMapper,
+                                 @Value("${calendar.tools.token-budget:3000}") int tokenBudget,
+                                 @Value("${calendar.tools.description-max-chars:200}") int descriptionMaxChars) {
+        this.objectMapper = objectMapper;
+        this.tokenBudget = tokenBudget;
+        this.descriptionMaxChars = descriptionMaxChars;
+    }
+
+    /**
+     * Project a page of events, stopping once the token budget is used up.
+     *
+     * @param offset position of the page's first event, when pages are offset based. When the page is cut
+     *               short the continuation handle points at the first omitted event; without an offset the
+     *               original next page token is kept only if nothing was cut
+     */
+    public CompactEventsResponse project(EventsResponse response, Integer offset) {
+        if (response.getErrorMessage() != null) {
+            return CompactEventsResponse.error(response.getErrorMessage());
+        }
+        List<Event> events = response.getEvents() != null ? response.getEvents() : List.of();
+
+        List<EventSummary> summaries = new ArrayList<>();
+        int usedTokens = 0;
+        for (Event event : events) {
+            EventSummary summary = summarize(event);
+            int tokens = estimateTokens(summary);
+            if (!summaries.isEmpty() && usedTokens + tokens > tokenBudget) {
+                break;
+            }
+            summaries.add(summary);
+            usedTokens += tokens;
+        }
+
+        if (summaries.size() == events.size()) {
+            return new CompactEventsResponse(summaries, response.getNextPageToken(), false, null, null);
+        }
+
+        int omitted = events.size() - summaries.size();
+        String continuation = offset != null ? String.valueOf(offset + summaries.size()) : null;
+        String note = "Showing %d of %d events in this page (%s to %s). %s".formatted(
+                summaries.size(), events.size(), summaries.get(0).getStart(), summaries.get(summaries.size() - 1).getStart(),
+                continuation != null
+                        ? "Call again with page=" + continuation + " to see the remaining " + omitted + "."
+                        : omitted + " more were left out; narrow the date range to see them.");
+        return new CompactEventsResponse(summaries, continuation, true, note, null);
+    }
+
+    /**
+     * Project the results of a batch of mutations. Every operation keeps its result, but once the token
+     * budget is used up the remaining ones carry only the event id and status.
+     */
+    public List<CompactBatchEventResult> project(List<BatchEventResult> results) {
+        List<CompactBatchEventResult> compact = new ArrayList<>(results.size());
+        int usedTokens = 0;
+        for (BatchEventResult result : results) {
+            EventSummary summary = result.getEvent() != null ? summarize(result.getEvent()) : null;
+            if (summary != null) {
+                int tokens = estimateTokens(summary);
+                if (usedTokens + tokens > tokenBudget) {
+                    summary = null;
+                } else {
+                    usedTokens += tokens;
+                }
+            }
+            compact.add(new CompactBatchEventResult(result.getIndex(), result.getType(), result.getEventId(),
+                    result.isSuccess(), summary, result.getErrorMessage()));
+        }
+        return compact;
+    }
+
+    public EventSummary summarize(Event event) {
+        return EventSummary.builder()
+                .id(event.getId())
+                .summary(event.getSummary())
+                .start(format(event.getStart()))
+                .end(format(event.getEnd()))
+                .timeZone(event.getStart() != null ? event.getStart().getTimeZone() : null)
+                .location(event.getLocation())
+                .description(truncate(event.getDescription()))
+                .attendees(event.getAttendees() == null ? null : event.getAttendees().stream()
+                        .map(EventAttendee::getEmail)
+                        .filter(Objects::nonNull)
+                        .toList())
+                .meetLink(meetLink(event))
+                .build();
+    }
+
+    /**
+     * Compact JSON for a single event, e.g. the result of a create or update tool call
+     */
+    public String describe(Event event) {
+        try {
+            return objectMapper.writeValueAsString(summarize(event));
+        } catch (JsonProcessingException e) {
+            return summarize(event).toString();
+        }
+    }
+
+    private int estimateTokens(EventSummary summary) {
+        try {
+            return objectMapper.writeValueAsString(summary).length() / CHARS_PER_TOKEN + 1;
+        } catch (JsonProcessingException e) {
+            return tokenBudget;
+        }
+    }
+
+    private String format(EventDateTime eventDateTime) {
+        if (eventDateTime == null) {
+            return null;
+        }
+        if (eventDateTime.getDateTime() != null) {
+            return eventDateTime.getDateTime().toStringRfc3339();
+        }
+        return eventDateTime.getDate() != null ? eventDateTime.getDate().toStringRfc3339() : null;
+    }
+
+    private String truncate(String description) {
+        if (description == null || description.length() <= descriptionMaxChars) {
+            return description;
+        }
+        return description.substring(0, descriptionMaxChars) + "…";
+    }
+
+    private String meetLink(Event event) {
+        if (event.getHangoutLink() != null) {
+            return event.getHangoutLink();
+        }
+        if (event.getConferenceData() == null || event.getConferenceData().getEntryPoints() == null) {
+            return null;
+        }
+        return event.getConferenceData().getEntryPoints().stream()
+                .filter(entryPoint -> "video".equals(entryPoint.getEntryPointType()))
+                .map(EntryPoint::getUri)
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,276 @@
+package com.ajisegiri.google_calendar.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.MessageAggregator;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Chat memory advisor that renders history into the system prompt within a token budget, instead of
+ * pasting every retrieved message like {@code PromptChatMemoryAdvisor}:
+ * <ul>
+ *     <li>the most recent messages are kept verbatim;</li>
+ *     <li>older messages are kept while the budget allows, with long ones clipped;</li>
+ *     <li>whatever no longer fits is folded into a running summary. Folding calls the model in the
+ *     background after the turn, on its own executor, so the summary is used from the next turn on and
+ *     never adds latency.</li>
+ * </ul>
+ * Only the user's messages and the model's final replies are stored; tool calls run within the turn.
+ * The summary is stored in the chat memory too, under the conversation id plus {@value #SUMMARY_SUFFIX},
+ * so it survives restarts and is shared between nodes like the conversation itself.
+ */
+@Slf4j
+@Component
+public class CompactingChatMemoryAdvisor extends AbstractChatMemoryAdvisor<ChatMemory> {
+
+    private static final String MEMORY_SYSTEM_TEXT = """
+
+            Use the conversation memory from the MEMORY section to provide accurate answers.
+            ---------------------
+            MEMORY:
+            {memory}
+            ---------------------
+            """;
+
+    private static final String SUMMARY_INSTRUCTIONS = """
+            You maintain a running summary of a calendar support conversation. Merge the new messages into the
+            existing summary. Keep names, dates, times, time zones, event ids and decisions the user made; drop
+            pleasantries and event details that can be fetched again. Reply with the updated summary only.
+            """;
+
+    static final String SUMMARY_SUFFIX = ":summary";
+
+    private final ChatModel chatModel;
+    private final Executor summaryExecutor;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    private final Set<String> folding = ConcurrentHashMap.newKeySet();
+    private final DistributionSummary tokensBefore;
+    private final DistributionSummary tokensAfter;
+    private final int tokenBudget;
+    private final int recentMessages;
+    private final int compactMessageChars;
+
+    public CompactingChatMemoryAdvisor(ChatMemory chatMemory, ChatModel chatModel, MeterRegistry meterRegistry,
+                                       @Qualifier("chatSummaryExecutorService") Executor summaryExecutor,
+                                       @Value("${calendar.chat-memory.token-budget:2000}") int tokenBudget,
+                                       @Value("${calendar.chat-memory.recent-messages:8}") int recentMessages,
+                                       @Value("${calendar.chat-memory.compact-message-chars:300}") int compactMessageChars) {
+        super(chatMemory, DEFAULT_CHAT_MEMORY_CONVERSATION_ID, DEFAULT_CHAT_MEMORY_RESPONSE_SIZE, true,
+                Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER);
+        this.chatModel = chatModel;
+        this.summaryExecutor = summaryExecutor;
+        this.tokenBudget = tokenBudget;
+        this.recentMessages = recentMessages;
+        this.compactMessageChars = compactMessageChars;
+        this.tokensBefore = DistributionSummary.builder("chat.memory.prompt.tokens")
+                .description("Memory tokens in the prompt before and after compaction")
+                .tag("stage", "before")
+                .register(meterRegistry);
+        this.tokensAfter = DistributionSummary.builder("chat.memory.prompt.tokens")
+                .description("Memory tokens in the prompt before and after compaction")
+                .tag("stage", "after")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return "CompactingChatMemoryAdvisor";
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        AdvisedResponse advisedResponse = chain.nextAroundCall(before(advisedRequest));
+        after(advisedResponse);
+        return advisedResponse;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        Flux<AdvisedResponse> advisedResponses = doNextWithProtectFromBlockingBefore(advisedRequest, chain, this::before);
+        return new MessageAggregator().aggregateAdvisedResponse(advisedResponses, this::after);
+    }
+
+    private AdvisedRequest before(AdvisedRequest request) {
+        String conversationId = doGetConversationId(request.adviseContext());
+        List<Message> history = getChatMemoryStore().get(conversationId, doGetChatMemoryRetrieveSize(request.adviseContext()));
+
+        Map<String, Object> systemParams = new HashMap<>(request.systemParams());
+        systemParams.put("memory", memory(conversationId, history));
+        AdvisedRequest advisedRequest = AdvisedRequest.from(request)
+                .systemText(request.systemText() + MEMORY_SYSTEM_TEXT)
+                .systemParams(systemParams)
+                .build();
+
+        getChatMemoryStore().add(conversationId, new UserMessage(request.userText(), request.media()));
+        return advisedRequest;
+    }
+
+    /**
+     * The memory text for the prompt. Messages that fell out of it and are not in the summary yet are
+     * folded into the summary in the background.
+     */
+    String memory(String conversationId, List<Message> history) {
+        Compaction compaction = compact(conversationId, history);
+        int before = tokenCountEstimator.estimate(history.stream()
+                .map(CompactingChatMemoryAdvisor::render)
+                .collect(Collectors.joining("\n")));
+        int after = tokenCountEstimator.estimate(compaction.memory());
+        tokensBefore.record(before);
+        tokensAfter.record(after);
+        log.info("Memory for conversation {}: {} messages, {} tokens before compaction, {} after",
+                conversationId, history.size(), before, after);
+        if (!compaction.unfolded().isEmpty()) {
+            foldAsync(conversationId, compaction.unfolded());
+        }
+        return compaction.memory();
+    }
+
+    private void after(AdvisedResponse advisedResponse) {
+        List<Message> assistantMessages = advisedResponse.response().getResults().stream()
+                .map(generation -> (Message) generation.getOutput())
+                .toList();
+        getChatMemoryStore().add(doGetConversationId(advisedResponse.adviseContext()), assistantMessages);
+    }
+
+    /**
+     * Walk history newest first: recent messages verbatim, then compacted ones while the budget lasts.
+     * Messages that do not fit and are not yet part of the summary are returned for folding.
+     */
+    private Compaction compact(String conversationId, List<Message> history) {
+        RunningSummary summary = summary(conversationId);
+        String summaryText = summary != null ? "Summary of earlier conversation: " + summary.text() : null;
+        int remaining = tokenBudget - (summaryText != null ? tokenCountEstimator.estimate(summaryText) : 0);
+
+        List<String> kept = new ArrayList<>();
+        int firstKept = history.size();
+        for (int i = history.size() - 1; i >= 0; i--) {
+            boolean recent = history.size() - i <= recentMessages;
+            String line = recent ? render(history.get(i)) : renderCompact(history.get(i));
+            int tokens = tokenCountEstimator.estimate(line);
+            // The latest message is always kept, even when it alone exceeds the budget
+            if (tokens > remaining && !kept.isEmpty()) {
+                break;
+            }
+            kept.add(line);
+            remaining -= tokens;
+            firstKept = i;
+        }
+
+        // Everything before the first kept message is covered by the summary, up to the last message folded into it
+        List<Message> dropped = history.subList(0, firstKept);
+        int foldedUpTo = summary != null ? lastIndexOf(dropped, summary.lastFolded()) : -1;
+        List<Message> unfolded = List.copyOf(dropped.subList(foldedUpTo + 1, dropped.size()));
+
+        List<String> lines = new ArrayList<>(kept.size() + 1);
+        if (summaryText != null) {
+            lines.add(summaryText);
+        }
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            lines.add(kept.get(i));
+        }
+        return new Compaction(String.join("\n", lines), unfolded);
+    }
+
+    private void foldAsync(String conversationId, List<Message> messages) {
+        if (!folding.add(conversationId)) {
+            return;
+        }
+        try {
+            summaryExecutor.execute(() -> fold(conversationId, messages));
+        } catch (RejectedExecutionException e) {
+            folding.remove(conversationId);
+            log.debug("Summary backlog full, conversation {} is folded on a later turn", conversationId);
+        }
+    }
+
+    private void fold(String conversationId, List<Message> messages) {
+        try {
+            RunningSummary current = summary(conversationId);
+            String transcript = messages.stream().map(this::renderCompact).collect(Collectors.joining("\n"));
+            String userText = "Existing summary:\n" + (current != null ? current.text() : "(none)")
+                    + "\n\nNew messages:\n" + transcript;
+            String text = chatModel.call(new Prompt(List.of(new SystemMessage(SUMMARY_INSTRUCTIONS), new UserMessage(userText))))
+                    .getResult().getOutput().getText();
+            saveSummary(conversationId, new RunningSummary(text, fingerprint(messages.get(messages.size() - 1))));
+            log.debug("Folded {} messages into the summary of conversation {}", messages.size(), conversationId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to update summary of conversation {}: {}", conversationId, e.getMessage());
+        } finally {
+            folding.remove(conversationId);
+        }
+    }
+
+    // Stored as two messages: the fingerprint of the last folded message, then the summary text
+    private RunningSummary summary(String conversationId) {
+        List<Message> stored = getChatMemoryStore().get(conversationId + SUMMARY_SUFFIX, 2);
+        return stored.size() == 2 ? new RunningSummary(stored.get(1).getText(), stored.get(0).getText()) : null;
+    }
+
+    private void saveSummary(String conversationId, RunningSummary summary) {
+        String summaryId = conversationId + SUMMARY_SUFFIX;
+        getChatMemoryStore().clear(summaryId);
+        getChatMemoryStore().add(summaryId, List.of(new SystemMessage(summary.lastFolded()), new SystemMessage(summary.text())));
+    }
+
+    private static String render(Message message) {
+        return message.getMessageType() + ":" + Objects.requireNonNullElse(message.getText(), "");
+    }
+
+    private String renderCompact(Message message) {
+        String text = Objects.requireNonNullElse(message.getText(), "");
+        return message.getMessageType() + ":" + (text.length() > compactMessageChars
+                ? text.substring(0, compactMessageChars) + "... [clipped]"
+                : text);
+    }
+
+    private static int lastIndexOf(List<Message> messages, String fingerprint) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (fingerprint(messages.get(i)).equals(fingerprint)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String fingerprint(Message message) {
+        MessageType type = message.getMessageType();
+        String text = Objects.requireNonNullElse(message.getText(), "");
+        return type + ":" + text.length() + ":" + text.hashCode();
+    }
+
+    private record Compaction(String memory, List<Message> unfolded) {
+    }
+
+    private record RunningSummary(String text, String lastFolded) {
+    }
+}
@@ -0,0 +1,182 @@
+package com.ajisegiri.google_calendar.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.util.CollectionUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes all tool calls of one assistant message concurrently and returns the responses in the order
+ * the model issued the calls. Turn latency becomes that of the slowest call instead of the sum of all of
+ * them. The calls share one deadline, the tool timeout after they were submitted; a call still running
+ * then is cancelled and answered with an error. Tool definitions are resolved by the default manager.
+ * Every call runs through the {@link ToolCallInterceptor}, which sees the whole set of calls.
+ * <p>
+ * Each call is a {@code calendar.tool} observation tagged with the tool name and outcome: {@code success},
+ * {@code error} when the tool reported a failure through {@link ToolOutcome}, or {@code exception}. Its span
+ * is a child of the chat's span and the parent of the Google calls the tool makes.
+ */
+@Slf4j
+public class ConcurrentToolCallingManager implements ToolCallingManager {
+
+    private final ToolCallingManager delegate;
+    private final ToolCallbackResolver toolCallbackResolver;
+    private final ExecutorService executorService;
+    private final ObservationRegistry observationRegistry;
+    private final ToolCallInterceptor interceptor;
+    private final Duration toolTimeout;
+
+    public ConcurrentToolCallingManager(ToolCallingManager delegate, ToolCallbackResolver toolCallbackResolver,
+                                        ExecutorService executorService, ObservationRegistry observationRegistry,
+                                        ToolCallInterceptor interceptor, Duration toolTimeout) {
+        this.delegate = delegate;
+        this.toolCallbackResolver = toolCallbackResolver;
+        this.executorService = executorService;
+        this.observationRegistry = observationRegistry;
+        this.interceptor = interceptor;
+        this.toolTimeout = toolTimeout;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(output -> !CollectionUtils.isEmpty(output.getToolCalls()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+
+        ToolContext toolContext = buildToolContext(prompt, assistantMessage);
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        List<ToolCallback> callbacks = toolCalls.stream()
+                .map(toolCall -> resolve(prompt, toolCall.name()))
+                .toList();
+
+        Observation parent = observationRegistry.getCurrentObservation();
+        List<Future<String>> results = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            ToolCallback callback = callbacks.get(i);
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            Observation observation = Observation.createNotStarted("calendar.tool", observationRegistry)
+                    .contextualName("tool " + toolCall.name())
+                    .lowCardinalityKeyValue("tool", toolCall.name())
+                    .lowCardinalityKeyValue("outcome", "unknown")
+                    .parentObservation(parent);
+            results.add(executorService.submit(() -> interceptor.intercept(toolCalls, toolCall,
+                    () -> call(observation, callback, toolCall.arguments(), toolContext))));
+        }
+        if (toolCalls.size() > 1) {
+            log.info("Executing {} tool calls concurrently", toolCalls.size());
+        }
+
+        // All calls run in parallel, so one shared deadline gives each call the full timeout
+        long deadline = System.nanoTime() + toolTimeout.toNanos();
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            String result = await(toolCall.name(), results.get(i), deadline);
+            responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), result));
+        }
+
+        boolean returnDirect = callbacks.stream().allMatch(callback -> callback.getToolMetadata().returnDirect());
+
+        List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(new ToolResponseMessage(responses, Map.of()));
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    private String call(Observation observation, ToolCallback callback, String arguments, ToolContext toolContext) {
+        observation.start();
+        ToolOutcome.takeFailure();
+        try (Observation.Scope scope = observation.openScope()) {
+            String result = callback.call(arguments, toolContext);
+            observation.lowCardinalityKeyValue("outcome", ToolOutcome.takeFailure() != null ? "error" : "success");
+            return result;
+        } catch (RuntimeException e) {
+            observation.lowCardinalityKeyValue("outcome", "exception");
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private String await(String toolName, Future<String> result, long deadline) {
+        try {
+            return result.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            log.warn("Tool call {} timed out after {}", toolName, toolTimeout);
+            return "Error details: " + toolName + " timed out after " + toolTimeout.toMillis() + " ms";
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            return "Error details: " + toolName + " was interrupted";
+        } catch (ExecutionException e) {
+            String errorMessage = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.error("Tool call {} failed: {}", toolName, errorMessage, e.getCause());
+            return "Error details: " + errorMessage;
+        }
+    }
+
+    // Options and resolver still hand out the deprecated FunctionCallback type; every tool here is a ToolCallback
+    private ToolCallback resolve(Prompt prompt, String toolName) {
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options && options.getToolCallbacks() != null) {
+            for (FunctionCallback callback : options.getToolCallbacks()) {
+                if (callback instanceof ToolCallback toolCallback && toolName.equals(toolCallback.getToolDefinition().name())) {
+                    return toolCallback;
+                }
+            }
+        }
+        if (toolCallbackResolver.resolve(toolName) instanceof ToolCallback toolCallback) {
+            return toolCallback;
+        }
+        throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
+    }
+
+    // Same tool context the default manager builds: the configured context plus the history up to the calls
+    private ToolContext buildToolContext(Prompt prompt, AssistantMessage assistantMessage) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options) || CollectionUtils.isEmpty(options.getToolContext())) {
+            return new ToolContext(Map.of());
+        }
+        Map<String, Object> context = new HashMap<>(options.getToolContext());
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(assistantMessage);
+        context.put(ToolContext.TOOL_CALL_HISTORY, history);
+        return new ToolContext(context);
+    }
+}
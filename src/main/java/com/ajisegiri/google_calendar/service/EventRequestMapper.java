@@ -0,0 +1,118 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.CalendarEventRequest;
+import com.google.api.client.util.Data;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.ConferenceData;
+import com.google.api.services.calendar.model.ConferenceSolutionKey;
+import com.google.api.services.calendar.model.CreateConferenceRequest;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventAttendee;
+import com.google.api.services.calendar.model.EventDateTime;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Turns a tool's or client's {@link CalendarEventRequest} into the Google {@link Event} to insert, or the
+ * patch to apply. Pure conversion, with no collaborators, so it can be benchmarked on its own.
+ */
+final class EventRequestMapper {
+
+    private static final DateTimeFormatter RFC3339_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
+
+    private EventRequestMapper() {
+    }
+
+    static Event buildEvent(CalendarEventRequest request) {
+        Event event = new Event()
+                .setSummary(request.getSummary())
+                .setLocation(request.getLocation())
+                .setDescription(request.getDescription());
+
+        event.setStart(toEventDateTime(request.getStartDateTime(), request.getTimeZone()));
+        event.setEnd(toEventDateTime(request.getEndDateTime(), request.getTimeZone()));
+
+        // Add attendees if provided
+        if (request.getAttendees() != null && !request.getAttendees().isEmpty()) {
+            event.setAttendees(toAttendees(request.getAttendees()));
+        }
+
+        // Conditionally add Google Meet link
+        if (Boolean.TRUE.equals(request.getOnlineMeeting())) {
+            event.setConferenceData(newMeetConferenceData());
+        }
+        return event;
+    }
+
+    /**
+     * Convert a local ISO date time in the given IANA zone to an EventDateTime carrying the zone offset
+     */
+    static EventDateTime toEventDateTime(String localDateTime, String timeZone) {
+        ZonedDateTime zoned = LocalDateTime.parse(localDateTime, DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                .atZone(ZoneId.of(timeZone));
+        // DateTime needs RFC3339 with the offset, e.g. 2025-03-24T10:00:00+01:00
+        return new EventDateTime()
+                .setDateTime(new DateTime(zoned.format(RFC3339_FORMATTER)))
+                .setTimeZone(timeZone);
+    }
+
+    static Event buildPatch(CalendarEventRequest request, boolean currentlyHasOnlineMeeting) {
+        Event patch = new Event();
+        if (request.getSummary() != null) {
+            patch.setSummary(request.getSummary());
+        }
+
+        if (request.getLocation() != null) {
+            patch.setLocation(request.getLocation());
+        }
+
+        if (request.getDescription() != null) {
+            patch.setDescription(request.getDescription());
+        }
+
+        // Patches merge nested objects, so clear 'date' in case the event was an all-day event
+        if (request.getStartDateTime() != null && request.getTimeZone() != null) {
+            patch.setStart(toEventDateTime(request.getStartDateTime(), request.getTimeZone())
+                    .setDate(Data.nullOf(DateTime.class)));
+        }
+
+        if (request.getEndDateTime() != null && request.getTimeZone() != null) {
+            patch.setEnd(toEventDateTime(request.getEndDateTime(), request.getTimeZone())
+                    .setDate(Data.nullOf(DateTime.class)));
+        }
+
+        if (request.getAttendees() != null) {
+            patch.setAttendees(toAttendees(request.getAttendees()));
+        }
+
+        if (Boolean.TRUE.equals(request.getOnlineMeeting()) && !currentlyHasOnlineMeeting) {
+            // Add Google Meet link if it doesn't exist yet
+            patch.setConferenceData(newMeetConferenceData());
+        } else if (Boolean.FALSE.equals(request.getOnlineMeeting())) {
+            // Remove Google Meet link only when asked to, a no-op if there is none
+            patch.setConferenceData(Data.nullOf(ConferenceData.class));
+        }
+        return patch;
+    }
+
+    private static List<EventAttendee> toAttendees(List<String> emails) {
+        return emails.stream()
+                .map(email -> new EventAttendee().setEmail(email))
+                .toList();
+    }
+
+    private static ConferenceData newMeetConferenceData() {
+        ConferenceData conferenceData = new ConferenceData();
+        CreateConferenceRequest createConferenceRequest = new CreateConferenceRequest();
+        createConferenceRequest.setRequestId("meet-" + System.currentTimeMillis());
+        ConferenceSolutionKey conferenceSolutionKey = new ConferenceSolutionKey();
+        conferenceSolutionKey.setType("hangoutsMeet");
+        createConferenceRequest.setConferenceSolutionKey(conferenceSolutionKey);
+        conferenceData.setCreateRequest(createConferenceRequest);
+        return conferenceData;
+    }
+}
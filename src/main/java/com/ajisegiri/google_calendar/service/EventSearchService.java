@@ -0,0 +1,75 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.google.api.services.calendar.model.Event;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers event searches from the local replica instead of Google's q parameter: the replica's text index
+ * for word, prefix and typo-tolerant matches, fused with the semantic index when it is enabled. Any date
+ * range can be searched without extra round trips once the replica is synced.
+ */
+@Service
+public class EventSearchService {
+
+    // Reciprocal rank fusion constant; damps the influence of the exact rank at the top of each list
+    private static final int RRF_K = 60;
+
+    private final CalendarReplicaService calendarReplicaService;
+    private final SemanticEventIndex semanticEventIndex;
+    private final int semanticTopK;
+
+    public EventSearchService(CalendarReplicaService calendarReplicaService, ObjectProvider<SemanticEventIndex> semanticEventIndex,
+                              @Value("${calendar.search.semantic.top-k:50}") int semanticTopK) {
+        this.calendarReplicaService = calendarReplicaService;
+        this.semanticEventIndex = semanticEventIndex.getIfAvailable();
+        this.semanticTopK = semanticTopK;
+    }
+
+    /**
+     * Events matching the query and overlapping [startMillis, endMillis), best match first. The page token
+     * is an offset into the result.
+     */
+    public EventsResponse search(String userId, String calendarId, String query, long startMillis, long endMillis,
+                                 String page, int pageSize) throws IOException {
+        CalendarReplica replica = calendarReplicaService.getSyncedReplica(userId, calendarId);
+
+        Map<String, Double> fused = new HashMap<>();
+        List<EventTextIndex.Hit> textHits = replica.search(query);
+        for (int rank = 0; rank < textHits.size(); rank++) {
+            fused.merge(textHits.get(rank).eventId(), 1.0 / (RRF_K + rank + 1), Double::sum);
+        }
+        if (semanticEventIndex != null) {
+            List<String> semanticHits = semanticEventIndex.search(replica.getScope(), calendarId, query,
+                    startMillis, endMillis, semanticTopK);
+            for (int rank = 0; rank < semanticHits.size(); rank++) {
+                fused.merge(semanticHits.get(rank), 1.0 / (RRF_K + rank + 1), Double::sum);
+            }
+        }
+
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(fused.entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()));
+        List<Event> matches = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : ranked) {
+            Event event = replica.get(entry.getKey());
+            if (event != null && CalendarReplica.startMillis(event) < endMillis && CalendarReplica.endMillis(event) > startMillis) {
+                matches.add(event);
+            }
+        }
+
+        int offset = PageTokens.offset(page);
+        int from = Math.min(offset, matches.size());
+        int to = Math.min(from + Math.max(pageSize, 1), matches.size());
+        String nextPageToken = to < matches.size() ? String.valueOf(to) : null;
+        return new EventsResponse(List.copyOf(matches.subList(from, to)), nextPageToken, null);
+    }
+}
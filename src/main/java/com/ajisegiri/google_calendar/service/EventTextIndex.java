@@ -0,0 +1,225 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventAttendee;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over event summary, description, location and attendees. Every query word must match
+ * (exactly, as a prefix of an indexed word, or within one typo for longer words); hits are scored by
+ * field weight, match quality and how rare the matched word is. Updates replace an event's postings, so
+ * the index follows the replica event by event.
+ */
+public final class EventTextIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "at", "for", "in", "of", "on", "or", "the", "to", "with");
+
+    private static final float SUMMARY_WEIGHT = 3f;
+    private static final float ATTENDEE_WEIGHT = 2f;
+    private static final float LOCATION_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final float PREFIX_MATCH = 0.7f;
+    private static final float FUZZY_MATCH = 0.5f;
+    private static final int MIN_PREFIX_LENGTH = 3;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    // term -> event id -> field-weighted term frequency
+    private final NavigableMap<String, Map<String, Float>> postings = new TreeMap<>();
+    private final Map<String, Set<String>> termsByEvent = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public record Hit(String eventId, double score) {
+    }
+
+    public void put(Event event) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, event.getSummary(), SUMMARY_WEIGHT);
+        addTerms(terms, event.getDescription(), DESCRIPTION_WEIGHT);
+        addTerms(terms, event.getLocation(), LOCATION_WEIGHT);
+        if (event.getAttendees() != null) {
+            for (EventAttendee attendee : event.getAttendees()) {
+                addTerms(terms, attendee.getEmail(), ATTENDEE_WEIGHT);
+                addTerms(terms, attendee.getDisplayName(), ATTENDEE_WEIGHT);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(event.getId());
+            terms.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(event.getId(), weight));
+            termsByEvent.put(event.getId(), terms.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String eventId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByEvent.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return termsByEvent.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Events matching every word of the query, best first.
+     */
+    public List<Hit> search(String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            double documents = Math.max(termsByEvent.size(), 1);
+            Map<String, Double> scores = null;
+            for (String word : words) {
+                Map<String, Double> wordScores = new HashMap<>();
+                for (Map.Entry<String, Float> match : matchingTerms(word).entrySet()) {
+                    Map<String, Float> postingList = postings.get(match.getKey());
+                    double idf = Math.log(1 + documents / postingList.size());
+                    postingList.forEach((eventId, weight) ->
+                            wordScores.merge(eventId, match.getValue() * weight * idf, Math::max));
+                }
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    // Every word has to match
+                    scores.keySet().retainAll(wordScores.keySet());
+                    scores.replaceAll((eventId, score) -> score + wordScores.get(eventId));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(scores.size());
+            scores.forEach((eventId, score) -> hits.add(new Hit(eventId, score)));
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::eventId));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lower-cased words without accents or stop words, e.g. "Café review w/ Zoë" -> [cafe, review, w, zoe].
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String word : NON_WORD.split(folded)) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // Indexed terms the word matches, with the match quality
+    private Map<String, Float> matchingTerms(String word) {
+        Map<String, Float> matches = new HashMap<>();
+        if (postings.containsKey(word)) {
+            matches.put(word, 1f);
+        }
+        if (word.length() >= MIN_PREFIX_LENGTH) {
+            for (String term : postings.subMap(word, false, word + Character.MAX_VALUE, false).keySet()) {
+                matches.putIfAbsent(term, PREFIX_MATCH);
+            }
+        }
+        if (word.length() >= MIN_FUZZY_LENGTH) {
+            // Typos rarely hit the first letter, which keeps the scan to one slice of the dictionary
+            String first = word.substring(0, 1);
+            for (String term : postings.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+                if (Math.abs(term.length() - word.length()) <= 1 && withinOneEdit(word, term)) {
+                    matches.putIfAbsent(term, FUZZY_MATCH);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void removeLocked(String eventId) {
+        Set<String> terms = termsByEvent.remove(eventId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<String, Float> postingList = postings.get(term);
+            postingList.remove(eventId);
+            if (postingList.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String word : tokenize(text)) {
+            terms.merge(word, weight, Float::sum);
+        }
+    }
+
+    /**
+     * True if one insertion, deletion, substitution or swap of adjacent letters (or none) turns a into b.
+     */
+    static boolean withinOneEdit(String a, String b) {
+        if (a.length() > b.length()) {
+            return withinOneEdit(b, a);
+        }
+        if (b.length() - a.length() > 1) {
+            return false;
+        }
+        int i = 0;
+        while (i < a.length() && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (a.length() == b.length()) {
+            if (i >= a.length() - 1) {
+                return true;
+            }
+            boolean substituted = a.substring(i + 1).equals(b.substring(i + 1));
+            boolean transposed = a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i)
+                    && a.substring(i + 2).equals(b.substring(i + 2));
+            return substituted || transposed;
+        }
+        return a.substring(i).equals(b.substring(i + 1));
+    }
+}
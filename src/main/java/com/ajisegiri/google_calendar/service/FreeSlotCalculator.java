@@ -0,0 +1,215 @@
+package com.ajisegiri.google_calendar.service;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Interval arithmetic for finding meeting times. Each participant's free time is their working hours, in
+ * their own time zone, minus their busy periods; the free time of the meeting is the intersection over all
+ * participants. Candidate slots are cut from that at a fixed step (aligned to the organiser's local clock)
+ * and ranked: earlier days first, then slots further from anyone's meetings (so nobody is booked
+ * back-to-back when there is a choice), then earlier starts.
+ * Returned slots never overlap each other. Times are epoch milliseconds, intervals half-open.
+ */
+public final class FreeSlotCalculator {
+
+    private static final long MAX_RANKED_BUFFER = Duration.ofHours(1).toMillis();
+
+    private final LocalTime workdayStart;
+    private final LocalTime workdayEnd;
+    private final Set<DayOfWeek> workingDays;
+    private final long stepMillis;
+
+    public FreeSlotCalculator(LocalTime workdayStart, LocalTime workdayEnd, Set<DayOfWeek> workingDays, Duration step) {
+        this.workdayStart = workdayStart;
+        this.workdayEnd = workdayEnd;
+        this.workingDays = Set.copyOf(workingDays);
+        this.stepMillis = Math.max(step.toMillis(), 1);
+    }
+
+    public record Interval(long start, long end) {
+    }
+
+    public record Participant(List<Interval> busy, ZoneId zone) {
+    }
+
+    /**
+     * @param bufferMillis time between the slot and the nearest busy period of any participant, capped at an hour
+     */
+    public record Slot(long start, long end, long bufferMillis) {
+    }
+
+    /**
+     * Up to {@code maxResults} ranked slots of the given length within [from, to). The first participant
+     * is the organiser, whose time zone decides slot alignment and what counts as the same day.
+     */
+    public List<Slot> find(List<Participant> participants, long from, long to, Duration length, int maxResults) {
+        if (participants.isEmpty() || from >= to || maxResults <= 0) {
+            return List.of();
+        }
+        List<Interval> free = List.of(new Interval(from, to));
+        List<Interval> allBusy = new ArrayList<>();
+        for (Participant participant : participants) {
+            List<Interval> busy = merge(participant.busy());
+            free = intersect(free, subtract(workingHours(participant.zone(), from, to), busy));
+            allBusy.addAll(busy);
+        }
+        allBusy = merge(allBusy);
+
+        ZoneId organiserZone = participants.get(0).zone();
+        long lengthMillis = length.toMillis();
+        List<Slot> candidates = new ArrayList<>();
+        for (Interval gap : free) {
+            for (long start = alignUp(gap.start(), organiserZone); start + lengthMillis <= gap.end(); start += stepMillis) {
+                candidates.add(new Slot(start, start + lengthMillis, buffer(allBusy, start, start + lengthMillis)));
+            }
+        }
+        candidates.sort(Comparator.<Slot>comparingLong(slot -> localDate(slot.start(), organiserZone).toEpochDay())
+                .thenComparing(Comparator.comparingLong(Slot::bufferMillis).reversed())
+                .thenComparingLong(Slot::start));
+
+        List<Slot> chosen = new ArrayList<>();
+        for (Slot candidate : candidates) {
+            if (chosen.size() == maxResults) {
+                break;
+            }
+            if (chosen.stream().noneMatch(slot -> slot.start() < candidate.end() && candidate.start() < slot.end())) {
+                chosen.add(candidate);
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Working-hour intervals in the zone that overlap [from, to), clipped to it.
+     */
+    List<Interval> workingHours(ZoneId zone, long from, long to) {
+        List<Interval> hours = new ArrayList<>();
+        LocalDate last = localDate(to, zone);
+        // Start a day early so a shift that crosses midnight into the window is included
+        for (LocalDate day = localDate(from, zone).minusDays(1); !day.isAfter(last); day = day.plusDays(1)) {
+            if (!workingDays.contains(day.getDayOfWeek())) {
+                continue;
+            }
+            long start = day.atTime(workdayStart).atZone(zone).toInstant().toEpochMilli();
+            LocalDate endDay = workdayEnd.isAfter(workdayStart) ? day : day.plusDays(1);
+            long end = endDay.atTime(workdayEnd).atZone(zone).toInstant().toEpochMilli();
+            long clippedStart = Math.max(start, from);
+            long clippedEnd = Math.min(end, to);
+            if (clippedStart < clippedEnd) {
+                hours.add(new Interval(clippedStart, clippedEnd));
+            }
+        }
+        return hours;
+    }
+
+    /**
+     * Union of possibly overlapping intervals, sorted by start.
+     */
+    static List<Interval> merge(List<Interval> intervals) {
+        List<Interval> sorted = new ArrayList<>(intervals);
+        sorted.sort(Comparator.comparingLong(Interval::start));
+        List<Interval> merged = new ArrayList<>();
+        for (Interval interval : sorted) {
+            if (interval.end() <= interval.start()) {
+                continue;
+            }
+            Interval last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && interval.start() <= last.end()) {
+                merged.set(merged.size() - 1, new Interval(last.start(), Math.max(last.end(), interval.end())));
+            } else {
+                merged.add(interval);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Parts of {@code from} not covered by {@code remove}; both sorted and disjoint.
+     */
+    static List<Interval> subtract(List<Interval> from, List<Interval> remove) {
+        List<Interval> result = new ArrayList<>();
+        int r = 0;
+        for (Interval interval : from) {
+            long cursor = interval.start();
+            while (r < remove.size() && remove.get(r).end() <= cursor) {
+                r++;
+            }
+            for (int i = r; i < remove.size() && remove.get(i).start() < interval.end(); i++) {
+                Interval busy = remove.get(i);
+                if (busy.start() > cursor) {
+                    result.add(new Interval(cursor, busy.start()));
+                }
+                cursor = Math.max(cursor, busy.end());
+            }
+            if (cursor < interval.end()) {
+                result.add(new Interval(cursor, interval.end()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Intersection of two sorted, disjoint interval lists.
+     */
+    static List<Interval> intersect(List<Interval> a, List<Interval> b) {
+        List<Interval> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            long start = Math.max(a.get(i).start(), b.get(j).start());
+            long end = Math.min(a.get(i).end(), b.get(j).end());
+            if (start < end) {
+                result.add(new Interval(start, end));
+            }
+            if (a.get(i).end() < b.get(j).end()) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Distance from [start, end) to the closest busy interval; busy is sorted, disjoint and does not overlap the slot
+    private static long buffer(List<Interval> busy, long start, long end) {
+        int lo = 0;
+        int hi = busy.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (busy.get(mid).start() < end) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        long buffer = MAX_RANKED_BUFFER;
+        if (lo < busy.size()) {
+            buffer = Math.min(buffer, busy.get(lo).start() - end);
+        }
+        if (lo > 0) {
+            buffer = Math.min(buffer, start - busy.get(lo - 1).end());
+        }
+        return buffer;
+    }
+
+    // Round up to the next step boundary of the zone's local clock (e.g. :00, :15, :30, :45)
+    private long alignUp(long millis, ZoneId zone) {
+        long offset = zone.getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000L;
+        long local = millis + offset;
+        long aligned = Math.floorDiv(local + stepMillis - 1, stepMillis) * stepMillis;
+        return aligned - offset;
+    }
+
+    private static LocalDate localDate(long millis, ZoneId zone) {
+        return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+    }
+}
@@ -0,0 +1,128 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport-level metrics for Google HTTP calls, one sample per attempt (retries and 401 refresh
+ * round trips included): latency by endpoint, method and status, request and response bytes, and
+ * counters for 4xx/5xx responses and 429s. Endpoints are URL paths with ids replaced by
+ * {@code {id}}, which keeps tag cardinality bounded. Quota errors sent as 403 or inside a batch response
+ * are only recognisable from the parsed error, and are counted by {@link GoogleIoExecutor} per operation.
+ */
+@Component
+public class GoogleHttpMetrics {
+
+    private static final Set<String> PATH_WORDS = Set.of("calendar", "v3", "calendars", "events", "instances", "acl",
+            "calendarList", "users", "me", "freeBusy", "colors", "settings", "watch", "import", "move", "quickAdd",
+            "channels", "stop", "batch", "token", "revoke", "primary");
+
+    private final MeterRegistry meterRegistry;
+
+    public GoogleHttpMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Wrap an initializer (e.g. a Credential) so requests it initializes are measured.
+     */
+    public HttpRequestInitializer instrument(HttpRequestInitializer delegate) {
+        return request -> {
+            if (delegate != null) {
+                delegate.initialize(request);
+            }
+            RequestMetrics metrics = new RequestMetrics(request.getInterceptor(), request.getResponseInterceptor());
+            request.setInterceptor(metrics);
+            request.setResponseInterceptor(metrics);
+        };
+    }
+
+    static String endpoint(String path) {
+        StringBuilder endpoint = new StringBuilder();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                endpoint.append('/').append(PATH_WORDS.contains(segment) ? segment : "{id}");
+            }
+        }
+        return endpoint.isEmpty() ? "/" : endpoint.toString();
+    }
+
+    private class RequestMetrics implements HttpExecuteInterceptor, HttpResponseInterceptor {
+
+        private final HttpExecuteInterceptor executeDelegate;
+        private final HttpResponseInterceptor responseDelegate;
+        private long startedAt;
+
+        RequestMetrics(HttpExecuteInterceptor executeDelegate, HttpResponseInterceptor responseDelegate) {
+            this.executeDelegate = executeDelegate;
+            this.responseDelegate = responseDelegate;
+        }
+
+        @Override
+        public void intercept(HttpRequest request) throws IOException {
+            if (executeDelegate != null) {
+                executeDelegate.intercept(request);
+            }
+            startedAt = System.nanoTime();
+        }
+
+        @Override
+        public void interceptResponse(HttpResponse response) throws IOException {
+            long elapsed = System.nanoTime() - startedAt;
+            HttpRequest request = response.getRequest();
+            String endpoint = endpoint(request.getUrl().getRawPath());
+            String method = request.getRequestMethod();
+            int status = response.getStatusCode();
+
+            Timer.builder("google.http.client.requests")
+                    .description("Google API HTTP attempts")
+                    .tag("endpoint", endpoint)
+                    .tag("method", method)
+                    .tag("status", String.valueOf(status))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+
+            HttpContent content = request.getContent();
+            if (content != null && content.getLength() > 0) {
+                bytes(endpoint, "sent").record(content.getLength());
+            }
+            Long received = response.getHeaders().getContentLength();
+            if (received != null && received > 0) {
+                bytes(endpoint, "received").record(received);
+            }
+
+            if (status >= 400) {
+                meterRegistry.counter("google.http.client.errors", "endpoint", endpoint,
+                        "status", String.valueOf(status), "class", status >= 500 ? "5xx" : "4xx").increment();
+            }
+            if (status == 429) {
+                meterRegistry.counter("google.http.client.rate.limited", "endpoint", endpoint, "reason", "429").increment();
+            }
+
+            if (responseDelegate != null) {
+                responseDelegate.interceptResponse(response);
+            }
+        }
+
+        private DistributionSummary bytes(String endpoint, String direction) {
+            return DistributionSummary.builder("google.http.client.bytes")
+                    .baseUnit("bytes")
+                    .tag("endpoint", endpoint)
+                    .tag("direction", direction)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking Google API calls on the calling thread (a virtual thread for tool calls and reactive
+ * streams, see {@code BlockingIoConfig}) with a cap on how many HTTP attempts are in flight; waiting for
+ * quota or backing off between retries does not hold a slot. Calls from a Reactor non-blocking
+ * (event-loop) thread are refused with an {@link IllegalStateException} and counted in
+ * {@code calendar.io.event.loop.blocking}; such callers must subscribe on the tool execution scheduler.
+ * <p>
+ * Every call is a {@code google.api.call} observation (timer and span, child of the calling tool's
+ * span). Every attempt Google refuses for quota, retried or not and batched calls included, is counted in
+ * {@code google.api.rate.limited} by operation and reason; the transport's {@code google.http.client.rate.limited}
+ * counts only 429s, by URL path, as it cannot see error reasons.
+ * <p>
+ * Each attempt is admitted by the {@link GoogleRequestScheduler} at the caller's {@link RequestPriority}.
+ * Rate-limit responses (429, or 403 with a rate-limit reason) are retried with jittered exponential
+ * backoff, waiting at least as long as the server's Retry-After. In a batch request Google rate-limits
+ * calls individually, so {@link #executeBatch} retries just the throttled calls in a new batch.
+ */
+@Slf4j
+@Component
+public class GoogleIoExecutor {
+
+    private static final Set<String> RATE_LIMIT_REASONS = Set.of("rateLimitExceeded", "userRateLimitExceeded",
+            "quotaExceeded", "dailyLimitExceeded");
+    // Daily and project quota exhaustion does not clear within a retry window
+    private static final Set<String> RETRYABLE_REASONS = Set.of("rateLimitExceeded", "userRateLimitExceeded");
+
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final GoogleRequestScheduler requestScheduler;
+    private final Semaphore permits;
+    private final Timer permitWait;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public GoogleIoExecutor(MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                            GoogleRequestScheduler requestScheduler,
+                            @Value("${calendar.io.max-concurrency:64}") int maxConcurrency,
+                            @Value("${calendar.retry.max-attempts:5}") int maxAttempts,
+                            @Value("${calendar.retry.initial-backoff:500ms}") Duration initialBackoff,
+                            @Value("${calendar.retry.max-backoff:32s}") Duration maxBackoff) {
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.requestScheduler = requestScheduler;
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.permitWait = meterRegistry.timer("calendar.io.permit.wait");
+        Gauge.builder("calendar.io.in.flight", permits, p -> maxConcurrency - p.availablePermits())
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(String userId, AbstractGoogleClientRequest<T> request) throws IOException {
+        return execute(userId, operationName(request), 1, request::execute);
+    }
+
+    public <T> T execute(String userId, String operation, IoCall<T> call) throws IOException {
+        return execute(userId, operation, 1, call);
+    }
+
+    /**
+     * Run a Google call on behalf of a user, at the priority of the current thread. {@code cost} is the
+     * number of API calls it counts as against the quota (the size of a batch request).
+     */
+    public <T> T execute(String userId, String operation, int cost, IoCall<T> call) throws IOException {
+        RequestPriority priority = RequestPriority.current();
+        Observation observation = Observation.createNotStarted("google.api.call", observationRegistry)
+                .contextualName(operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .lowCardinalityKeyValue("priority", priority.name().toLowerCase(Locale.ROOT))
+                .lowCardinalityKeyValue("status", "ok");
+        return observation.observeChecked(() -> {
+            try {
+                return dispatch(operation, () -> callWithRetries(userId, operation, priority, cost, call));
+            } catch (HttpResponseException e) {
+                observation.lowCardinalityKeyValue("status", String.valueOf(e.getStatusCode()));
+                throw e;
+            }
+        });
+    }
+
+    // Handing the call to another thread would still park an event loop in the wait, so refuse instead
+    private <T> T dispatch(String operation, IoCall<T> call) throws IOException {
+        if (Schedulers.isInNonBlockingThread()) {
+            meterRegistry.counter("calendar.io.event.loop.blocking", "operation", operation).increment();
+            throw new IllegalStateException("Blocking Google call " + operation + " issued from non-blocking thread "
+                    + Thread.currentThread().getName());
+        }
+        return call.call();
+    }
+
+    /**
+     * Run {@code calls} as batch requests created by {@code newBatch}. Calls Google answers with a rate-limit
+     * error are queued into another batch and retried after the same backoff as a throttled single call,
+     * which also slows the scheduler down; once out of attempts their failure goes to their callback.
+     */
+    public void executeBatch(String userId, Supplier<BatchRequest> newBatch, List<BatchCall<?>> calls) throws IOException {
+        List<BatchCall<?>> pending = calls;
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            BatchRequest batch = newBatch.get();
+            List<ThrottledCall> throttled = new ArrayList<>();
+            for (BatchCall<?> call : pending) {
+                queue(batch, call, attempt < maxAttempts ? throttled : null);
+            }
+            execute(userId, "batch", batch.size(), () -> {
+                batch.execute();
+                return null;
+            });
+            if (throttled.isEmpty()) {
+                return;
+            }
+
+            boolean userLimit = throttled.stream().anyMatch(call -> "userRateLimitExceeded".equals(call.reason()));
+            Duration retryAfter = throttled.stream().map(ThrottledCall::retryAfter).max(Duration::compareTo).orElse(Duration.ZERO);
+            Duration backoff = backoff(attempt, retryAfter);
+            requestScheduler.onThrottled(userId, userLimit, backoff);
+            throttled.forEach(call -> meterRegistry.counter("google.api.retries", "operation", "batch", "reason", call.reason()).increment());
+            log.debug("{} of {} batched calls throttled, retry {} in {} ms", throttled.size(), pending.size(), attempt, backoff.toMillis());
+            sleep(backoff);
+            pending = throttled.stream().<BatchCall<?>>map(ThrottledCall::call).toList();
+        }
+    }
+
+    // A null throttled list means this is the last attempt, so rate-limit failures are delivered as they are
+    private <T> void queue(BatchRequest batch, BatchCall<T> call, List<ThrottledCall> throttled) throws IOException {
+        call.request().queue(batch, new JsonBatchCallback<T>() {
+            @Override
+            public void onSuccess(T result, HttpHeaders responseHeaders) throws IOException {
+                call.callback().onSuccess(result, responseHeaders);
+            }
+
+            @Override
+            public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) throws IOException {
+                countRateLimit(operationName(call.request()), error.getCode(), reason(error));
+                String reason = rateLimitReason(error.getCode(), reason(error));
+                if (reason != null && throttled != null) {
+                    throttled.add(new ThrottledCall(call, reason, retryAfter(responseHeaders)));
+                } else {
+                    call.callback().onFailure(error, responseHeaders);
+                }
+            }
+        });
+    }
+
+    // Only the HTTP attempt itself holds an I/O permit; quota waits and backoff sleeps hold nothing
+    private <T> T callWithRetries(String userId, String operation, RequestPriority priority, int cost, IoCall<T> call) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            requestScheduler.acquire(userId, priority, cost);
+            try {
+                T result = callWithPermit(call);
+                requestScheduler.onSuccess(userId);
+                return result;
+            } catch (HttpResponseException e) {
+                countRateLimit(operation, e.getStatusCode(), errorReason(e));
+                String reason = rateLimitReason(e);
+                if (reason == null || attempt >= maxAttempts) {
+                    throw e;
+                }
+                Duration backoff = backoff(attempt, retryAfter(e.getHeaders()));
+                requestScheduler.onThrottled(userId, "userRateLimitExceeded".equals(reason), backoff);
+                meterRegistry.counter("google.api.retries", "operation", operation, "reason", reason).increment();
+                log.debug("{} throttled ({}), retry {} in {} ms", operation, reason, attempt, backoff.toMillis());
+                sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * The rate-limit reason if the call may be retried, otherwise null.
+     */
+    private static String rateLimitReason(HttpResponseException e) {
+        return rateLimitReason(e.getStatusCode(), e.getStatusCode() == 403 ? errorReason(e) : null);
+    }
+
+    static String rateLimitReason(int statusCode, String errorReason) {
+        if (statusCode == 429) {
+            return "tooManyRequests";
+        }
+        return statusCode == 403 && errorReason != null && RETRYABLE_REASONS.contains(errorReason) ? errorReason : null;
+    }
+
+    // Full-range jitter over the upper half of the exponential step, but never sooner than Retry-After
+    private Duration backoff(int attempt, Duration retryAfter) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        long jittered = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        return Duration.ofMillis(Math.max(jittered, retryAfter.toMillis()));
+    }
+
+    static Duration retryAfter(HttpHeaders headers) {
+        String retryAfter = headers != null ? headers.getFirstHeaderStringValue("Retry-After") : null;
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return Duration.ZERO;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(retryAfter.strip()));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                Duration untilDate = Duration.between(Instant.now(),
+                        ZonedDateTime.parse(retryAfter.strip(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+                return untilDate.isNegative() ? Duration.ZERO : untilDate;
+            } catch (DateTimeParseException notDate) {
+                return Duration.ZERO;
+            }
+        }
+    }
+
+    private static void sleep(Duration duration) throws InterruptedIOException {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+
+    private <T> T callWithPermit(IoCall<T> call) throws IOException {
+        long waitStart = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a Google I/O permit");
+        }
+        permitWait.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    // 403s only say they are quota errors in the error reason
+    private void countRateLimit(String operation, int statusCode, String errorReason) {
+        String reason = statusCode == 429 ? "tooManyRequests"
+                : statusCode == 403 && errorReason != null && RATE_LIMIT_REASONS.contains(errorReason) ? errorReason : null;
+        if (reason != null) {
+            meterRegistry.counter("google.api.rate.limited", "operation", operation, "reason", reason).increment();
+        }
+    }
+
+    private static String errorReason(HttpResponseException e) {
+        return e instanceof GoogleJsonResponseException jsonException ? reason(jsonException.getDetails()) : null;
+    }
+
+    private static String reason(GoogleJsonError error) {
+        if (error == null) {
+            return null;
+        }
+        List<GoogleJsonError.ErrorInfo> errors = error.getErrors();
+        return errors != null && !errors.isEmpty() ? errors.get(0).getReason() : null;
+    }
+
+    /**
+     * e.g. "events.list" for Calendar.Events.List
+     */
+    static String operationName(AbstractGoogleClientRequest<?> request) {
+        Class<?> type = request.getClass();
+        Class<?> resource = type.getEnclosingClass();
+        String name = type.getSimpleName();
+        return (resource != null ? resource.getSimpleName() + "." + name : name).toLowerCase(Locale.ROOT);
+    }
+
+    @FunctionalInterface
+    public interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * One call of a batch request and the callback that receives its outcome.
+     */
+    public record BatchCall<T>(AbstractGoogleJsonClientRequest<T> request, JsonBatchCallback<T> callback) {
+    }
+
+    private record ThrottledCall(BatchCall<?> call, String reason, Duration retryAfter) {
+    }
+}
@@ -1,8 +1,15 @@
 package com.ajisegiri.google_calendar.service;
 
+import com.ajisegiri.google_calendar.SharedDataStoreFactory;
+import com.ajisegiri.google_calendar.SharedStateBackend;
+import com.ajisegiri.google_calendar.service.CalendarClientCache.CalendarClient;
 import com.google.api.client.auth.oauth2.AuthorizationCodeRequestUrl;
 import com.google.api.client.auth.oauth2.BearerToken;
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.CredentialRefreshListener;
+import com.google.api.client.auth.oauth2.DataStoreCredentialRefreshListener;
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.auth.oauth2.TokenErrorResponse;
 import com.google.api.client.auth.oauth2.TokenResponse;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.http.HttpTransport;
@@ -13,10 +20,21 @@ import com.google.api.services.calendar.Calendar;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.Events;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 @Slf4j
 @Service
@@ -24,15 +42,52 @@ public class GoogleOAuthService {
 
     private static final String APPLICATION_NAME = "My Calendar App";
     private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private static final String RENEWAL_LEASE = "token-renewal";
+    private static final String ACTIVE_USERS = "token-renewal.active";
 
     private final GoogleAuthorizationCodeFlow googleAuthorizationCodeFlow;
     private final HttpTransport httpTransport;
+    private final CalendarClientCache calendarClientCache;
+    private final TokenRefreshCoordinator tokenRefreshCoordinator;
+    private final GoogleHttpMetrics googleHttpMetrics;
+    private final Duration refreshAhead;
+    private final Duration renewalInterval;
+    private final SharedStateBackend sharedStateBackend;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String rootUrl;
+    private final Semaphore renewalPermits;
+    private final ExecutorService renewalExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     private static final String REDIRECT_URI = "http://localhost:8080/oauth2/callback";
 
-    public GoogleOAuthService(GoogleAuthorizationCodeFlow googleAuthorizationCodeFlow, HttpTransport httpTransport) {
+    public GoogleOAuthService(GoogleAuthorizationCodeFlow googleAuthorizationCodeFlow, HttpTransport httpTransport,
+                              CalendarClientCache calendarClientCache, TokenRefreshCoordinator tokenRefreshCoordinator,
+                              GoogleHttpMetrics googleHttpMetrics, ObjectProvider<SharedStateBackend> sharedStateBackend,
+                              @Value("${calendar.token-refresh.refresh-ahead:5m}") Duration refreshAhead,
+                              @Value("${calendar.token-refresh.interval:PT1M}") Duration renewalInterval,
+                              @Value("${calendar.token-refresh.max-concurrent:8}") int maxConcurrentRenewals,
+                              @Value("${calendar.google.root-url:}") String rootUrl) {
         this.googleAuthorizationCodeFlow = googleAuthorizationCodeFlow;
         this.httpTransport = httpTransport;
+        this.calendarClientCache = calendarClientCache;
+        this.tokenRefreshCoordinator = tokenRefreshCoordinator;
+        this.googleHttpMetrics = googleHttpMetrics;
+        this.refreshAhead = refreshAhead;
+        this.renewalInterval = renewalInterval;
+        this.sharedStateBackend = sharedStateBackend.getIfAvailable();
+        this.rootUrl = rootUrl;
+        this.renewalPermits = new Semaphore(maxConcurrentRenewals);
+        // A credential refreshed or replaced on another node makes the client cached here stale
+        if (googleAuthorizationCodeFlow.getCredentialDataStore() != null
+                && googleAuthorizationCodeFlow.getCredentialDataStore().getDataStoreFactory() instanceof SharedDataStoreFactory shared) {
+            shared.onRemoteChange(googleAuthorizationCodeFlow.getCredentialDataStore().getId(), userId -> {
+                if ("*".equals(userId)) {
+                    calendarClientCache.invalidateAll();
+                } else {
+                    calendarClientCache.invalidate(userId);
+                }
+            });
+        }
     }
 
     // Generate Google OAuth URL
@@ -51,6 +106,14 @@ public class GoogleOAuthService {
                 .execute();
         // Store the credential for this user
         googleAuthorizationCodeFlow.createAndStoreCredential(tokenResponse, userId);
+        calendarClientCache.invalidate(userId);
+    }
+
+    // Forget the user's credential and drop the cached client built from it
+    public void revokeCredentials(String userId) throws IOException {
+        log.info("Revoking credentials for user {}", userId);
+        googleAuthorizationCodeFlow.getCredentialDataStore().delete(userId);
+        calendarClientCache.invalidate(userId);
     }
 
     // Exchange auth code for access & refresh tokens- THIS returns the access and refresh token
@@ -74,23 +137,87 @@ public class GoogleOAuthService {
 
     // Get stored credentials for a user
     public Credential getStoredCredentials(String userId) throws IOException {
-        Credential credential = googleAuthorizationCodeFlow.loadCredential(userId);
+        Credential credential = loadCredential(userId);
         if (credential != null && credential.getRefreshToken() != null) {
             // Refresh the token if it's expired or close to expiration
             Long expirationTime = credential.getExpirationTimeMilliseconds();
             if (expirationTime != null && expirationTime - System.currentTimeMillis() < 60000) {
                 log.info("Refresh token expired for {} at {}", userId, expirationTime);
-                boolean refreshed = credential.refreshToken();
-                log.info("Refresh token refreshed {}", refreshed);
-                if (!refreshed) {
-                    throw new IOException("Failed to refresh access token");
-                }
+                credential = tokenRefreshCoordinator.refresh(userId, credential);
             }
             return credential;
         }
         return null;
     }
 
+    /**
+     * Renews access tokens of recently active users (those with a cached client) that expire within the
+     * refresh-ahead window, so their interactive requests find a valid token instead of waiting on the
+     * token endpoint. Idle users are left alone and refresh on their next request. Cached clients are
+     * refreshed in place.
+     * With shared state every node reports its active users, and only the node holding the renewal lease
+     * renews them; the lease outlives two runs, so another node takes over when its holder stops.
+     */
+    @Scheduled(fixedDelayString = "${calendar.token-refresh.interval:PT1M}",
+            initialDelayString = "${calendar.token-refresh.interval:PT1M}")
+    public void renewExpiringTokens() {
+        Set<String> userIds = new HashSet<>(calendarClientCache.userIds());
+        if (sharedStateBackend != null) {
+            long now = System.currentTimeMillis();
+            byte[] lastSeen = Long.toString(now).getBytes(StandardCharsets.UTF_8);
+            userIds.forEach(userId -> sharedStateBackend.put(ACTIVE_USERS, userId, lastSeen));
+            if (!sharedStateBackend.tryLease(RENEWAL_LEASE, nodeId, renewalInterval.multipliedBy(2))) {
+                log.debug("Another node holds the token renewal lease");
+                return;
+            }
+            userIds.addAll(activeOnOtherNodes(now - renewalInterval.multipliedBy(2).toMillis()));
+        }
+
+        long renewBefore = System.currentTimeMillis() + refreshAhead.toMillis();
+        for (String userId : userIds) {
+            renewalExecutor.execute(() -> renewIfExpiring(userId, renewBefore));
+        }
+    }
+
+    // Users reported since the cutoff; older reports are from users no node has a client for any more
+    private Set<String> activeOnOtherNodes(long cutoff) {
+        Set<String> userIds = new HashSet<>();
+        for (String userId : sharedStateBackend.keys(ACTIVE_USERS)) {
+            byte[] lastSeen = sharedStateBackend.get(ACTIVE_USERS, userId);
+            if (lastSeen != null && Long.parseLong(new String(lastSeen, StandardCharsets.UTF_8)) >= cutoff) {
+                userIds.add(userId);
+            } else {
+                sharedStateBackend.delete(ACTIVE_USERS, userId);
+            }
+        }
+        return userIds;
+    }
+
+    private void renewIfExpiring(String userId, long renewBefore) {
+        try {
+            renewalPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            CalendarClient cached = calendarClientCache.getIfPresent(userId);
+            Credential credential = cached != null ? cached.credential() : loadCredential(userId);
+            if (credential == null || credential.getRefreshToken() == null || tokenRefreshCoordinator.isRefreshing(userId)) {
+                return;
+            }
+            Long expirationTime = credential.getExpirationTimeMilliseconds();
+            if (expirationTime != null && expirationTime < renewBefore) {
+                // Renewal ahead of expiry yields to interactive calls for the token endpoint quota
+                RequestPriority.BACKGROUND.run(() -> tokenRefreshCoordinator.refresh(userId, credential));
+            }
+        } catch (IOException e) {
+            log.warn("Background token renewal failed for {}: {}", userId, e.getMessage());
+        } finally {
+            renewalPermits.release();
+        }
+    }
+
     private Credential createCredential(String accessToken, String refreshToken) {
         Credential credential = new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
                 .setTransport(googleAuthorizationCodeFlow.getTransport())
@@ -106,15 +233,72 @@ public class GoogleOAuthService {
         return credential;
     }
 
-    // Get Calendar service using stored credentials
+    // Same as the flow's loadCredential, but with a listener that knows which user the credential belongs to
+    private Credential loadCredential(String userId) throws IOException {
+        StoredCredential storedCredential = googleAuthorizationCodeFlow.getCredentialDataStore().get(userId);
+        if (storedCredential == null) {
+            return null;
+        }
+        Credential credential = new Credential.Builder(googleAuthorizationCodeFlow.getMethod())
+                .setTransport(googleAuthorizationCodeFlow.getTransport())
+                .setJsonFactory(googleAuthorizationCodeFlow.getJsonFactory())
+                .setClientAuthentication(googleAuthorizationCodeFlow.getClientAuthentication())
+                .setTokenServerEncodedUrl(googleAuthorizationCodeFlow.getTokenServerEncodedUrl())
+                .setRequestInitializer(googleAuthorizationCodeFlow.getRequestInitializer())
+                .setClock(googleAuthorizationCodeFlow.getClock())
+                .addRefreshListener(new DataStoreCredentialRefreshListener(userId, googleAuthorizationCodeFlow.getCredentialDataStore()))
+                .addRefreshListener(new CachedClientRefreshListener(userId))
+                .build();
+
+        credential.setAccessToken(storedCredential.getAccessToken());
+        credential.setRefreshToken(storedCredential.getRefreshToken());
+        credential.setExpirationTimeMilliseconds(storedCredential.getExpirationTimeMilliseconds());
+        return credential;
+    }
+
+    // Get Calendar service using stored credentials. The client is cached per user; its credential
+    // refreshes itself in place when the access token is about to expire.
     public Calendar getCalendarService(String userId) throws IOException {
-        Credential credential = getStoredCredentials(userId);
-        if (credential == null) {
+        return calendarClientCache.get(userId, this::buildCalendarClient).calendar();
+    }
+
+    private CalendarClient buildCalendarClient(String userId) throws IOException {
+        Credential credential = loadCredential(userId);
+        if (credential == null || credential.getRefreshToken() == null) {
             throw new IOException("No stored credentials found for user: " + userId);
         }
-        return new Calendar.Builder(httpTransport, JSON_FACTORY, credential)
-                .setApplicationName(APPLICATION_NAME)
-                .build();
+        Calendar.Builder builder = new Calendar.Builder(httpTransport, JSON_FACTORY, googleHttpMetrics.instrument(credential))
+                .setApplicationName(APPLICATION_NAME);
+        if (!rootUrl.isBlank()) {
+            builder.setRootUrl(rootUrl);
+        }
+        Calendar calendar = builder.build();
+        return new CalendarClient(credential, calendar);
+    }
+
+    /**
+     * Keeps the client cache in step with token refreshes: a refresh done by a credential other than the
+     * cached one makes the cached client stale, and a failed refresh means the grant was revoked.
+     */
+    private class CachedClientRefreshListener implements CredentialRefreshListener {
+
+        private final String userId;
+
+        CachedClientRefreshListener(String userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public void onTokenResponse(Credential credential, TokenResponse tokenResponse) {
+            calendarClientCache.invalidateUnlessHolding(userId, credential);
+        }
+
+        @Override
+        public void onTokenErrorResponse(Credential credential, TokenErrorResponse tokenErrorResponse) {
+            log.warn("Token refresh failed for user {}: {}", userId,
+                    tokenErrorResponse != null ? tokenErrorResponse.getError() : "unknown error");
+            calendarClientCache.invalidate(userId);
+        }
     }
 
 //    public Calendar getCalendarService(String accessToken) {
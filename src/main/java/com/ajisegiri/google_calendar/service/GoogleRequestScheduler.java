@@ -0,0 +1,157 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Paces Google API calls with a per-user and a project-wide token bucket, mirroring Google's per-user
+ * and per-project rate limits. Lower priorities may not drain the last share of a bucket
+ * ({@link RequestPriority#reservedFraction()}) and stand aside while higher-priority calls are waiting
+ * for the same bucket, so a background sync burst cannot starve chat turns. Waiters are counted per user
+ * bucket, and in the project-wide count only while that bucket is what holds them up, so one user's busy
+ * quota never pauses another user's calls. Throttling responses slow the affected bucket down.
+ */
+@Slf4j
+@Component
+public class GoogleRequestScheduler {
+
+    private static final long MAX_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final TokenBucket globalBucket;
+    private final AtomicIntegerArray globalWaiting = new AtomicIntegerArray(RequestPriority.values().length);
+    private final Cache<String, UserQuota> userQuotas;
+    private final double userBurst;
+    private final double userRate;
+    private final Duration maxWait;
+    private final MeterRegistry meterRegistry;
+    // Only feeds the gauge; admission looks at the per-bucket counts
+    private final AtomicIntegerArray waiting = new AtomicIntegerArray(RequestPriority.values().length);
+
+    public GoogleRequestScheduler(MeterRegistry meterRegistry,
+                                  @Value("${calendar.quota.global-rate:50}") double globalRate,
+                                  @Value("${calendar.quota.global-burst:100}") double globalBurst,
+                                  @Value("${calendar.quota.user-rate:10}") double userRate,
+                                  @Value("${calendar.quota.user-burst:20}") double userBurst,
+                                  @Value("${calendar.quota.max-wait:10s}") Duration maxWait) {
+        this.meterRegistry = meterRegistry;
+        this.globalBucket = new TokenBucket(globalBurst, globalRate);
+        this.userBurst = userBurst;
+        this.userRate = userRate;
+        this.maxWait = maxWait;
+        this.userQuotas = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        Gauge.builder("google.api.quota.rate", globalBucket, TokenBucket::rate)
+                .description("Current project-wide admission rate (calls per second)")
+                .register(meterRegistry);
+        for (RequestPriority priority : RequestPriority.values()) {
+            Gauge.builder("google.api.quota.waiting", waiting, w -> w.get(priority.ordinal()))
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Block until a call for this user may go out at the given priority. A batch request costs one
+     * token per call it contains, as Google counts them against the quota individually.
+     *
+     * @throws IOException if no capacity frees up within the maximum wait
+     */
+    public void acquire(String userId, RequestPriority priority, int cost) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + maxWait.toNanos();
+        UserQuota user = userQuota(userId);
+        boolean waitingForGlobal = false;
+        waiting.incrementAndGet(priority.ordinal());
+        user.waiting().incrementAndGet(priority.ordinal());
+        try {
+            while (true) {
+                long wait;
+                if (higherPriorityWaiting(user.waiting(), priority) || higherPriorityWaiting(globalWaiting, priority)) {
+                    wait = MAX_POLL_NANOS;
+                } else {
+                    wait = user.bucket().tryAcquire(cost, priority.reservedFraction());
+                    boolean globalBlocked = false;
+                    if (wait == 0) {
+                        wait = globalBucket.tryAcquire(cost, priority.reservedFraction());
+                        globalBlocked = wait != 0;
+                        if (globalBlocked) {
+                            user.bucket().release(cost);
+                        }
+                    }
+                    if (globalBlocked != waitingForGlobal) {
+                        waitingForGlobal = globalBlocked;
+                        if (globalBlocked) {
+                            globalWaiting.incrementAndGet(priority.ordinal());
+                        } else {
+                            globalWaiting.decrementAndGet(priority.ordinal());
+                        }
+                    }
+                }
+                if (wait == 0) {
+                    break;
+                }
+                long now = System.nanoTime();
+                if (now + Math.min(wait, MAX_POLL_NANOS) > deadline) {
+                    meterRegistry.counter("google.api.quota.rejected", "priority", priority.name().toLowerCase(Locale.ROOT)).increment();
+                    throw new IOException("Google API rate limit: no capacity for " + userId + " within " + maxWait);
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.min(wait, MAX_POLL_NANOS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Google API quota");
+        } finally {
+            waiting.decrementAndGet(priority.ordinal());
+            user.waiting().decrementAndGet(priority.ordinal());
+            if (waitingForGlobal) {
+                globalWaiting.decrementAndGet(priority.ordinal());
+            }
+        }
+        meterRegistry.timer("google.api.quota.wait", "priority", priority.name().toLowerCase(Locale.ROOT))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Google throttled a call. A per-user limit slows that user's bucket, anything else the project-wide one.
+     */
+    public void onThrottled(String userId, boolean userLimit, Duration pause) {
+        TokenBucket bucket = userLimit ? userQuota(userId).bucket() : globalBucket;
+        bucket.onThrottled(pause.toNanos());
+        log.info("Google throttled {} calls; admission rate now {}/s", userLimit ? userId + "'s" : "project", String.format("%.1f", bucket.rate()));
+    }
+
+    public void onSuccess(String userId) {
+        globalBucket.onSuccess();
+        userQuota(userId).bucket().onSuccess();
+    }
+
+    private static boolean higherPriorityWaiting(AtomicIntegerArray waiting, RequestPriority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (waiting.get(i) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private UserQuota userQuota(String userId) {
+        return userQuotas.get(userId, id -> new UserQuota(new TokenBucket(userBurst, userRate),
+                new AtomicIntegerArray(RequestPriority.values().length)));
+    }
+
+    private record UserQuota(TokenBucket bucket, AtomicIntegerArray waiting) {
+    }
+}
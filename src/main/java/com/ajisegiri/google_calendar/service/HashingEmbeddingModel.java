@@ -0,0 +1,76 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local embedding model that needs no network or model weights: words and character trigrams are hashed
+ * into a fixed number of signed buckets and the vector is L2-normalised. Texts sharing words or word
+ * fragments end up close, which gives typo- and inflection-tolerant matching ("planning" ~ "plan"), though
+ * not real synonym understanding. Swap in a proper embedding model for that.
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+
+    public HashingEmbeddingModel(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<String> texts = request.getInstructions();
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(embed(texts.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.NONE));
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        for (String word : EventTextIndex.tokenize(text)) {
+            add(vector, word, 1f);
+            String padded = "^" + word + "$";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                add(vector, padded.substring(i, i + 3), 0.5f);
+            }
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    private void add(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode() * 0x9E3779B9;
+        int bucket = Math.floorMod(hash, dimensions);
+        // The sign bit comes from a different part of the hash so collisions tend to cancel out
+        vector[bucket] += (hash >>> 31) == 0 ? weight : -weight;
+    }
+}
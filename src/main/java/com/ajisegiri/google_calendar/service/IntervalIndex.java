@@ -0,0 +1,137 @@
+package com.ajisegiri.google_calendar.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable interval index over [start, end) millisecond ranges.
+ * <p>
+ * Intervals are kept in primitive arrays sorted by start time, which double as an implicit balanced
+ * binary tree (the root of [lo, hi] is its midpoint). Every node stores the largest end time in its
+ * subtree, so overlap queries prune whole subtrees and run in O(log n + k). Results come back in
+ * start-time order without a separate sort.
+ */
+public final class IntervalIndex<T> {
+
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds;
+    private final Object[] values;
+
+    private IntervalIndex(long[] starts, long[] ends, Object[] values) {
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+        this.maxEnds = new long[starts.length];
+        if (starts.length > 0) {
+            computeMaxEnds(0, starts.length - 1);
+        }
+    }
+
+    /**
+     * Build an index; items with the same start time are ordered by {@code tieBreaker}.
+     */
+    public static <T> IntervalIndex<T> build(Collection<T> items, ToLongFunction<T> start, ToLongFunction<T> end,
+                                             Comparator<? super T> tieBreaker) {
+        List<T> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingLong(start).thenComparing(tieBreaker));
+
+        int size = sorted.size();
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            T item = sorted.get(i);
+            starts[i] = start.applyAsLong(item);
+            ends[i] = Math.max(end.applyAsLong(item), starts[i]);
+            values[i] = item;
+        }
+        return new IntervalIndex<>(starts, ends, values);
+    }
+
+    public static <T> IntervalIndex<T> empty() {
+        return new IntervalIndex<>(new long[0], new long[0], new Object[0]);
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Intervals overlapping [from, to), i.e. starting before {@code to} and ending after {@code from}.
+     */
+    public List<T> overlapping(long from, long to) {
+        List<T> result = new ArrayList<>();
+        if (from < to) {
+            collectOverlapping(0, starts.length - 1, from, to, result);
+        }
+        return result;
+    }
+
+    /**
+     * Intervals whose start lies in [from, to).
+     */
+    public List<T> startingWithin(long from, long to) {
+        int first = lowerBound(from);
+        int last = lowerBound(to);
+        List<T> result = new ArrayList<>(Math.max(last - first, 0));
+        for (int i = first; i < last; i++) {
+            result.add(value(i));
+        }
+        return result;
+    }
+
+    private void collectOverlapping(int lo, int hi, long from, long to, List<T> result) {
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (maxEnds[mid] <= from) {
+                // Nothing in this subtree ends after the window opens
+                return;
+            }
+            collectOverlapping(lo, mid - 1, from, to, result);
+            if (starts[mid] >= to) {
+                // This node and its right subtree start after the window closes
+                return;
+            }
+            if (ends[mid] > from) {
+                result.add(value(mid));
+            }
+            lo = mid + 1;
+        }
+    }
+
+    private long computeMaxEnds(int lo, int hi) {
+        int mid = (lo + hi) >>> 1;
+        long max = ends[mid];
+        if (lo < mid) {
+            max = Math.max(max, computeMaxEnds(lo, mid - 1));
+        }
+        if (mid < hi) {
+            max = Math.max(max, computeMaxEnds(mid + 1, hi));
+        }
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = starts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T value(int i) {
+        return (T) values[i];
+    }
+}
@@ -0,0 +1,66 @@
+package com.ajisegiri.google_calendar.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Merges already-sorted lists into one sorted list with a heap of list cursors, O(n log k) for k lists.
+ * Items with equal keys are emitted once (the first in merge order); ties between lists keep list order,
+ * so the merge is stable.
+ */
+public final class KWayMerge {
+
+    private KWayMerge() {
+    }
+
+    /**
+     * @param limit stop after this many distinct items
+     */
+    public static <T> List<T> merge(List<? extends List<T>> sortedLists, Comparator<? super T> order,
+                                    Function<? super T, ?> dedupKey, int limit) {
+        PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(Math.max(sortedLists.size(), 1), (a, b) -> {
+            int byItem = order.compare(a.head(), b.head());
+            return byItem != 0 ? byItem : Integer.compare(a.list, b.list);
+        });
+        for (int i = 0; i < sortedLists.size(); i++) {
+            if (!sortedLists.get(i).isEmpty()) {
+                heap.add(new Cursor<>(i, sortedLists.get(i)));
+            }
+        }
+
+        List<T> merged = new ArrayList<>();
+        Set<Object> seen = new HashSet<>();
+        while (!heap.isEmpty() && merged.size() < limit) {
+            Cursor<T> cursor = heap.poll();
+            T item = cursor.head();
+            if (seen.add(dedupKey.apply(item))) {
+                merged.add(item);
+            }
+            if (++cursor.position < cursor.items.size()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Cursor<T> {
+
+        private final int list;
+        private final List<T> items;
+        private int position;
+
+        Cursor(int list, List<T> items) {
+            this.list = list;
+            this.items = items;
+        }
+
+        T head() {
+            return items.get(position);
+        }
+    }
+}
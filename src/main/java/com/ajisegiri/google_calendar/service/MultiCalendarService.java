@@ -0,0 +1,125 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Event;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a time window from several calendars at once. Each calendar is read from its replica in parallel,
+ * so the latency is that of the slowest calendar rather than the sum. The per-calendar results, already in
+ * start-time order, are combined with a k-way merge. An event shared between calendars (an invitation
+ * showing on both the organiser's and the attendee's calendar) appears once.
+ */
+@Slf4j
+@Service
+public class MultiCalendarService {
+
+    public static final String ALL_CALENDARS = "all";
+
+    private static final Comparator<Event> BY_START = Comparator.comparingLong(CalendarReplica::startMillis)
+            .thenComparing(Event::getId);
+
+    private final GoogleCalendarService googleCalendarService;
+    private final CalendarReplicaService calendarReplicaService;
+    private final ExecutorService executorService;
+    private final Cache<String, List<String>> selectedCalendars;
+
+    public MultiCalendarService(GoogleCalendarService googleCalendarService, CalendarReplicaService calendarReplicaService,
+                                @Qualifier("googleIoExecutorService") ExecutorService executorService,
+                                @Value("${calendar.multi.calendar-list-ttl:5m}") Duration calendarListTtl) {
+        this.googleCalendarService = googleCalendarService;
+        this.calendarReplicaService = calendarReplicaService;
+        this.executorService = executorService;
+        this.selectedCalendars = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(calendarListTtl)
+                .build();
+    }
+
+    /**
+     * Events overlapping the window on the given calendars, or on every calendar the user has selected
+     * in Google Calendar when {@code calendarIds} is empty or {@value #ALL_CALENDARS}. The page token is an
+     * offset into the merged result. Calendars that cannot be read are skipped and named in the error message.
+     */
+    public EventsResponse getEvents(String userId, List<String> calendarIds, long startMillis, long endMillis,
+                                    String page, int pageSize) throws IOException {
+        int offset = PageTokens.offset(page);
+        List<String> calendars = resolveCalendars(userId, calendarIds);
+        RequestPriority priority = RequestPriority.current();
+
+        List<Future<List<Event>>> reads = new ArrayList<>(calendars.size());
+        for (String calendarId : calendars) {
+            reads.add(executorService.submit(() -> priority.run(() ->
+                    calendarReplicaService.getSyncedReplica(userId, calendarId).findOverlapping(startMillis, endMillis))));
+        }
+
+        List<List<Event>> perCalendar = new ArrayList<>(calendars.size());
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < reads.size(); i++) {
+            try {
+                perCalendar.add(reads.get(i).get());
+            } catch (InterruptedException e) {
+                reads.forEach(read -> read.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading calendars");
+            } catch (ExecutionException e) {
+                String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                log.warn("Could not read calendar {}: {}", calendars.get(i), message);
+                failures.add(calendars.get(i) + ": " + message);
+            }
+        }
+
+        int size = Math.max(pageSize, 1);
+        // One extra item tells whether there is a next page
+        List<Event> merged = KWayMerge.merge(perCalendar, BY_START, MultiCalendarService::dedupKey, offset + size + 1);
+        int from = Math.min(offset, merged.size());
+        int to = Math.min(from + size, merged.size());
+        String nextPageToken = to < merged.size() ? String.valueOf(to) : null;
+        String errorMessage = failures.isEmpty() ? null : "Some calendars could not be read: " + String.join("; ", failures);
+        return new EventsResponse(List.copyOf(merged.subList(from, to)), nextPageToken, errorMessage);
+    }
+
+    private List<String> resolveCalendars(String userId, List<String> calendarIds) throws IOException {
+        if (calendarIds != null && !calendarIds.isEmpty() && !calendarIds.contains(ALL_CALENDARS)) {
+            return calendarIds.stream().distinct().toList();
+        }
+        try {
+            return selectedCalendars.get(userId, id -> {
+                try {
+                    return googleCalendarService.getCalendarList(id).stream()
+                            .filter(entry -> Boolean.TRUE.equals(entry.getSelected()) || Boolean.TRUE.equals(entry.getPrimary()))
+                            .map(CalendarListEntry::getId)
+                            .toList();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Instances of a recurring event share an iCalUID, so the start time is part of the identity
+    private static Object dedupKey(Event event) {
+        String uid = event.getICalUID() != null ? event.getICalUID() : event.getId();
+        return uid + "@" + CalendarReplica.startMillis(event);
+    }
+}
@@ -0,0 +1,226 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.MessageAggregator;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
+
+/**
+ * Records chat latency, time to first token, token usage and streamed chunk counts for every request,
+ * and emits a structured event for a sample of them. Events are truncated to a size limit and handed
+ * to a bounded queue drained by a background thread, so the chat path never waits on log I/O; when the
+ * queue is full events are dropped and counted.
+ */
+@Slf4j
+@Component
+public class ObservabilityAdvisor implements CallAroundAdvisor, StreamAroundAdvisor, DisposableBean {
+
+    private static final Logger EVENTS = LoggerFactory.getLogger("chat.events");
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final double sampleRate;
+    private final int maxTextChars;
+    private final BlockingQueue<ChatEvent> queue;
+    private final Counter droppedEvents;
+    private final DistributionSummary promptTokens;
+    private final DistributionSummary completionTokens;
+    private final DistributionSummary streamedChunks;
+    private final Timer timeToFirstToken;
+    private final Thread writer;
+
+    public ObservabilityAdvisor(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                @Value("${calendar.observability.sample-rate:0.1}") double sampleRate,
+                                @Value("${calendar.observability.max-text-chars:500}") int maxTextChars,
+                                @Value("${calendar.observability.queue-capacity:1000}") int queueCapacity) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = sampleRate;
+        this.maxTextChars = maxTextChars;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.droppedEvents = Counter.builder("chat.events.dropped")
+                .description("Sampled chat events dropped because the queue was full")
+                .register(meterRegistry);
+        this.promptTokens = DistributionSummary.builder("chat.tokens").tag("type", "prompt").register(meterRegistry);
+        this.completionTokens = DistributionSummary.builder("chat.tokens").tag("type", "completion").register(meterRegistry);
+        this.streamedChunks = DistributionSummary.builder("chat.stream.chunks").register(meterRegistry);
+        this.timeToFirstToken = Timer.builder("chat.time.to.first.token")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.writer = Thread.ofPlatform().name("chat-events").daemon().start(this::drain);
+    }
+
+    @Override
+    public String getName() {
+        return "ObservabilityAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // Outermost, so latency covers memory and the other advisors too
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        long started = System.nanoTime();
+        String outcome = "error";
+        AdvisedResponse response = null;
+        try {
+            response = chain.nextAroundCall(advisedRequest);
+            outcome = "success";
+            return response;
+        } finally {
+            ChatResponse chatResponse = response != null ? response.response() : null;
+            complete(advisedRequest, chatResponse, "call", outcome, started, -1, 0);
+        }
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        long started = System.nanoTime();
+        AtomicLong firstTokenAt = new AtomicLong(-1);
+        AtomicInteger chunks = new AtomicInteger();
+        AtomicBoolean completed = new AtomicBoolean();
+
+        Flux<AdvisedResponse> responses = chain.nextAroundStream(advisedRequest)
+                .doOnNext(response -> {
+                    chunks.incrementAndGet();
+                    if (firstTokenAt.get() < 0 && hasText(response.response())) {
+                        firstTokenAt.compareAndSet(-1, System.nanoTime());
+                    }
+                });
+        return new MessageAggregator()
+                .aggregateAdvisedResponse(responses, aggregated -> {
+                    completed.set(true);
+                    complete(advisedRequest, aggregated.response(), "stream", "success", started, firstTokenAt.get(), chunks.get());
+                })
+                .doOnError(e -> {
+                    completed.set(true);
+                    complete(advisedRequest, null, "stream", "error", started, firstTokenAt.get(), chunks.get());
+                })
+                .doOnCancel(() -> {
+                    if (completed.compareAndSet(false, true)) {
+                        complete(advisedRequest, null, "stream", "cancelled", started, firstTokenAt.get(), chunks.get());
+                    }
+                });
+    }
+
+    private void complete(AdvisedRequest request, ChatResponse response, String mode, String outcome,
+                          long started, long firstTokenAt, int chunks) {
+        long finished = System.nanoTime();
+        Timer.builder("chat.latency")
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(finished - started, TimeUnit.NANOSECONDS);
+        if (firstTokenAt > 0) {
+            timeToFirstToken.record(firstTokenAt - started, TimeUnit.NANOSECONDS);
+        }
+        if (chunks > 0) {
+            streamedChunks.record(chunks);
+        }
+
+        Long prompt = null;
+        Long completion = null;
+        Usage usage = response != null && response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        if (usage != null && usage.getTotalTokens() != null && usage.getTotalTokens().longValue() > 0) {
+            Number promptCount = usage.getPromptTokens();
+            prompt = promptCount != null ? promptCount.longValue() : 0L;
+            completion = usage.getTotalTokens().longValue() - prompt;
+            promptTokens.record(prompt);
+            completionTokens.record(completion);
+        }
+
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        ChatEvent event = new ChatEvent(Instant.now().toString(), conversationId(request), mode, outcome,
+                TimeUnit.NANOSECONDS.toMillis(finished - started),
+                firstTokenAt > 0 ? TimeUnit.NANOSECONDS.toMillis(firstTokenAt - started) : null,
+                chunks, prompt, completion, truncate(request.userText()), truncate(responseText(response)));
+        if (!queue.offer(event)) {
+            droppedEvents.increment();
+        }
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ChatEvent event = queue.take();
+                EVENTS.info(objectMapper.writeValueAsString(event));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (JsonProcessingException | RuntimeException e) {
+                log.warn("Failed to write chat event: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        writer.interrupt();
+    }
+
+    private String truncate(String text) {
+        if (text == null || text.length() <= maxTextChars) {
+            return text;
+        }
+        return text.substring(0, maxTextChars) + "... [" + (text.length() - maxTextChars) + " chars truncated]";
+    }
+
+    private static String conversationId(AdvisedRequest request) {
+        Object id = request.adviseContext().get(CHAT_MEMORY_CONVERSATION_ID_KEY);
+        return id != null ? id.toString() : null;
+    }
+
+    private static boolean hasText(ChatResponse response) {
+        return response != null && response.getResults().stream()
+                .map(Generation::getOutput)
+                .anyMatch(output -> output != null && output.getText() != null && !output.getText().isEmpty());
+    }
+
+    private static String responseText(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
+
+    record ChatEvent(String timestamp, String conversationId, String mode, String outcome, long latencyMs,
+                     Long timeToFirstTokenMs, int chunks, Long promptTokens, Long completionTokens,
+                     String request, String response) {
+    }
+}
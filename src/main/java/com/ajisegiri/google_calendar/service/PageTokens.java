@@ -0,0 +1,41 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Page tokens of results paged locally: the offset of the page's first item, as a decimal string.
+ */
+final class PageTokens {
+
+    private PageTokens() {
+    }
+
+    /**
+     * Offset the token points at; 0 for the first page.
+     *
+     * @throws InvalidPageTokenException if the token is not one this application handed out
+     */
+    static int offset(String page) {
+        if (page == null || page.isBlank()) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(page.strip());
+            if (offset >= 0) {
+                return offset;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new InvalidPageTokenException("Invalid page token '" + page + "'; pass the nextPageToken of a previous response");
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public static class InvalidPageTokenException extends IllegalArgumentException {
+
+        InvalidPageTokenException(String message) {
+            super(message);
+        }
+    }
+}
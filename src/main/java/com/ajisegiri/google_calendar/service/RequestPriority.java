@@ -0,0 +1,45 @@
+package com.ajisegiri.google_calendar.service;
+
+import java.io.IOException;
+
+/**
+ * Priority class of Google API calls. Interactive calls (a user waiting on a chat turn or an HTTP request)
+ * are admitted ahead of background work, and background work ahead of speculative prefetch. The priority
+ * applies to every Google call made on the current thread inside {@link #run}; calls default to
+ * {@link #INTERACTIVE}.
+ */
+public enum RequestPriority {
+
+    INTERACTIVE(0.0),
+    BACKGROUND(0.25),
+    PREFETCH(0.5);
+
+    private static final ThreadLocal<RequestPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    private final double reservedFraction;
+
+    RequestPriority(double reservedFraction) {
+        this.reservedFraction = reservedFraction;
+    }
+
+    /**
+     * Share of a token bucket this priority may not consume, kept free for higher priorities.
+     */
+    double reservedFraction() {
+        return reservedFraction;
+    }
+
+    public static RequestPriority current() {
+        return CURRENT.get();
+    }
+
+    public <T> T run(GoogleIoExecutor.IoCall<T> call) throws IOException {
+        RequestPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.call();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventAttendee;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional embedding index over replica events, one Spring AI {@link VectorStore} per replica. Replica
+ * changes are queued and embedded in batches on a background thread, so syncs and writes never wait on the
+ * embedding model; the index is therefore eventually consistent with the replica. The embedding model is
+ * either the local {@link HashingEmbeddingModel} or the application's {@link EmbeddingModel} bean.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "calendar.search.semantic.enabled", havingValue = "true")
+public class SemanticEventIndex implements DisposableBean {
+
+    private static final int BATCH_SIZE = 100;
+    private static final String START_MILLIS = "startMillis";
+    private static final String END_MILLIS = "endMillis";
+
+    private final EmbeddingModel embeddingModel;
+    private final double similarityThreshold;
+    private final Map<String, VectorStore> stores = new ConcurrentHashMap<>();
+    private final BlockingQueue<Change> changes;
+    private final Thread indexer;
+
+    public SemanticEventIndex(ObjectProvider<EmbeddingModel> embeddingModels, MeterRegistry meterRegistry,
+                              @Value("${calendar.search.semantic.embedding-model:hashing}") String embeddingModel,
+                              @Value("${calendar.search.semantic.dimensions:384}") int dimensions,
+                              @Value("${calendar.search.semantic.similarity-threshold:0.3}") double similarityThreshold,
+                              @Value("${calendar.search.semantic.queue-capacity:10000}") int queueCapacity) {
+        this.embeddingModel = "hashing".equals(embeddingModel) ? new HashingEmbeddingModel(dimensions) : embeddingModels.getObject();
+        this.similarityThreshold = similarityThreshold;
+        this.changes = new ArrayBlockingQueue<>(queueCapacity);
+        meterRegistry.gauge("calendar.search.semantic.pending", changes, BlockingQueue::size);
+        this.indexer = Thread.ofPlatform().name("semantic-index").daemon().start(this::drain);
+    }
+
+    /**
+     * Listener that mirrors one replica into its vector store.
+     */
+    public CalendarReplica.ChangeListener listener(String scope, String calendarId) {
+        String replica = replicaKey(scope, calendarId);
+        return new CalendarReplica.ChangeListener() {
+            @Override
+            public void upserted(Event event) {
+                enqueue(new Change(replica, event.getId(), event));
+            }
+
+            @Override
+            public void removed(String eventId) {
+                enqueue(new Change(replica, eventId, null));
+            }
+
+            @Override
+            public void cleared() {
+                enqueue(new Change(replica, null, null));
+            }
+        };
+    }
+
+    /**
+     * Ids of the events overlapping [startMillis, endMillis) that are closest in meaning to the query, best
+     * first. The window is applied before topK, so close matches outside it do not crowd out those inside.
+     */
+    public List<String> search(String scope, String calendarId, String query, long startMillis, long endMillis, int topK) {
+        VectorStore store = stores.get(replicaKey(scope, calendarId));
+        if (store == null) {
+            return List.of();
+        }
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        // Bounds as doubles: SimpleVectorStore evaluates filters with SpEL, which reads integer literals as int
+        List<Document> documents = store.similaritySearch(SearchRequest.builder()
+                .query(query)
+                .topK(topK)
+                .similarityThreshold(similarityThreshold)
+                .filterExpression(filter.and(filter.lt(START_MILLIS, (double) endMillis), filter.gt(END_MILLIS, (double) startMillis)).build())
+                .build());
+        if (documents == null) {
+            return List.of();
+        }
+        return documents.stream().map(document -> (String) document.getMetadata().get("eventId")).toList();
+    }
+
+    private void enqueue(Change change) {
+        try {
+            // Blocks only when the indexer is far behind, slowing syncs down rather than losing changes
+            changes.put(change);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<Change> batch = new ArrayList<>(BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(changes.take());
+                changes.drainTo(batch, BATCH_SIZE - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("Failed to update the semantic event index: {}", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Changes are applied in order; consecutive upserts and deletes of a replica are sent as one call each
+    private void apply(List<Change> batch) {
+        String replica = null;
+        Map<String, Document> upserts = new LinkedHashMap<>();
+        List<String> deletes = new ArrayList<>();
+        for (Change change : batch) {
+            if (!change.replica().equals(replica) || change.eventId() == null) {
+                flush(replica, upserts, deletes);
+                replica = change.replica();
+            }
+            if (change.eventId() == null) {
+                stores.remove(change.replica());
+            } else if (change.event() != null) {
+                deletes.remove(documentId(replica, change.eventId()));
+                upserts.put(change.eventId(), toDocument(replica, change.event()));
+            } else {
+                upserts.remove(change.eventId());
+                deletes.add(documentId(replica, change.eventId()));
+            }
+        }
+        flush(replica, upserts, deletes);
+    }
+
+    private void flush(String replica, Map<String, Document> upserts, List<String> deletes) {
+        if (replica == null) {
+            return;
+        }
+        VectorStore store = stores.computeIfAbsent(replica, key -> SimpleVectorStore.builder(embeddingModel).build());
+        if (!deletes.isEmpty()) {
+            store.delete(List.copyOf(deletes));
+            deletes.clear();
+        }
+        if (!upserts.isEmpty()) {
+            store.add(List.copyOf(upserts.values()));
+            upserts.clear();
+        }
+    }
+
+    private static Document toDocument(String replica, Event event) {
+        StringJoiner text = new StringJoiner("\n");
+        if (event.getSummary() != null) {
+            text.add(event.getSummary());
+        }
+        if (event.getLocation() != null) {
+            text.add(event.getLocation());
+        }
+        if (event.getDescription() != null) {
+            text.add(event.getDescription());
+        }
+        if (event.getAttendees() != null) {
+            for (EventAttendee attendee : event.getAttendees()) {
+                text.add(attendee.getDisplayName() != null ? attendee.getDisplayName() + " " + attendee.getEmail() : String.valueOf(attendee.getEmail()));
+            }
+        }
+        return new Document(documentId(replica, event.getId()), text.toString(), Map.of("eventId", event.getId(),
+                START_MILLIS, CalendarReplica.startMillis(event), END_MILLIS, CalendarReplica.endMillis(event)));
+    }
+
+    // Stable UUIDs, as most vector stores require them as ids
+    private static String documentId(String replica, String eventId) {
+        return UUID.nameUUIDFromBytes((replica + "/" + eventId).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static String replicaKey(String scope, String calendarId) {
+        return scope + "/" + calendarId;
+    }
+
+    @Override
+    public void destroy() {
+        indexer.interrupt();
+    }
+
+    private record Change(String replica, String eventId, Event event) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.ajisegiri.google_calendar.service;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collapses concurrent identical calls into one. The first caller for a key runs the call; callers that
+ * arrive while it is in flight wait for it and share its result or failure. Nothing is kept afterwards,
+ * so the next call for the key runs again.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger followers = new AtomicInteger();
+
+    public V run(K key, GoogleIoExecutor.IoCall<V> call) throws IOException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            V value = call.call();
+            flight.complete(value);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    // Callers currently waiting on another caller's call; lets tests tell when a follower has joined
+    int followers() {
+        return followers.get();
+    }
+
+    private V await(CompletableFuture<V> running) throws IOException {
+        followers.incrementAndGet();
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shared call", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Shared call failed", e.getCause());
+        } finally {
+            followers.decrementAndGet();
+        }
+    }
+}
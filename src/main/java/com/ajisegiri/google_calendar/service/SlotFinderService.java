@@ -0,0 +1,123 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.FreeSlot;
+import com.ajisegiri.google_calendar.api.FreeSlotsResponse;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.FreeBusyCalendar;
+import com.google.api.services.calendar.model.FreeBusyRequest;
+import com.google.api.services.calendar.model.FreeBusyRequestItem;
+import com.google.api.services.calendar.model.FreeBusyResponse;
+import com.google.api.services.calendar.model.TimePeriod;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds meeting times from Google's free/busy data instead of full event lists: one freebusy query
+ * returns only the busy periods of the user and every attendee, and {@link FreeSlotCalculator} does the
+ * rest locally.
+ */
+@Slf4j
+@Service
+public class SlotFinderService {
+
+    // Google accepts at most this many calendars per freebusy query
+    private static final int MAX_CALENDARS_PER_QUERY = 50;
+    private static final String OWN_CALENDAR = "primary";
+
+    private final GoogleOAuthService googleOAuthService;
+    private final GoogleIoExecutor googleIoExecutor;
+    private final Set<DayOfWeek> workingDays;
+    private final Duration step;
+
+    public SlotFinderService(GoogleOAuthService googleOAuthService, GoogleIoExecutor googleIoExecutor,
+                             @Value("${calendar.slots.working-days:MONDAY,TUESDAY,WEDNESDAY,THURSDAY,FRIDAY}") Set<DayOfWeek> workingDays,
+                             @Value("${calendar.slots.step:15m}") Duration step) {
+        this.googleOAuthService = googleOAuthService;
+        this.googleIoExecutor = googleIoExecutor;
+        this.workingDays = workingDays.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(workingDays);
+        this.step = step;
+    }
+
+    /**
+     * Ranked free slots of the given length within [startMillis, endMillis) for the user and the attendees.
+     * Working hours apply in each person's own time zone; attendees without one in {@code attendeeZones}
+     * are assumed to share the user's.
+     */
+    public FreeSlotsResponse findSlots(String userId, List<String> attendees, Map<String, ZoneId> attendeeZones,
+                                       ZoneId zone, long startMillis, long endMillis, Duration length,
+                                       LocalTime workdayStart, LocalTime workdayEnd, int maxResults) throws IOException {
+        List<String> calendars = new ArrayList<>();
+        calendars.add(OWN_CALENDAR);
+        attendees.stream().filter(email -> !calendars.contains(email)).forEach(calendars::add);
+
+        Map<String, FreeBusyCalendar> busy = queryFreeBusy(userId, calendars, startMillis, endMillis);
+        List<FreeSlotCalculator.Participant> participants = new ArrayList<>();
+        List<String> unavailable = new ArrayList<>();
+        for (String calendarId : calendars) {
+            FreeBusyCalendar calendar = busy.get(calendarId);
+            if (calendar == null || (calendar.getErrors() != null && !calendar.getErrors().isEmpty())) {
+                unavailable.add(calendarId);
+                continue;
+            }
+            ZoneId participantZone = calendarId.equals(OWN_CALENDAR) ? zone : attendeeZones.getOrDefault(calendarId, zone);
+            participants.add(new FreeSlotCalculator.Participant(toIntervals(calendar.getBusy()), participantZone));
+        }
+        if (unavailable.contains(OWN_CALENDAR)) {
+            return FreeSlotsResponse.error("Could not read the user's own free/busy information");
+        }
+
+        List<FreeSlotCalculator.Slot> slots = new FreeSlotCalculator(workdayStart, workdayEnd, workingDays, step)
+                .find(participants, startMillis, endMillis, length, maxResults);
+        log.info("Found {} free slots for {} participants ({} unavailable)", slots.size(), participants.size(), unavailable.size());
+        return new FreeSlotsResponse(slots.stream()
+                .map(slot -> new FreeSlot(format(slot.start(), zone), format(slot.end(), zone)))
+                .toList(), unavailable.isEmpty() ? null : unavailable, null);
+    }
+
+    private Map<String, FreeBusyCalendar> queryFreeBusy(String userId, List<String> calendars, long startMillis,
+                                                        long endMillis) throws IOException {
+        Calendar calendarService = googleOAuthService.getCalendarService(userId);
+        Map<String, FreeBusyCalendar> result = new LinkedHashMap<>();
+        for (int from = 0; from < calendars.size(); from += MAX_CALENDARS_PER_QUERY) {
+            List<FreeBusyRequestItem> items = calendars.subList(from, Math.min(from + MAX_CALENDARS_PER_QUERY, calendars.size()))
+                    .stream().map(id -> new FreeBusyRequestItem().setId(id)).toList();
+            FreeBusyResponse response = googleIoExecutor.execute(userId, calendarService.freebusy().query(new FreeBusyRequest()
+                    .setTimeMin(new DateTime(startMillis))
+                    .setTimeMax(new DateTime(endMillis))
+                    .setTimeZone("UTC")
+                    .setItems(items)));
+            if (response.getCalendars() != null) {
+                result.putAll(response.getCalendars());
+            }
+        }
+        return result;
+    }
+
+    private static List<FreeSlotCalculator.Interval> toIntervals(List<TimePeriod> periods) {
+        if (periods == null) {
+            return List.of();
+        }
+        return periods.stream()
+                .map(period -> new FreeSlotCalculator.Interval(period.getStart().getValue(), period.getEnd().getValue()))
+                .toList();
+    }
+
+    private static String format(long millis, ZoneId zone) {
+        return Instant.ofEpochMilli(millis).atZone(zone).toOffsetDateTime().toString();
+    }
+}
@@ -0,0 +1,101 @@
+package com.ajisegiri.google_calendar.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket with an adaptive refill rate. Each throttling response from the server halves the rate
+ * (never below the minimum); each successful call adds back a small share of the configured rate, so the
+ * bucket settles just under the limit the server actually enforces.
+ */
+public final class TokenBucket {
+
+    private static final double RECOVERY_STEP = 0.02;
+    private static final double MIN_RATE_FRACTION = 0.05;
+
+    private final double capacity;
+    private final double maxRate;
+    private final double minRate;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private double rate;
+    private long refilledAt;
+    private long blockedUntil;
+
+    public TokenBucket(double capacity, double ratePerSecond, LongSupplier nanoClock) {
+        this.capacity = capacity;
+        this.maxRate = ratePerSecond;
+        this.minRate = ratePerSecond * MIN_RATE_FRACTION;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.rate = ratePerSecond;
+        this.refilledAt = nanoClock.getAsLong();
+        this.blockedUntil = refilledAt;
+    }
+
+    public TokenBucket(double capacity, double ratePerSecond) {
+        this(capacity, ratePerSecond, System::nanoTime);
+    }
+
+    /**
+     * Take {@code count} tokens if at least {@code reservedFraction} of the capacity would remain afterwards.
+     * A count larger than the capacity is treated as a full bucket.
+     *
+     * @return 0 if the tokens were taken, otherwise the nanoseconds to wait before trying again
+     */
+    public synchronized long tryAcquire(double count, double reservedFraction) {
+        long now = refill();
+        if (now < blockedUntil) {
+            return blockedUntil - now;
+        }
+        double needed = Math.min(count, capacity);
+        double floor = Math.min(capacity * reservedFraction, capacity - needed);
+        if (tokens - needed >= floor) {
+            tokens -= needed;
+            return 0;
+        }
+        double missing = floor + needed - tokens;
+        return Math.max(1, (long) Math.ceil(missing * TimeUnit.SECONDS.toNanos(1) / rate));
+    }
+
+    /**
+     * Return tokens taken by {@link #tryAcquire} that were not used.
+     */
+    public synchronized void release(double count) {
+        tokens = Math.min(capacity, tokens + Math.min(count, capacity));
+    }
+
+    /**
+     * The server throttled a call: halve the refill rate, and admit nothing for {@code pauseNanos}.
+     */
+    public synchronized void onThrottled(long pauseNanos) {
+        long now = refill();
+        rate = Math.max(minRate, rate / 2);
+        tokens = Math.min(tokens, 0);
+        blockedUntil = Math.max(blockedUntil, now + pauseNanos);
+    }
+
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + maxRate * RECOVERY_STEP);
+    }
+
+    public synchronized double rate() {
+        return rate;
+    }
+
+    public synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private long refill() {
+        long now = nanoClock.getAsLong();
+        long elapsed = now - refilledAt;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * rate / TimeUnit.SECONDS.toNanos(1));
+            refilledAt = now;
+        }
+        return now;
+    }
+}
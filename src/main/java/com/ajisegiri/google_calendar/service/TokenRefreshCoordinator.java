@@ -0,0 +1,71 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.client.auth.oauth2.Credential;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Single-flight OAuth token refresh. Concurrent callers for the same user share one in-flight
+ * refresh instead of each hitting the token endpoint.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRefreshCoordinator {
+
+    private final GoogleIoExecutor googleIoExecutor;
+    private final ConcurrentMap<String, CompletableFuture<Credential>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Refresh the given credential, or join the refresh already running for this user.
+     *
+     * @return the refreshed credential, which is not necessarily the instance passed in
+     */
+    public Credential refresh(String userId, Credential credential) throws IOException {
+        CompletableFuture<Credential> refresh = new CompletableFuture<>();
+        CompletableFuture<Credential> running = inFlight.putIfAbsent(userId, refresh);
+        if (running != null) {
+            log.debug("Joining in-flight token refresh for {}", userId);
+            return await(running);
+        }
+
+        try {
+            log.info("Refreshing access token for {}", userId);
+            if (!googleIoExecutor.execute(userId, "oauth.refresh", credential::refreshToken)) {
+                throw new IOException("Failed to refresh access token");
+            }
+            refresh.complete(credential);
+            return credential;
+        } catch (IOException | RuntimeException e) {
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(userId, refresh);
+        }
+    }
+
+    public boolean isRefreshing(String userId) {
+        return inFlight.containsKey(userId);
+    }
+
+    private Credential await(CompletableFuture<Credential> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for token refresh", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Token refresh failed", e.getCause());
+        }
+    }
+}
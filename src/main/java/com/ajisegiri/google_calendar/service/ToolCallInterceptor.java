@@ -0,0 +1,21 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Wraps each tool call the {@link ConcurrentToolCallingManager} runs, with sight of every call the model
+ * issued alongside it in the same assistant message, so a tool can prepare for its siblings (e.g. batch them).
+ */
+@FunctionalInterface
+public interface ToolCallInterceptor {
+
+    ToolCallInterceptor NONE = (toolCalls, toolCall, call) -> call.get();
+
+    /**
+     * Runs on the thread executing {@code toolCall}; must invoke {@code call} exactly once and return its result.
+     */
+    String intercept(List<AssistantMessage.ToolCall> toolCalls, AssistantMessage.ToolCall toolCall, Supplier<String> call);
+}
@@ -0,0 +1,31 @@
+package com.ajisegiri.google_calendar.service;
+
+/**
+ * How a tool call ended, for the {@code calendar.tool} observation. Tools answer failures with an error in
+ * their result so the model can react to it, and mark the call failed here; the
+ * {@link ConcurrentToolCallingManager} reads the mark when the call returns instead of parsing the result.
+ */
+public final class ToolOutcome {
+
+    // Tool callbacks run synchronously on the thread the manager gave the call
+    private static final ThreadLocal<String> FAILURE = new ThreadLocal<>();
+
+    private ToolOutcome() {
+    }
+
+    /**
+     * Mark the tool call running on this thread as failed.
+     */
+    public static void failed(String errorMessage) {
+        FAILURE.set(errorMessage != null ? errorMessage : "");
+    }
+
+    /**
+     * The failure reported since the last call, or null if the tool succeeded; clears the mark.
+     */
+    static String takeFailure() {
+        String failure = FAILURE.get();
+        FAILURE.remove();
+        return failure;
+    }
+}
@@ -0,0 +1,146 @@
+package com.ajisegiri.google_calendar;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.util.store.DataStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EncryptedLogDataStoreFactoryTests {
+
+	private static final byte[] KEY = key(1);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void credentialsSurviveReopening() throws IOException {
+		open(KEY).set("alice", credential("access-1"));
+		open(KEY).set("bob", credential("access-2"));
+
+		DataStore<StoredCredential> reopened = open(KEY);
+		assertThat(reopened.keySet()).containsExactlyInAnyOrder("alice", "bob");
+		assertThat(reopened.get("alice").getAccessToken()).isEqualTo("access-1");
+		assertThat(reopened.get("alice").getRefreshToken()).isEqualTo("refresh");
+		assertThat(reopened.get("bob").getAccessToken()).isEqualTo("access-2");
+	}
+
+	@Test
+	void latestWriteWinsAfterReopening() throws IOException {
+		DataStore<StoredCredential> store = open(KEY);
+		store.set("alice", credential("access-1"));
+		store.set("alice", credential("access-2"));
+
+		assertThat(open(KEY).get("alice").getAccessToken()).isEqualTo("access-2");
+	}
+
+	@Test
+	void tornTailRecordIsTruncated() throws IOException {
+		open(KEY).set("alice", credential("access-1"));
+		long intact = Files.size(log());
+		// A crash mid-append: a length prefix promising more bytes than were written
+		try (FileChannel channel = FileChannel.open(log(), StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.allocate(Integer.BYTES + 5).putInt(500).put(new byte[5]).flip());
+		}
+
+		DataStore<StoredCredential> reopened = open(KEY);
+
+		assertThat(Files.size(log())).isEqualTo(intact);
+		assertThat(reopened.get("alice").getAccessToken()).isEqualTo("access-1");
+		reopened.set("bob", credential("access-2"));
+		assertThat(open(KEY).get("bob").getAccessToken()).isEqualTo("access-2");
+	}
+
+	@Test
+	void supersededRecordsAreCompactedAway() throws IOException {
+		DataStore<StoredCredential> store = open(KEY);
+		String largeToken = "x".repeat(16 * 1024);
+		for (int i = 0; i < 100; i++) {
+			store.set("alice", credential(largeToken + i));
+		}
+		store.set("bob", credential("access-2"));
+
+		// Over 1.6 MB was written; after compaction at most the dead bytes since then stay behind
+		assertThat(Files.size(log())).isLessThan(1024 * 1024 + 2 * largeToken.length());
+		assertThat(store.get("alice").getAccessToken()).isEqualTo(largeToken + 99);
+		DataStore<StoredCredential> reopened = open(KEY);
+		assertThat(reopened.get("alice").getAccessToken()).isEqualTo(largeToken + 99);
+		assertThat(reopened.get("bob").getAccessToken()).isEqualTo("access-2");
+	}
+
+	@Test
+	void deleteAndClearAreDurable() throws IOException {
+		DataStore<StoredCredential> store = open(KEY);
+		store.set("alice", credential("access-1"));
+		store.set("bob", credential("access-2"));
+		store.delete("alice");
+
+		assertThat(store.get("alice")).isNull();
+		DataStore<StoredCredential> reopened = open(KEY);
+		assertThat(reopened.keySet()).containsExactly("bob");
+
+		reopened.clear();
+		assertThat(reopened.keySet()).isEmpty();
+		assertThat(open(KEY).keySet()).isEmpty();
+		assertThat(open(KEY).get("bob")).isNull();
+	}
+
+	@Test
+	void wrongKeyCannotRead() throws IOException {
+		open(KEY).set("alice", credential("access-1"));
+
+		DataStore<StoredCredential> wrongKey = open(key(2));
+		// Key ids are keyed hashes too, so the entry is not even found under another key
+		assertThat(wrongKey.get("alice")).isNull();
+		assertThat(wrongKey.size()).isEqualTo(1);
+		assertThatThrownBy(wrongKey::keySet).isInstanceOf(IOException.class).hasMessageContaining("failed authentication");
+	}
+
+	@Test
+	void tamperedCiphertextFailsAuthentication() throws IOException {
+		open(KEY).set("alice", credential("access-1"));
+		byte[] bytes = Files.readAllBytes(log());
+		bytes[bytes.length - 1] ^= 1;
+		Files.write(log(), bytes);
+
+		DataStore<StoredCredential> reopened = open(KEY);
+		assertThatThrownBy(() -> reopened.get("alice")).isInstanceOf(IOException.class).hasMessageContaining("failed authentication");
+	}
+
+	@Test
+	void rejectsKeysThatAreNot256Bits() {
+		assertThatThrownBy(() -> new EncryptedLogDataStoreFactory(directory, new byte[16], 10))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private DataStore<StoredCredential> open(byte[] key) throws IOException {
+		return StoredCredential.getDefaultDataStore(new EncryptedLogDataStoreFactory(directory, key, 10));
+	}
+
+	private Path log() {
+		return directory.resolve(StoredCredential.DEFAULT_DATA_STORE_ID + ".log");
+	}
+
+	private static StoredCredential credential(String accessToken) {
+		return new StoredCredential()
+				.setAccessToken(accessToken)
+				.setRefreshToken("refresh")
+				.setExpirationTimeMilliseconds(1_000L);
+	}
+
+	private static byte[] key(int fill) {
+		byte[] key = new byte[32];
+		Arrays.fill(key, (byte) fill);
+		return key;
+	}
+}
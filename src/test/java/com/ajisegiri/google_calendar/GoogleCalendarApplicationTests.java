@@ -3,7 +3,7 @@ package com.ajisegiri.google_calendar;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "calendar.user-id=test-user")
 class GoogleCalendarApplicationTests {
 
 	@Test
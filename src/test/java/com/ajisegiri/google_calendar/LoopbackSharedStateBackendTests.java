@@ -0,0 +1,74 @@
+package com.ajisegiri.google_calendar;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class LoopbackSharedStateBackendTests {
+
+	private final String cluster = UUID.randomUUID().toString();
+	private final LoopbackSharedStateBackend nodeA = new LoopbackSharedStateBackend(cluster);
+	private final LoopbackSharedStateBackend nodeB = new LoopbackSharedStateBackend(cluster);
+
+	@AfterEach
+	void closeNodes() {
+		nodeA.close();
+		nodeB.close();
+	}
+
+	@Test
+	void nodesOfOneClusterShareValuesAsCopies() {
+		byte[] value = {1, 2, 3};
+		nodeA.put("ns", "key", value);
+		value[0] = 9;
+
+		byte[] read = nodeB.get("ns", "key");
+		assertThat(read).containsExactly(1, 2, 3);
+		read[1] = 9;
+		assertThat(nodeA.get("ns", "key")).containsExactly(1, 2, 3);
+		try (LoopbackSharedStateBackend otherCluster = new LoopbackSharedStateBackend(UUID.randomUUID().toString())) {
+			assertThat(otherCluster.get("ns", "key")).isNull();
+		}
+	}
+
+	@Test
+	void appendKeepsTheLastElements() {
+		nodeA.append("ns", "list", List.of(new byte[]{1}, new byte[]{2}), 3);
+		nodeB.append("ns", "list", List.of(new byte[]{3}, new byte[]{4}), 3);
+
+		assertThat(nodeA.tail("ns", "list", 10)).extracting(bytes -> bytes[0]).containsExactly((byte) 2, (byte) 3, (byte) 4);
+		assertThat(nodeA.tail("ns", "list", 1)).extracting(bytes -> bytes[0]).containsExactly((byte) 4);
+	}
+
+	@Test
+	void publishReachesEverySubscriberUntilItsNodeCloses() {
+		List<String> received = new CopyOnWriteArrayList<>();
+		nodeB.subscribe("channel", received::add);
+
+		nodeA.publish("channel", "first");
+		await().atMost(Duration.ofSeconds(5)).until(() -> received.contains("first"));
+
+		nodeB.close();
+		nodeA.publish("channel", "second");
+		assertThat(received).containsExactly("first");
+	}
+
+	@Test
+	void leaseIsHeldByOneOwnerUntilItExpires() throws InterruptedException {
+		assertThat(nodeA.tryLease("renewal", "a", Duration.ofMillis(200))).isTrue();
+		assertThat(nodeB.tryLease("renewal", "b", Duration.ofMillis(200))).isFalse();
+		assertThat(nodeA.tryLease("renewal", "a", Duration.ofMillis(200))).isTrue();
+
+		Thread.sleep(300);
+
+		assertThat(nodeB.tryLease("renewal", "b", Duration.ofMinutes(1))).isTrue();
+		assertThat(nodeA.tryLease("renewal", "a", Duration.ofMinutes(1))).isFalse();
+	}
+}
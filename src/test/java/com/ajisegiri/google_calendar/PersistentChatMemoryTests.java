@@ -0,0 +1,105 @@
+package com.ajisegiri.google_calendar;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistentChatMemoryTests {
+
+	private static final int MAX_MESSAGES = 4;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void conversationSurvivesARestart() throws IOException {
+		open().add("chat", List.of(new UserMessage("hi"), new AssistantMessage("hello")));
+
+		assertThat(texts(open().get("chat", 10))).containsExactly("hi", "hello");
+	}
+
+	@Test
+	void toolCallsAndResponsesSurviveARestart() throws IOException {
+		AssistantMessage.ToolCall toolCall = new AssistantMessage.ToolCall("call-1", "function", "getCalendarEvent", "{}");
+		ToolResponseMessage.ToolResponse response = new ToolResponseMessage.ToolResponse("call-1", "getCalendarEvent", "[]");
+		open().add("chat", List.of(new AssistantMessage("", Map.of(), List.of(toolCall)), new ToolResponseMessage(List.of(response))));
+
+		List<Message> messages = open().get("chat", 10);
+
+		assertThat(((AssistantMessage) messages.get(0)).getToolCalls()).containsExactly(toolCall);
+		assertThat(((ToolResponseMessage) messages.get(1)).getResponses()).containsExactly(response);
+	}
+
+	@Test
+	void conversationIsCappedBeforeAndAfterARestart() throws IOException {
+		PersistentChatMemory memory = open();
+		for (int i = 0; i < 6; i++) {
+			memory.add("chat", List.of(new UserMessage("m" + i)));
+		}
+
+		assertThat(texts(memory.get("chat", 10))).containsExactly("m2", "m3", "m4", "m5");
+		assertThat(texts(memory.get("chat", 2))).containsExactly("m4", "m5");
+		assertThat(texts(open().get("chat", 10))).containsExactly("m2", "m3", "m4", "m5");
+	}
+
+	@Test
+	void logIsCompactedOnWriteWithoutARestart() throws IOException {
+		PersistentChatMemory memory = open();
+		for (int i = 0; i < 25; i++) {
+			memory.add("chat", List.of(new UserMessage("m" + i)));
+		}
+
+		assertThat(lines(logFile())).isLessThan(2 * MAX_MESSAGES);
+		assertThat(texts(open().get("chat", 10))).containsExactly("m21", "m22", "m23", "m24");
+	}
+
+	@Test
+	void clearDeletesTheLog() throws IOException {
+		PersistentChatMemory memory = open();
+		memory.add("chat", List.of(new UserMessage("hi")));
+		memory.add("other", List.of(new UserMessage("hey")));
+
+		memory.clear("chat");
+
+		assertThat(memory.get("chat", 10)).isEmpty();
+		assertThat(open().get("chat", 10)).isEmpty();
+		assertThat(texts(open().get("other", 10))).containsExactly("hey");
+	}
+
+	private PersistentChatMemory open() throws IOException {
+		return new PersistentChatMemory(new SimpleMeterRegistry(), directory, DataSize.ofMegabytes(1), MAX_MESSAGES,
+				Duration.ofMinutes(5));
+	}
+
+	private Path logFile() throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files.filter(file -> file.toString().endsWith(".jsonl")).findFirst().orElseThrow();
+		}
+	}
+
+	private static long lines(Path file) throws IOException {
+		try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+			return lines.count();
+		}
+	}
+
+	private static List<String> texts(List<Message> messages) {
+		return messages.stream().map(Message::getText).toList();
+	}
+}
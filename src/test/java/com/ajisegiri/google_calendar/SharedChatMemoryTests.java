@@ -0,0 +1,71 @@
+package com.ajisegiri.google_calendar;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class SharedChatMemoryTests {
+
+	private final String cluster = UUID.randomUUID().toString();
+	private final LoopbackSharedStateBackend backendA = new LoopbackSharedStateBackend(cluster);
+	private final LoopbackSharedStateBackend backendB = new LoopbackSharedStateBackend(cluster);
+	private final SharedChatMemory nodeA = new SharedChatMemory(backendA, 4, 100, Duration.ofMinutes(5));
+	private final SharedChatMemory nodeB = new SharedChatMemory(backendB, 4, 100, Duration.ofMinutes(5));
+
+	@AfterEach
+	void closeNodes() {
+		backendA.close();
+		backendB.close();
+	}
+
+	@Test
+	void conversationContinuesOnAnotherNode() {
+		nodeA.add("chat", List.of(new UserMessage("hi"), new AssistantMessage("hello")));
+
+		assertThat(texts(nodeB.get("chat", 10))).containsExactly("hi", "hello");
+	}
+
+	@Test
+	void appendOnOneNodeReachesTheOtherNodesNearCache() {
+		nodeA.add("chat", List.of(new UserMessage("hi")));
+		assertThat(texts(nodeB.get("chat", 10))).containsExactly("hi");
+
+		nodeA.add("chat", List.of(new AssistantMessage("hello")));
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> nodeB.get("chat", 10).size() == 2);
+		assertThat(texts(nodeB.get("chat", 10))).containsExactly("hi", "hello");
+	}
+
+	@Test
+	void conversationIsCappedAndLastNApplies() {
+		for (int i = 0; i < 6; i++) {
+			nodeA.add("chat", List.of(new UserMessage("m" + i)));
+		}
+
+		assertThat(texts(nodeB.get("chat", 10))).containsExactly("m2", "m3", "m4", "m5");
+		assertThat(texts(nodeB.get("chat", 2))).containsExactly("m4", "m5");
+	}
+
+	@Test
+	void clearOnOneNodeClearsItEverywhere() {
+		nodeA.add("chat", List.of(new UserMessage("hi")));
+		assertThat(nodeB.get("chat", 10)).hasSize(1);
+
+		nodeA.clear("chat");
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> nodeB.get("chat", 10).isEmpty());
+	}
+
+	private static List<String> texts(List<Message> messages) {
+		return messages.stream().map(Message::getText).toList();
+	}
+}
@@ -0,0 +1,136 @@
+package com.ajisegiri.google_calendar;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.util.store.DataStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class SharedDataStoreFactoryTests {
+
+	private static final String NAMESPACE = "datastore:" + StoredCredential.DEFAULT_DATA_STORE_ID;
+
+	private final String cluster = UUID.randomUUID().toString();
+	private final byte[] key = key(1);
+	private final List<LoopbackSharedStateBackend> nodes = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void closeNodes() {
+		nodes.forEach(LoopbackSharedStateBackend::close);
+	}
+
+	@Test
+	void credentialWrittenOnOneNodeIsReadOnAnother() throws IOException {
+		DataStore<StoredCredential> nodeA = store(node(), key);
+		DataStore<StoredCredential> nodeB = store(node(), key);
+
+		nodeA.set("alice", credential("access-1"));
+
+		StoredCredential read = nodeB.get("alice");
+		assertThat(read.getAccessToken()).isEqualTo("access-1");
+		assertThat(read.getRefreshToken()).isEqualTo("refresh");
+		assertThat(read.getExpirationTimeMilliseconds()).isEqualTo(1_000L);
+		assertThat(nodeB.keySet()).containsExactly("alice");
+	}
+
+	@Test
+	void writeOnOneNodeInvalidatesTheOtherNodesNearCache() throws IOException {
+		SharedDataStoreFactory factoryB = factory(node(), key);
+		List<String> remoteChanges = new CopyOnWriteArrayList<>();
+		factoryB.onRemoteChange(StoredCredential.DEFAULT_DATA_STORE_ID, remoteChanges::add);
+		DataStore<StoredCredential> nodeA = store(node(), key);
+		DataStore<StoredCredential> nodeB = StoredCredential.getDefaultDataStore(factoryB);
+
+		nodeA.set("alice", credential("access-1"));
+		assertThat(nodeB.get("alice").getAccessToken()).isEqualTo("access-1");
+
+		nodeA.set("alice", credential("access-2"));
+		await().atMost(Duration.ofSeconds(5)).until(() -> "access-2".equals(nodeB.get("alice").getAccessToken()));
+		assertThat(remoteChanges).contains("alice");
+
+		nodeA.delete("alice");
+		await().atMost(Duration.ofSeconds(5)).until(() -> nodeB.get("alice") == null);
+	}
+
+	@Test
+	void valuesAreEncryptedInTheBackend() throws IOException {
+		LoopbackSharedStateBackend backend = node();
+		store(backend, key).set("alice", credential("secret-access-token"));
+
+		byte[] stored = backend.get(NAMESPACE, "alice");
+		assertThat(new String(stored, StandardCharsets.ISO_8859_1)).doesNotContain("secret-access-token");
+	}
+
+	@Test
+	void tamperedValueFailsAuthentication() throws IOException {
+		LoopbackSharedStateBackend backend = node();
+		store(backend, key).set("alice", credential("access-1"));
+		byte[] stored = backend.get(NAMESPACE, "alice");
+		stored[stored.length - 1] ^= 1;
+		backend.put(NAMESPACE, "alice", stored);
+
+		DataStore<StoredCredential> freshNode = store(node(), key);
+		assertThatThrownBy(() -> freshNode.get("alice")).isInstanceOf(IOException.class).hasMessageContaining("failed authentication");
+	}
+
+	@Test
+	void valueCopiedUnderAnotherKeyFailsAuthentication() throws IOException {
+		LoopbackSharedStateBackend backend = node();
+		store(backend, key).set("alice", credential("access-1"));
+		backend.put(NAMESPACE, "mallory", backend.get(NAMESPACE, "alice"));
+
+		DataStore<StoredCredential> freshNode = store(node(), key);
+		assertThatThrownBy(() -> freshNode.get("mallory")).isInstanceOf(IOException.class);
+	}
+
+	@Test
+	void nodeWithAnotherKeyCannotRead() throws IOException {
+		store(node(), key).set("alice", credential("access-1"));
+
+		DataStore<StoredCredential> otherKey = store(node(), key(2));
+		assertThatThrownBy(() -> otherKey.get("alice")).isInstanceOf(IOException.class);
+	}
+
+	@Test
+	void rejectsKeysThatAreNot256Bits() {
+		assertThatThrownBy(() -> factory(node(), new byte[16])).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private LoopbackSharedStateBackend node() {
+		LoopbackSharedStateBackend backend = new LoopbackSharedStateBackend(cluster);
+		nodes.add(backend);
+		return backend;
+	}
+
+	private static SharedDataStoreFactory factory(SharedStateBackend backend, byte[] key) {
+		return new SharedDataStoreFactory(backend, key, 100, Duration.ofMinutes(5));
+	}
+
+	private static DataStore<StoredCredential> store(SharedStateBackend backend, byte[] key) throws IOException {
+		return StoredCredential.getDefaultDataStore(factory(backend, key));
+	}
+
+	private static StoredCredential credential(String accessToken) {
+		return new StoredCredential()
+				.setAccessToken(accessToken)
+				.setRefreshToken("refresh")
+				.setExpirationTimeMilliseconds(1_000L);
+	}
+
+	private static byte[] key(int fill) {
+		byte[] key = new byte[32];
+		Arrays.fill(key, (byte) fill);
+		return key;
+	}
+}
@@ -0,0 +1,193 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.calendar.Calendar;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CalendarAccessCacheTests {
+
+	private static final String TEAM = "team@group.calendar.google.com";
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+	private final GoogleOAuthService googleOAuthService = mock(GoogleOAuthService.class);
+	// Google's answer to calendarList.get per user: an access role, or an HTTP status for errors
+	private final Map<String, String> roles = new ConcurrentHashMap<>();
+	private final AtomicInteger fetches = new AtomicInteger();
+	private final CountDownLatch released = new CountDownLatch(1);
+
+	private volatile boolean holdFetches;
+
+	@AfterEach
+	void tearDown() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	void usersWhoSeeTheCalendarAlikeShareAScope() throws Exception {
+		roles.putAll(Map.of("owner", "owner", "writer", "writer", "reader", "reader", "busy", "freeBusyReader"));
+		CalendarAccessCache cache = cache(true, Duration.ofMinutes(2), Duration.ofMinutes(10));
+
+		assertThat(cache.readScope("owner", TEAM)).isEqualTo("shared:writer");
+		assertThat(cache.readScope("writer", TEAM)).isEqualTo("shared:writer");
+		assertThat(cache.readScope("reader", TEAM)).isEqualTo("shared:reader");
+		// Free/busy readers see redacted events
+		assertThat(cache.readScope("busy", TEAM)).isEqualTo("user:busy");
+		assertThat(fetches).hasValue(4);
+
+		assertThat(cache.readScope("owner", TEAM)).isEqualTo("shared:writer");
+		assertThat(fetches).hasValue(4);
+	}
+
+	@Test
+	void personalCalendarsAreNeverShared() throws Exception {
+		roles.put("owner", "owner");
+		CalendarAccessCache cache = cache(true, Duration.ofMinutes(2), Duration.ofMinutes(10));
+		CalendarAccessCache disabled = cache(false, Duration.ofMinutes(2), Duration.ofMinutes(10));
+
+		assertThat(cache.readScope("owner", "primary")).isEqualTo("user:owner");
+		assertThat(disabled.readScope("owner", TEAM)).isEqualTo("user:owner");
+		assertThat(fetches).hasValue(0);
+	}
+
+	@Test
+	void calendarMissingFromTheListHasNoSharedAccess() throws Exception {
+		roles.put("stranger", "404");
+		CalendarAccessCache cache = cache(true, Duration.ofMinutes(2), Duration.ofMinutes(10));
+
+		assertThat(cache.accessRole("stranger", TEAM)).isEqualTo("none");
+		assertThat(cache.readScope("stranger", TEAM)).isEqualTo("user:stranger");
+		assertThat(fetches).hasValue(1);
+	}
+
+	@Test
+	void forbiddenIsRaisedAndNotCached() throws Exception {
+		roles.put("user", "403");
+		CalendarAccessCache cache = cache(true, Duration.ofMinutes(2), Duration.ofMinutes(10));
+
+		assertThatThrownBy(() -> cache.readScope("user", TEAM))
+				.isInstanceOfSatisfying(GoogleJsonResponseException.class, e -> assertThat(e.getStatusCode()).isEqualTo(403));
+		assertThat(cache.cachedReadScope("user", TEAM)).isEqualTo("user:user");
+
+		roles.put("user", "reader");
+		assertThat(cache.readScope("user", TEAM)).isEqualTo("shared:reader");
+		assertThat(fetches).hasValue(2);
+	}
+
+	@Test
+	void invalidatedRoleIsVerifiedAgain() throws Exception {
+		roles.put("user", "writer");
+		CalendarAccessCache cache = cache(true, Duration.ofMinutes(2), Duration.ofMinutes(10));
+		assertThat(cache.readScope("user", TEAM)).isEqualTo("shared:writer");
+
+		// As after Google answered 403 to a sync of the shared replica
+		roles.put("user", "reader");
+		cache.invalidate("user", TEAM);
+
+		assertThat(cache.cachedReadScope("user", TEAM)).isEqualTo("user:user");
+		assertThat(cache.readScope("user", TEAM)).isEqualTo("shared:reader");
+		assertThat(fetches).hasValue(2);
+	}
+
+	@Test
+	void oldRoleIsServedWhileItIsRefreshed() throws Exception {
+		roles.put("user", "writer");
+		CalendarAccessCache cache = cache(true, Duration.ofMillis(50), Duration.ofMinutes(10));
+		assertThat(cache.readScope("user", TEAM)).isEqualTo("shared:writer");
+
+		roles.put("user", "reader");
+		holdFetches = true;
+		Thread.sleep(100);
+
+		// Google has not answered the refresh yet
+		assertThat(cache.readScope("user", TEAM)).isEqualTo("shared:writer");
+		released.countDown();
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(cache.readScope("user", TEAM)).isEqualTo("shared:reader"));
+	}
+
+	@Test
+	void roleExpiresAfterTtl() throws Exception {
+		roles.put("user", "writer");
+		CalendarAccessCache cache = cache(true, Duration.ofMillis(100), Duration.ofMillis(200));
+		assertThat(cache.readScope("user", TEAM)).isEqualTo("shared:writer");
+		assertThat(cache.cachedReadScope("user", TEAM)).isEqualTo("shared:writer");
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(cache.cachedReadScope("user", TEAM)).isEqualTo("user:user"));
+	}
+
+	private CalendarAccessCache cache(boolean sharingEnabled, Duration refreshAfter, Duration expireAfter) throws IOException {
+		for (String userId : roles.keySet()) {
+			when(googleOAuthService.getCalendarService(userId)).thenReturn(calendar(userId));
+		}
+		GoogleIoExecutor googleIoExecutor = new GoogleIoExecutor(meterRegistry, ObservationRegistry.NOOP,
+				new GoogleRequestScheduler(meterRegistry, 10_000, 10_000, 10_000, 10_000, Duration.ofSeconds(10)),
+				4, 1, Duration.ofMillis(10), Duration.ofMillis(10));
+		return new CalendarAccessCache(googleOAuthService, googleIoExecutor, executorService, meterRegistry, sharingEnabled,
+				100, refreshAfter, expireAfter);
+	}
+
+	private Calendar calendar(String userId) {
+		MockHttpTransport transport = new MockHttpTransport() {
+			@Override
+			public LowLevelHttpRequest buildRequest(String method, String url) {
+				return new MockLowLevelHttpRequest(url) {
+					@Override
+					public LowLevelHttpResponse execute() throws IOException {
+						fetches.incrementAndGet();
+						if (holdFetches) {
+							awaitRelease();
+						}
+						String role = roles.get(userId);
+						if (role.chars().allMatch(Character::isDigit)) {
+							return new MockLowLevelHttpResponse().setStatusCode(Integer.parseInt(role)).setContentType(Json.MEDIA_TYPE)
+									.setContent("{\"error\":{\"code\":" + role + ",\"message\":\"refused\"}}");
+						}
+						return new MockLowLevelHttpResponse().setContentType(Json.MEDIA_TYPE)
+								.setContent("{\"accessRole\":\"" + role + "\"}");
+					}
+				};
+			}
+		};
+		return new Calendar.Builder(transport, GsonFactory.getDefaultInstance(), null)
+				.setApplicationName("test")
+				.build();
+	}
+
+	private void awaitRelease() throws InterruptedIOException {
+		try {
+			released.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+}
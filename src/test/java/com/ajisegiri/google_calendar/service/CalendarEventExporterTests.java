@@ -0,0 +1,145 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.Events;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CalendarEventExporterTests {
+
+	private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+	private final Scheduler scheduler = Schedulers.fromExecutorService(executorService, "export-test");
+	private final GoogleCalendarService googleCalendarService = mock(GoogleCalendarService.class);
+	private final CalendarEventExporter exporter = new CalendarEventExporter(googleCalendarService, scheduler, 2);
+	// Priority each page was fetched at, by page token ("first" for the first page)
+	private final Map<String, RequestPriority> priorities = new ConcurrentHashMap<>();
+
+	@AfterEach
+	void tearDown() {
+		scheduler.dispose();
+		executorService.shutdownNow();
+	}
+
+	@Test
+	void allPagesAreStreamedInOrder() throws Exception {
+		page(null, "p2", "a", "b");
+		page("p2", "p3", "c", "d");
+		page("p3", null, "e");
+
+		List<String> ids = exporter.export("user", 0, 1).map(Event::getId).collectList().block(Duration.ofSeconds(5));
+
+		assertThat(ids).containsExactly("a", "b", "c", "d", "e");
+		assertThat(priorities).containsEntry("first", RequestPriority.INTERACTIVE);
+	}
+
+	@Test
+	void pageFetchedWhileTheClientHasEventsToReadIsAPrefetch() throws Exception {
+		page(null, "p2", "a", "b");
+		page("p2", null, "c");
+		SlowReader reader = new SlowReader();
+
+		exporter.export("user", 0, 1).subscribe(reader);
+
+		// The client has read one event of the first page; the second page is fetched ahead of it
+		await().atMost(Duration.ofSeconds(5)).until(() -> priorities.containsKey("p2"));
+		assertThat(reader.received).containsExactly("a");
+		assertThat(priorities).containsEntry("p2", RequestPriority.PREFETCH);
+
+		reader.request(10);
+		await().atMost(Duration.ofSeconds(5)).until(() -> reader.done);
+		assertThat(reader.received).containsExactly("a", "b", "c");
+	}
+
+	@Test
+	void pageTheClientIsWaitingOnIsInteractive() throws Exception {
+		// Google may return empty pages when most of the range is filtered out
+		page(null, "p2");
+		page("p2", null, "a");
+
+		List<String> ids = exporter.export("user", 0, 1).map(Event::getId).collectList().block(Duration.ofSeconds(5));
+
+		assertThat(ids).containsExactly("a");
+		assertThat(priorities).containsEntry("p2", RequestPriority.INTERACTIVE);
+	}
+
+	@Test
+	void readAheadIsCancelledWhenTheClientDisconnects() throws Exception {
+		page(null, "p2", "a", "b");
+		CountDownLatch readAheadStarted = new CountDownLatch(1);
+		CountDownLatch readAheadInterrupted = new CountDownLatch(1);
+		when(googleCalendarService.listEventsPage(eq("user"), anyLong(), anyLong(), eq("p2"), anyInt())).thenAnswer(invocation -> {
+			readAheadStarted.countDown();
+			try {
+				Thread.sleep(Duration.ofSeconds(10));
+			} catch (InterruptedException e) {
+				readAheadInterrupted.countDown();
+				throw e;
+			}
+			return new Events();
+		});
+		SlowReader reader = new SlowReader();
+		exporter.export("user", 0, 1).subscribe(reader);
+		assertThat(readAheadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		reader.cancel();
+
+		assertThat(readAheadInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private void page(String pageToken, String nextPageToken, String... ids) throws Exception {
+		Events page = new Events().setNextPageToken(nextPageToken)
+				.setItems(Arrays.stream(ids).map(id -> new Event().setId(id)).toList());
+		when(googleCalendarService.listEventsPage(eq("user"), anyLong(), anyLong(), pageToken == null ? isNull() : eq(pageToken), anyInt()))
+				.thenAnswer(invocation -> {
+					priorities.put(pageToken != null ? pageToken : "first", RequestPriority.current());
+					return page;
+				});
+	}
+
+	// Reads one event, then waits to be told to read more
+	private static class SlowReader extends BaseSubscriber<Event> {
+
+		private final List<String> received = new CopyOnWriteArrayList<>();
+		private volatile boolean done;
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			request(1);
+		}
+
+		@Override
+		protected void hookOnNext(Event event) {
+			received.add(event.getId());
+		}
+
+		@Override
+		protected void hookFinally(SignalType type) {
+			done = true;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.BatchEventOperation;
+import com.ajisegiri.google_calendar.api.BatchEventResult;
+import com.ajisegiri.google_calendar.api.CalendarEventRequest;
+import com.google.api.services.calendar.model.Event;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CalendarMutationCoalescerTests {
+
+	private final GoogleCalendarService googleCalendarService = mock(GoogleCalendarService.class);
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	@AfterEach
+	void shutDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void mutationsOfOneToolCallSetShareABatch() throws Exception {
+		when(googleCalendarService.batchMutate(eq("user"), anyList())).thenAnswer(invocation -> echo(invocation.getArgument(1)));
+		CalendarMutationCoalescer coalescer = new CalendarMutationCoalescer(googleCalendarService, Duration.ofSeconds(5));
+		List<AssistantMessage.ToolCall> toolCalls = List.of(toolCall("createEvent"), toolCall("createEvent"),
+				toolCall("getCalendarEvent"), toolCall("createEvent"));
+
+		List<Future<BatchEventResult>> results = submit(coalescer, toolCalls, "a", "b", null, "c");
+
+		// Flushed once all three joined, long before the window ends
+		assertThat(results.get(0).get().getEventId()).isEqualTo("a");
+		assertThat(results.get(1).get().getEventId()).isEqualTo("b");
+		assertThat(results.get(3).get().getEventId()).isEqualTo("c");
+		verify(googleCalendarService).batchMutate(eq("user"), anyList());
+		verify(googleCalendarService, never()).createEvent(any(), any());
+	}
+
+	@Test
+	void lateBatchIsFlushedWithWhatJoinedWithinTheWindow() throws Exception {
+		when(googleCalendarService.batchMutate(eq("user"), anyList())).thenAnswer(invocation -> echo(invocation.getArgument(1)));
+		CalendarMutationCoalescer coalescer = new CalendarMutationCoalescer(googleCalendarService, Duration.ofMillis(100));
+		List<AssistantMessage.ToolCall> toolCalls = List.of(toolCall("createEvent"), toolCall("createEvent"), toolCall("deleteEvent"));
+
+		// The delete never reaches the coalescer, e.g. its arguments did not parse
+		List<Future<BatchEventResult>> results = submit(coalescer, toolCalls, "a", "b", null);
+
+		assertThat(results.get(0).get().getEventId()).isEqualTo("a");
+		assertThat(results.get(1).get().getEventId()).isEqualTo("b");
+		verify(googleCalendarService).batchMutate(eq("user"), anyList());
+	}
+
+	@Test
+	void loneMutationRunsAtOnce() throws Exception {
+		when(googleCalendarService.createEvent(eq("user"), any())).thenReturn(new Event().setId("created"));
+		CalendarMutationCoalescer coalescer = new CalendarMutationCoalescer(googleCalendarService, Duration.ofSeconds(5));
+		List<AssistantMessage.ToolCall> toolCalls = List.of(toolCall("createEvent"), toolCall("getCalendarEvent"));
+
+		List<Future<BatchEventResult>> results = submit(coalescer, toolCalls, "a", null);
+
+		assertThat(results.get(0).get(1, TimeUnit.SECONDS).getEventId()).isEqualTo("created");
+		verify(googleCalendarService, never()).batchMutate(any(), anyList());
+	}
+
+	@Test
+	void batchFailureReachesEveryCaller() throws Exception {
+		when(googleCalendarService.batchMutate(eq("user"), anyList())).thenThrow(new IOException("quota exhausted"));
+		CalendarMutationCoalescer coalescer = new CalendarMutationCoalescer(googleCalendarService, Duration.ofSeconds(5));
+		List<AssistantMessage.ToolCall> toolCalls = List.of(toolCall("createEvent"), toolCall("updateEvent"));
+
+		List<Future<BatchEventResult>> results = submit(coalescer, toolCalls, "a", "b");
+
+		for (Future<BatchEventResult> result : results) {
+			assertThatThrownBy(result::get).isInstanceOf(ExecutionException.class)
+					.rootCause().isInstanceOf(IOException.class).hasMessage("quota exhausted");
+		}
+	}
+
+	// Runs each tool call through the coalescer concurrently; a null summary is a call that submits nothing
+	private List<Future<BatchEventResult>> submit(CalendarMutationCoalescer coalescer, List<AssistantMessage.ToolCall> toolCalls,
+												  String... summaries) {
+		List<Future<BatchEventResult>> results = new ArrayList<>();
+		for (int i = 0; i < toolCalls.size(); i++) {
+			AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+			String summary = summaries[i];
+			results.add(executor.submit(() -> {
+				BatchEventResult[] result = new BatchEventResult[1];
+				coalescer.intercept(toolCalls, toolCall, () -> {
+					if (summary != null) {
+						try {
+							result[0] = coalescer.submit("user", operation(summary));
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+					return "done";
+				});
+				return result[0];
+			}));
+		}
+		return results;
+	}
+
+	private static List<BatchEventResult> echo(List<BatchEventOperation> operations) {
+		return IntStream.range(0, operations.size())
+				.mapToObj(i -> BatchEventResult.success(i, operations.get(i).getType(), operations.get(i).getEvent().getSummary(), null))
+				.toList();
+	}
+
+	private static BatchEventOperation operation(String summary) {
+		CalendarEventRequest event = new CalendarEventRequest();
+		event.setSummary(summary);
+		return new BatchEventOperation(BatchEventOperation.Type.CREATE, null, event);
+	}
+
+	private static AssistantMessage.ToolCall toolCall(String name) {
+		return new AssistantMessage.ToolCall(name + "-id", "function", name, "{}");
+	}
+}
@@ -0,0 +1,241 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CalendarReplicaServiceTests {
+
+	private static final String USER = "user";
+	private static final String CALENDAR = "primary";
+	private static final long DAY_START = millis("2026-10-17T00:00:00Z");
+	private static final long DAY_END = millis("2026-10-18T00:00:00Z");
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final List<GenericUrl> requests = new CopyOnWriteArrayList<>();
+	private final List<RequestPriority> priorities = new CopyOnWriteArrayList<>();
+	private final List<Object> publishedEvents = new CopyOnWriteArrayList<>();
+	private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+	private final CalendarAccessCache calendarAccessCache = mock(CalendarAccessCache.class);
+
+	private volatile Function<GenericUrl, MockLowLevelHttpResponse> google;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		when(calendarAccessCache.readScope(USER, CALENDAR)).thenReturn("user:" + USER);
+		when(calendarAccessCache.cachedReadScope(USER, CALENDAR)).thenReturn("user:" + USER);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	void firstReadRunsFullSyncAcrossPages() throws Exception {
+		google = url -> url.getFirst("pageToken") == null
+				? ok(page(List.of(event("a", "09:00", "10:00"), event("b", "11:00", "12:00")), "page2", null))
+				: ok(page(List.of(event("c", "08:00", "08:30")), null, "sync1"));
+		CalendarReplicaService service = service(Duration.ofMinutes(1));
+
+		EventsResponse response = service.getEvents(USER, CALENDAR, DAY_START, DAY_END, null, 10);
+
+		assertThat(response.getEvents()).extracting(Event::getId).containsExactly("c", "a", "b");
+		assertThat(requests).hasSize(2);
+		assertThat(requests.get(0).getFirst("syncToken")).isNull();
+		assertThat(requests.get(1).getFirst("pageToken")).isEqualTo("page2");
+		assertThat(publishedEvents).singleElement().isInstanceOf(CalendarReplicaService.ReplicaSeededEvent.class);
+
+		// Fresh replica: served without calling Google
+		service.getEvents(USER, CALENDAR, DAY_START, DAY_END, null, 10);
+		assertThat(requests).hasSize(2);
+	}
+
+	@Test
+	void staleReadIsServedWhileIncrementalSyncRunsInBackground() throws Exception {
+		google = url -> ok(page(List.of(event("a", "09:00", "10:00"), event("b", "11:00", "12:00")), null, "sync1"));
+		CalendarReplicaService service = service(Duration.ZERO);
+		service.getEvents(USER, CALENDAR, DAY_START, DAY_END, null, 10);
+
+		CountDownLatch release = new CountDownLatch(1);
+		google = url -> {
+			awaitQuietly(release);
+			return ok(page(List.of(event("a", "13:00", "14:00", "confirmed", "2026-10-02T00:00:00Z"),
+					event("b", "11:00", "12:00", CalendarReplica.CANCELLED, "2026-10-02T00:00:00Z")), null, "sync2"));
+		};
+		Thread.sleep(5);
+
+		// The incremental sync is blocked on Google, yet the read returns the replica as it is
+		EventsResponse stale = service.getEvents(USER, CALENDAR, DAY_START, DAY_END, null, 10);
+		assertThat(stale.getEvents()).extracting(Event::getId).containsExactly("a", "b");
+		// A second stale read does not start another sync
+		service.getEvents(USER, CALENDAR, DAY_START, DAY_END, null, 10);
+		release.countDown();
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(service.getSyncedReplica(USER, CALENDAR).getSyncToken()).isEqualTo("sync2"));
+		GenericUrl incremental = requests.get(1);
+		assertThat(incremental.getFirst("syncToken")).isEqualTo("sync1");
+		assertThat(priorities.get(1)).isEqualTo(RequestPriority.BACKGROUND);
+		assertThat(requests.stream().filter(url -> "sync1".equals(url.getFirst("syncToken")))).hasSize(1);
+
+		CalendarReplica replica = service.getSyncedReplica(USER, CALENDAR);
+		assertThat(replica.get("b")).isNull();
+		assertThat(CalendarReplica.startMillis(replica.get("a"))).isEqualTo(millis("2026-10-17T13:00:00Z"));
+	}
+
+	@Test
+	void expiredSyncTokenTriggersFullResync() throws Exception {
+		google = url -> ok(page(List.of(event("a", "09:00", "10:00"), event("b", "11:00", "12:00")), null, "sync1"));
+		CalendarReplicaService service = service(Duration.ofMinutes(1));
+		CalendarReplica replica = service.getSyncedReplica(USER, CALENDAR);
+
+		google = url -> url.getFirst("syncToken") != null
+				? error(410, "fullSyncRequired")
+				: ok(page(List.of(event("c", "15:00", "16:00")), null, "sync2"));
+		service.sync(USER, replica);
+
+		assertThat(requests.get(1).getFirst("syncToken")).isEqualTo("sync1");
+		assertThat(requests.get(2).getFirst("syncToken")).isNull();
+		assertThat(replica.getSyncToken()).isEqualTo("sync2");
+		assertThat(replica.findOverlapping(DAY_START, DAY_END)).extracting(Event::getId).containsExactly("c");
+	}
+
+	@Test
+	void lostAccessInvalidatesCachedRole() throws Exception {
+		google = url -> ok(page(List.of(event("a", "09:00", "10:00")), null, "sync1"));
+		CalendarReplicaService service = service(Duration.ofMinutes(1));
+		CalendarReplica replica = service.getSyncedReplica(USER, CALENDAR);
+
+		google = url -> error(403, "forbidden");
+		assertThatThrownBy(() -> service.sync(USER, replica)).isInstanceOf(GoogleJsonResponseException.class);
+		verify(calendarAccessCache).invalidate(USER, CALENDAR);
+
+		google = url -> error(404, "notFound");
+		assertThatThrownBy(() -> service.sync(USER, replica)).isInstanceOf(GoogleJsonResponseException.class);
+		verify(calendarAccessCache, times(2)).invalidate(USER, CALENDAR);
+	}
+
+	@Test
+	void pageTokenIsAnOffsetIntoTheWindow() throws Exception {
+		google = url -> ok(page(List.of(event("a", "09:00", "10:00"), event("b", "10:00", "11:00"),
+				event("c", "11:00", "12:00")), null, "sync1"));
+		CalendarReplicaService service = service(Duration.ofMinutes(1));
+
+		EventsResponse first = service.getEvents(USER, CALENDAR, DAY_START, DAY_END, null, 2);
+		assertThat(first.getEvents()).extracting(Event::getId).containsExactly("a", "b");
+		assertThat(first.getNextPageToken()).isEqualTo("2");
+
+		EventsResponse second = service.getEvents(USER, CALENDAR, DAY_START, DAY_END, first.getNextPageToken(), 2);
+		assertThat(second.getEvents()).extracting(Event::getId).containsExactly("c");
+		assertThat(second.getNextPageToken()).isNull();
+
+		assertThatThrownBy(() -> service.getEvents(USER, CALENDAR, DAY_START, DAY_END, "not-a-token", 2))
+				.isInstanceOf(PageTokens.InvalidPageTokenException.class);
+	}
+
+	@SuppressWarnings("unchecked")
+	private CalendarReplicaService service(Duration maxStaleness) throws Exception {
+		MockHttpTransport transport = new MockHttpTransport() {
+			@Override
+			public LowLevelHttpRequest buildRequest(String method, String url) {
+				return new MockLowLevelHttpRequest(url) {
+					@Override
+					public LowLevelHttpResponse execute() {
+						GenericUrl requestUrl = new GenericUrl(url);
+						requests.add(requestUrl);
+						priorities.add(RequestPriority.current());
+						return google.apply(requestUrl);
+					}
+				};
+			}
+		};
+		Calendar calendar = new Calendar.Builder(transport, GsonFactory.getDefaultInstance(), null)
+				.setApplicationName("test")
+				.build();
+		GoogleOAuthService googleOAuthService = mock(GoogleOAuthService.class);
+		when(googleOAuthService.getCalendarService(any())).thenReturn(calendar);
+		GoogleIoExecutor googleIoExecutor = new GoogleIoExecutor(meterRegistry, ObservationRegistry.NOOP,
+				new GoogleRequestScheduler(meterRegistry, 10_000, 10_000, 10_000, 10_000, Duration.ofSeconds(10)),
+				4, 1, Duration.ofMillis(10), Duration.ofMillis(10));
+		ObjectProvider<SemanticEventIndex> semanticEventIndex = mock(ObjectProvider.class);
+		return new CalendarReplicaService(googleOAuthService, new CalendarFieldMasks(CalendarFieldMasks.DEFAULT_EVENT_FIELDS),
+				googleIoExecutor, calendarAccessCache, executorService, meterRegistry, semanticEventIndex,
+				publishedEvents::add, 100, Duration.ofHours(1), maxStaleness, Duration.ofMinutes(15));
+	}
+
+	private static String page(List<String> items, String nextPageToken, String nextSyncToken) {
+		StringBuilder json = new StringBuilder("{\"items\":[").append(String.join(",", items)).append("]");
+		if (nextPageToken != null) {
+			json.append(",\"nextPageToken\":\"").append(nextPageToken).append("\"");
+		}
+		if (nextSyncToken != null) {
+			json.append(",\"nextSyncToken\":\"").append(nextSyncToken).append("\"");
+		}
+		return json.append("}").toString();
+	}
+
+	private static String event(String id, String start, String end) {
+		return event(id, start, end, "confirmed", "2026-10-01T00:00:00Z");
+	}
+
+	private static String event(String id, String start, String end, String status, String updated) {
+		return "{\"id\":\"" + id + "\",\"status\":\"" + status + "\",\"updated\":\"" + updated + "\"," +
+				"\"start\":{\"dateTime\":\"2026-10-17T" + start + ":00Z\"},\"end\":{\"dateTime\":\"2026-10-17T" + end + ":00Z\"}}";
+	}
+
+	private static MockLowLevelHttpResponse ok(String json) {
+		return new MockLowLevelHttpResponse().setContentType(Json.MEDIA_TYPE).setContent(json);
+	}
+
+	private static MockLowLevelHttpResponse error(int status, String reason) {
+		return new MockLowLevelHttpResponse().setStatusCode(status).setContentType(Json.MEDIA_TYPE)
+				.setContent("{\"error\":{\"code\":" + status + ",\"message\":\"" + reason + "\",\"errors\":[{\"reason\":\"" +
+						reason + "\"}]}}");
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static long millis(String instant) {
+		return java.time.Instant.parse(instant).toEpochMilli();
+	}
+}
@@ -0,0 +1,63 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.CompactEventsResponse;
+import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CalendarToolsTests {
+
+	private final GoogleCalendarService googleCalendarService = mock(GoogleCalendarService.class);
+	// Room for a few events per response
+	private final CalendarTools calendarTools = new CalendarTools(googleCalendarService, mock(CalendarMutationCoalescer.class),
+			new CompactEventProjector(new ObjectMapper(), 200, 200), mock(MultiCalendarService.class), mock(SlotFinderService.class));
+
+	@Test
+	void truncatedSearchCanBeContinued() throws Exception {
+		List<Event> page = IntStream.range(0, 20).mapToObj(CalendarToolsTests::event).toList();
+		when(googleCalendarService.searchEvents(eq("user"), eq("review"), any(LocalDateTime.class), any(LocalDateTime.class), eq("10"), anyInt()))
+				.thenReturn(new EventsResponse(page, "30", null));
+
+		CompactEventsResponse response = calendarTools.searchEvents("user", "review", "2026-10-01T00:00:00",
+				"2026-11-01T00:00:00", "10", 20);
+
+		assertThat(response.isTruncated()).isTrue();
+		assertThat(response.getEvents()).hasSizeLessThan(20);
+		assertThat(response.getNextPageToken()).isEqualTo(String.valueOf(10 + response.getEvents().size()));
+		assertThat(response.getNote()).contains("page=" + response.getNextPageToken());
+	}
+
+	@Test
+	void completeSearchPageKeepsItsNextPageToken() throws Exception {
+		when(googleCalendarService.searchEvents(eq("user"), eq("review"), any(), any(), any(), anyInt()))
+				.thenReturn(new EventsResponse(List.of(event(0)), "1", null));
+
+		CompactEventsResponse response = calendarTools.searchEvents("user", "review", null, null, null, 1);
+
+		assertThat(response.isTruncated()).isFalse();
+		assertThat(response.getNextPageToken()).isEqualTo("1");
+	}
+
+	private static Event event(int index) {
+		long start = Instant.parse("2026-10-17T09:00:00Z").toEpochMilli() + index * 3_600_000L;
+		return new Event().setId("event" + index).setSummary("Quarterly review " + index)
+				.setDescription("Agenda: numbers, hiring, roadmap and open questions for the quarter")
+				.setStart(new EventDateTime().setDateTime(new DateTime(start)))
+				.setEnd(new EventDateTime().setDateTime(new DateTime(start + 1_800_000L)));
+	}
+}
@@ -0,0 +1,227 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.LoopbackSharedStateBackend;
+import com.ajisegiri.google_calendar.SharedStateBackend;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CalendarWatchServiceTests {
+
+	private static final String USER = "user";
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+	private final CalendarReplicaService calendarReplicaService = mock(CalendarReplicaService.class);
+	private final CalendarReplica replica = new CalendarReplica("user:" + USER, "primary", CalendarReplica.ChangeListener.NONE);
+	private final List<Channel> opened = new CopyOnWriteArrayList<>();
+	private final List<Channel> stopped = new CopyOnWriteArrayList<>();
+	private final String clusterName = "watch-" + UUID.randomUUID();
+
+	private volatile Duration channelLifetime = Duration.ofHours(6);
+
+	@BeforeEach
+	void setUp() throws Exception {
+		when(calendarReplicaService.isLoaded(replica)).thenReturn(true);
+		when(calendarReplicaService.refresh(USER, replica)).thenReturn(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	void seededReplicaIsWatchedAndNotificationsRefreshIt() throws Exception {
+		CalendarWatchService service = service(null);
+		Channel channel = watch(service);
+
+		assertThat(channel.getAddress()).isEqualTo("https://calendar.example.com/notifications");
+		assertThat(replica.isWatched(System.currentTimeMillis())).isTrue();
+
+		// The first message only confirms the channel
+		assertThat(service.onNotification(channel.getId(), channel.getToken(), "sync")).isTrue();
+		verify(calendarReplicaService, after(100).never()).refresh(any(), any());
+
+		assertThat(service.onNotification(channel.getId(), channel.getToken(), "exists")).isTrue();
+		verify(calendarReplicaService, timeout(5000)).refresh(USER, replica);
+	}
+
+	@Test
+	void badTokenOrUnknownChannelIsRejected() throws Exception {
+		CalendarWatchService service = service(null);
+		Channel channel = watch(service);
+
+		assertThat(service.onNotification(channel.getId(), "forged", "exists")).isFalse();
+		assertThat(service.onNotification(channel.getId(), null, "exists")).isFalse();
+		assertThat(service.onNotification("unknown", channel.getToken(), "exists")).isFalse();
+
+		verify(calendarReplicaService, after(100).never()).refresh(any(), any());
+		assertThat(meterRegistry.counter("calendar.watch.notifications", "result", "rejected").count()).isEqualTo(3);
+	}
+
+	@Test
+	void notificationReachingAnotherNodeIsForwardedToTheOwner() throws Exception {
+		try (LoopbackSharedStateBackend owner = new LoopbackSharedStateBackend(clusterName);
+			 LoopbackSharedStateBackend other = new LoopbackSharedStateBackend(clusterName)) {
+			CalendarWatchService owningNode = service(owner);
+			CalendarReplicaService otherReplicas = mock(CalendarReplicaService.class);
+			CalendarWatchService otherNode = new CalendarWatchService(googleOAuthService(), googleIoExecutor(), otherReplicas,
+					executorService, meterRegistry, provider(other), "https://calendar.example.com/notifications",
+					Duration.ofHours(6), Duration.ofMinutes(30));
+			Channel channel = watch(owningNode);
+
+			assertThat(otherNode.onNotification(channel.getId(), "forged", "exists")).isFalse();
+			verify(calendarReplicaService, after(100).never()).refresh(any(), any());
+
+			assertThat(otherNode.onNotification(channel.getId(), channel.getToken(), "exists")).isTrue();
+			verify(calendarReplicaService, timeout(5000)).refresh(USER, replica);
+			verify(otherReplicas, never()).refresh(any(), any());
+			assertThat(meterRegistry.counter("calendar.watch.notifications", "result", "forwarded").count()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void channelIsRenewedBeforeItExpires() throws Exception {
+		channelLifetime = Duration.ofMinutes(10);
+		CalendarWatchService service = service(null);
+		Channel first = watch(service);
+
+		channelLifetime = Duration.ofHours(6);
+		service.renewExpiringChannels();
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+			assertThat(opened).hasSize(2);
+			assertThat(stopped).extracting(Channel::getId).containsExactly(first.getId());
+		});
+		Channel renewed = opened.get(1);
+		assertThat(service.onNotification(first.getId(), first.getToken(), "exists")).isFalse();
+		assertThat(service.onNotification(renewed.getId(), renewed.getToken(), "exists")).isTrue();
+		verify(calendarReplicaService, timeout(5000)).refresh(USER, replica);
+
+		// Not due again yet
+		service.renewExpiringChannels();
+		Thread.sleep(100);
+		assertThat(opened).hasSize(2);
+	}
+
+	@Test
+	void channelOfEvictedReplicaIsClosedInsteadOfRenewed() throws Exception {
+		channelLifetime = Duration.ofMinutes(10);
+		CalendarWatchService service = service(null);
+		Channel channel = watch(service);
+		when(calendarReplicaService.isLoaded(replica)).thenReturn(false);
+
+		service.renewExpiringChannels();
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(stopped).extracting(Channel::getId).containsExactly(channel.getId()));
+		assertThat(opened).hasSize(1);
+		assertThat(service.onNotification(channel.getId(), channel.getToken(), "exists")).isFalse();
+	}
+
+	@Test
+	void expiredChannelsAreCleanedUp() throws Exception {
+		try (LoopbackSharedStateBackend backend = new LoopbackSharedStateBackend(clusterName)) {
+			channelLifetime = Duration.ofMillis(-1);
+			CalendarWatchService service = service(backend);
+			Channel channel = watch(service);
+			// Left behind by a node that stopped without closing its channel
+			backend.put("watch.channels", "abandoned", "1|hash".getBytes());
+			assertThat(backend.keys("watch.channels")).contains(channel.getId());
+
+			service.renewExpiringChannels();
+
+			assertThat(backend.keys("watch.channels")).isEmpty();
+			assertThat(service.onNotification(channel.getId(), channel.getToken(), "exists")).isFalse();
+			assertThat(opened).hasSize(1);
+		}
+	}
+
+	private Channel watch(CalendarWatchService service) {
+		service.onReplicaSeeded(new CalendarReplicaService.ReplicaSeededEvent(USER, replica));
+		// Opened in the background; registered once Google has answered
+		await().atMost(Duration.ofSeconds(5)).until(() -> meterRegistry.get("calendar.watch.channels").gauge().value() == 1);
+		return opened.getFirst();
+	}
+
+	private CalendarWatchService service(SharedStateBackend backend) throws IOException {
+		return new CalendarWatchService(googleOAuthService(), googleIoExecutor(), calendarReplicaService, executorService,
+				meterRegistry, provider(backend), "https://calendar.example.com/notifications", Duration.ofHours(6),
+				Duration.ofMinutes(30));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ObjectProvider<SharedStateBackend> provider(SharedStateBackend backend) {
+		ObjectProvider<SharedStateBackend> provider = mock(ObjectProvider.class);
+		when(provider.getIfAvailable()).thenReturn(backend);
+		return provider;
+	}
+
+	private GoogleIoExecutor googleIoExecutor() {
+		return new GoogleIoExecutor(meterRegistry, ObservationRegistry.NOOP,
+				new GoogleRequestScheduler(meterRegistry, 10_000, 10_000, 10_000, 10_000, Duration.ofSeconds(10)),
+				4, 1, Duration.ofMillis(10), Duration.ofMillis(10));
+	}
+
+	// Google's side: events.watch echoes the channel with an expiry, channels.stop records it
+	private GoogleOAuthService googleOAuthService() throws IOException {
+		MockHttpTransport transport = new MockHttpTransport() {
+			@Override
+			public LowLevelHttpRequest buildRequest(String method, String url) {
+				return new MockLowLevelHttpRequest(url) {
+					@Override
+					public LowLevelHttpResponse execute() throws IOException {
+						Channel channel = GsonFactory.getDefaultInstance().fromString(getContentAsString(), Channel.class);
+						if (url.contains("/channels/stop")) {
+							stopped.add(channel);
+							return new MockLowLevelHttpResponse().setStatusCode(204);
+						}
+						opened.add(channel);
+						Channel created = new Channel().setId(channel.getId()).setResourceId("resource-" + channel.getId())
+								.setExpiration(System.currentTimeMillis() + channelLifetime.toMillis());
+						created.setFactory(GsonFactory.getDefaultInstance());
+						return new MockLowLevelHttpResponse().setContentType(Json.MEDIA_TYPE).setContent(created.toString());
+					}
+				};
+			}
+		};
+		Calendar calendar = new Calendar.Builder(transport, GsonFactory.getDefaultInstance(), null)
+				.setApplicationName("test")
+				.build();
+		GoogleOAuthService googleOAuthService = mock(GoogleOAuthService.class);
+		when(googleOAuthService.getCalendarService(eq(USER))).thenReturn(calendar);
+		return googleOAuthService;
+	}
+}
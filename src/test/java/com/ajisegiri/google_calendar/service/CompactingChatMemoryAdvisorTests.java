@@ -0,0 +1,89 @@
+package com.ajisegiri.google_calendar.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactingChatMemoryAdvisorTests {
+
+	private final ChatMemory chatMemory = new InMemoryChatMemory();
+	private final List<Prompt> summaryPrompts = new ArrayList<>();
+	private final ChatModel chatModel = prompt -> {
+		summaryPrompts.add(prompt);
+		return new ChatResponse(List.of(new Generation(new AssistantMessage("summary " + summaryPrompts.size()))));
+	};
+
+	@Test
+	void shortHistoryIsKeptVerbatimInOrder() {
+		CompactingChatMemoryAdvisor advisor = advisor(2000, 8);
+
+		String memory = advisor.memory("chat", List.of(new UserMessage("book lunch"), new AssistantMessage("booked for 12:00"),
+				new UserMessage("move it to 13:00")));
+
+		assertThat(memory).isEqualTo("USER:book lunch\nASSISTANT:booked for 12:00\nUSER:move it to 13:00");
+		assertThat(summaryPrompts).isEmpty();
+	}
+
+	@Test
+	void olderMessagesAreClippedToStayWithinTheBudget() {
+		CompactingChatMemoryAdvisor advisor = advisor(300, 2);
+		List<Message> history = history(20);
+
+		String memory = advisor.memory("chat", history);
+
+		assertThat(new JTokkitTokenCountEstimator().estimate(memory)).isLessThanOrEqualTo(300);
+		List<String> lines = memory.lines().toList();
+		// The two most recent messages verbatim, in order, after clipped older ones
+		assertThat(lines.get(lines.size() - 2)).isEqualTo("USER:" + history.get(18).getText());
+		assertThat(lines.get(lines.size() - 1)).isEqualTo("ASSISTANT:" + history.get(19).getText());
+		assertThat(lines.subList(0, lines.size() - 2)).isNotEmpty().allMatch(line -> line.endsWith("... [clipped]"));
+		assertThat(memory).doesNotContain("message 0 ");
+	}
+
+	@Test
+	void droppedMessagesAreFoldedIntoAStoredSummary() {
+		List<Message> history = history(20);
+
+		advisor(300, 2).memory("chat", history);
+
+		assertThat(summaryPrompts).hasSize(1);
+		assertThat(summaryPrompts.get(0).getContents()).contains("message 0 ").doesNotContain("message 19 ");
+		assertThat(chatMemory.get("chat" + CompactingChatMemoryAdvisor.SUMMARY_SUFFIX, 10)).hasSize(2);
+
+		// Another advisor over the same memory, as after a restart or on another node
+		String memory = advisor(300, 2).memory("chat", history);
+
+		assertThat(memory).startsWith("Summary of earlier conversation: summary 1\n");
+		assertThat(memory).endsWith("ASSISTANT:" + history.get(19).getText());
+		assertThat(summaryPrompts.get(summaryPrompts.size() - 1).getContents()).doesNotContain("message 0 ");
+	}
+
+	// Summaries run inline so tests can look at them straight away
+	private CompactingChatMemoryAdvisor advisor(int tokenBudget, int recentMessages) {
+		return new CompactingChatMemoryAdvisor(chatMemory, chatModel, new SimpleMeterRegistry(), Runnable::run,
+				tokenBudget, recentMessages, 40);
+	}
+
+	private static List<Message> history(int size) {
+		List<Message> history = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			String text = "message " + i + " " + "about the quarterly planning meeting ".repeat(5);
+			history.add(i % 2 == 0 ? new UserMessage(text) : new AssistantMessage(text));
+		}
+		return history;
+	}
+}
@@ -0,0 +1,154 @@
+package com.ajisegiri.google_calendar.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.resolution.StaticToolCallbackResolver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrentToolCallingManagerTests {
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final Map<String, String> outcomes = new ConcurrentHashMap<>();
+	private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+	{
+		observationRegistry.observationConfig().observationHandler(new ObservationHandler<>() {
+			@Override
+			public void onStop(Observation.Context context) {
+				outcomes.put(context.getLowCardinalityKeyValue("tool").getValue(), context.getLowCardinalityKeyValue("outcome").getValue());
+			}
+
+			@Override
+			public boolean supportsContext(Observation.Context context) {
+				return true;
+			}
+		});
+	}
+
+	@AfterEach
+	void shutDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void callsRunConcurrentlyAndAnswerInRequestOrder() {
+		// Each call waits for all three to have started, which only happens if they run at the same time
+		CountDownLatch started = new CountDownLatch(3);
+		Function<String, String> rendezvous = name -> {
+			started.countDown();
+			try {
+				return started.await(5, TimeUnit.SECONDS) ? name + " done" : name + " ran alone";
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return name + " interrupted";
+			}
+		};
+		ConcurrentToolCallingManager manager = manager(Duration.ofSeconds(10),
+				tool("first", rendezvous), tool("second", rendezvous), tool("third", rendezvous));
+
+		List<ToolResponseMessage.ToolResponse> responses = execute(manager, "third", "first", "second");
+
+		assertThat(responses).extracting(ToolResponseMessage.ToolResponse::id).containsExactly("call-0", "call-1", "call-2");
+		assertThat(responses).extracting(ToolResponseMessage.ToolResponse::responseData)
+				.containsExactly("third done", "first done", "second done");
+	}
+
+	@Test
+	void callStillRunningAtTheDeadlineIsAnsweredWithAnError() {
+		ConcurrentToolCallingManager manager = manager(Duration.ofMillis(200),
+				tool("fast", name -> "fast done"),
+				tool("slow", name -> {
+					try {
+						Thread.sleep(5_000);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return "slow done";
+				}));
+
+		long start = System.nanoTime();
+		List<ToolResponseMessage.ToolResponse> responses = execute(manager, "slow", "fast");
+
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+		assertThat(responses.get(0).responseData()).isEqualTo("Error details: slow timed out after 200 ms");
+		assertThat(responses.get(1).responseData()).isEqualTo("fast done");
+	}
+
+	@Test
+	void outcomeComesFromTheToolNotFromTheResultText() {
+		ConcurrentToolCallingManager manager = manager(Duration.ofSeconds(10),
+				tool("reportsFailure", name -> {
+					ToolOutcome.failed("calendar not found");
+					return "{\"errorMessage\":\"calendar not found\"}";
+				}),
+				tool("mentionsErrors", name -> "Error details: are what the user asked about"),
+				tool("throwsException", name -> {
+					throw new IllegalStateException("boom");
+				}));
+
+		List<ToolResponseMessage.ToolResponse> responses = execute(manager, "reportsFailure", "mentionsErrors", "throwsException");
+
+		assertThat(outcomes).containsEntry("reportsFailure", "error")
+				.containsEntry("mentionsErrors", "success")
+				.containsEntry("throwsException", "exception");
+		assertThat(responses.get(2).responseData()).isEqualTo("Error details: boom");
+	}
+
+	private ConcurrentToolCallingManager manager(Duration timeout, ToolCallback... tools) {
+		StaticToolCallbackResolver resolver = new StaticToolCallbackResolver(List.of(tools));
+		return new ConcurrentToolCallingManager(DefaultToolCallingManager.builder().toolCallbackResolver(resolver).build(),
+				resolver, executor, observationRegistry, ToolCallInterceptor.NONE, timeout);
+	}
+
+	private static List<ToolResponseMessage.ToolResponse> execute(ConcurrentToolCallingManager manager, String... toolNames) {
+		List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+		for (int i = 0; i < toolNames.length; i++) {
+			toolCalls.add(new AssistantMessage.ToolCall("call-" + i, "function", toolNames[i], "{}"));
+		}
+		ChatResponse chatResponse = new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), toolCalls))));
+
+		ToolExecutionResult result = manager.executeToolCalls(new Prompt(new UserMessage("hi")), chatResponse);
+
+		List<?> history = result.conversationHistory();
+		return ((ToolResponseMessage) history.get(history.size() - 1)).getResponses();
+	}
+
+	private static ToolCallback tool(String name, Function<String, String> body) {
+		return new ToolCallback() {
+			@Override
+			public ToolDefinition getToolDefinition() {
+				return ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+			}
+
+			@Override
+			public String call(String arguments) {
+				return body.apply(name);
+			}
+		};
+	}
+}
@@ -0,0 +1,41 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.CalendarEventRequest;
+import com.google.api.client.util.Data;
+import com.google.api.services.calendar.model.Event;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventRequestMapperTests {
+
+	@Test
+	void patchWithoutOnlineMeetingKeepsTheMeetLink() {
+		CalendarEventRequest request = new CalendarEventRequest();
+		request.setSummary("Renamed");
+
+		Event patch = EventRequestMapper.buildPatch(request, true);
+
+		assertThat(patch.getSummary()).isEqualTo("Renamed");
+		assertThat(patch.containsKey("conferenceData")).isFalse();
+	}
+
+	@Test
+	void explicitFalseRemovesTheMeetLink() {
+		CalendarEventRequest request = new CalendarEventRequest();
+		request.setOnlineMeeting(false);
+
+		Event patch = EventRequestMapper.buildPatch(request, true);
+
+		assertThat(Data.isNull(patch.getConferenceData())).isTrue();
+	}
+
+	@Test
+	void explicitTrueAddsAMeetLinkOnlyWhenMissing() {
+		CalendarEventRequest request = new CalendarEventRequest();
+		request.setOnlineMeeting(true);
+
+		assertThat(EventRequestMapper.buildPatch(request, false).getConferenceData().getCreateRequest()).isNotNull();
+		assertThat(EventRequestMapper.buildPatch(request, true).containsKey("conferenceData")).isFalse();
+	}
+}
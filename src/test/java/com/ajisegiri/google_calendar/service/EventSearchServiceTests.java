@@ -0,0 +1,84 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.api.EventsResponse;
+import com.google.api.services.calendar.model.Event;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static com.ajisegiri.google_calendar.service.SemanticEventIndexTests.event;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventSearchServiceTests {
+
+	private static final long HOUR = Duration.ofHours(1).toMillis();
+	private static final long DAY_START = Instant.parse("2026-10-17T00:00:00Z").toEpochMilli();
+	private static final long DAY_END = DAY_START + 24 * HOUR;
+
+	private final CalendarReplicaService calendarReplicaService = mock(CalendarReplicaService.class);
+	private final SemanticEventIndex semanticEventIndex = mock(SemanticEventIndex.class);
+	private final CalendarReplica replica = new CalendarReplica("scope", "primary", CalendarReplica.ChangeListener.NONE);
+
+	@BeforeEach
+	void setUp() throws Exception {
+		when(calendarReplicaService.getSyncedReplica("user", "primary")).thenReturn(replica);
+		replica.apply(event("review", "Budget review", DAY_START + 9 * HOUR));
+		replica.apply(event("budget", "Budget planning", DAY_START + 10 * HOUR));
+		replica.apply(event("finance", "Finance sync", DAY_START + 11 * HOUR));
+		replica.apply(event("lastWeek", "Budget review", DAY_START - 7 * 24 * HOUR));
+	}
+
+	@Test
+	void keywordHitsOutsideTheWindowAreDropped() throws Exception {
+		EventsResponse response = service(null).search("user", "primary", "budget", DAY_START, DAY_END, null, 10);
+
+		assertThat(response.getEvents()).extracting(Event::getId).containsExactlyInAnyOrder("review", "budget");
+		assertThat(response.getNextPageToken()).isNull();
+	}
+
+	@Test
+	void semanticHitsAreFusedWithKeywordHits() throws Exception {
+		// Only "budget" is found by both indexes
+		when(semanticEventIndex.search(eq("scope"), eq("primary"), anyString(), eq(DAY_START), eq(DAY_END), anyInt()))
+				.thenReturn(List.of("budget", "finance"));
+		EventSearchService service = service(semanticEventIndex);
+
+		List<String> ids = service.search("user", "primary", "budget", DAY_START, DAY_END, null, 10)
+				.getEvents().stream().map(Event::getId).toList();
+
+		assertThat(ids).containsExactlyInAnyOrder("review", "budget", "finance");
+		assertThat(ids.getFirst()).isEqualTo("budget");
+	}
+
+	@Test
+	void pageTokenIsAnOffsetIntoTheRanking() throws Exception {
+		when(semanticEventIndex.search(eq("scope"), eq("primary"), anyString(), eq(DAY_START), eq(DAY_END), anyInt()))
+				.thenReturn(List.of("budget", "finance"));
+		EventSearchService service = service(semanticEventIndex);
+
+		EventsResponse first = service.search("user", "primary", "budget", DAY_START, DAY_END, null, 2);
+		EventsResponse second = service.search("user", "primary", "budget", DAY_START, DAY_END, first.getNextPageToken(), 2);
+
+		assertThat(first.getEvents()).hasSize(2);
+		assertThat(first.getNextPageToken()).isEqualTo("2");
+		assertThat(second.getEvents()).hasSize(1);
+		assertThat(second.getNextPageToken()).isNull();
+		assertThat(first.getEvents().stream().map(Event::getId)).doesNotContain(second.getEvents().getFirst().getId());
+	}
+
+	@SuppressWarnings("unchecked")
+	private EventSearchService service(SemanticEventIndex index) {
+		ObjectProvider<SemanticEventIndex> provider = mock(ObjectProvider.class);
+		when(provider.getIfAvailable()).thenReturn(index);
+		return new EventSearchService(calendarReplicaService, provider, 50);
+	}
+}
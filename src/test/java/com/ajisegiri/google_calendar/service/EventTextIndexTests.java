@@ -0,0 +1,56 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventAttendee;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventTextIndexTests {
+
+	private final EventTextIndex index = new EventTextIndex();
+
+	EventTextIndexTests() {
+		index.put(new Event().setId("1").setSummary("Quarterly planning").setLocation("Room 4"));
+		index.put(new Event().setId("2").setSummary("Design review").setDescription("Review the planning doc")
+				.setAttendees(List.of(new EventAttendee().setEmail("zoe.smith@example.com").setDisplayName("Zoë Smith"))));
+		index.put(new Event().setId("3").setSummary("Café with Mary"));
+	}
+
+	@Test
+	void summaryMatchesOutrankDescriptionMatches() {
+		assertThat(ids("planning")).containsExactly("1", "2");
+	}
+
+	@Test
+	void prefixesTyposAndAccentsMatch() {
+		assertThat(ids("plan")).containsExactly("1", "2");
+		assertThat(ids("plannign")).containsExactly("1", "2");
+		assertThat(ids("cafe")).containsExactly("3");
+		assertThat(ids("ZOE")).containsExactly("2");
+	}
+
+	@Test
+	void everyWordMustMatch() {
+		assertThat(ids("zoe review")).containsExactly("2");
+		assertThat(ids("zoe quarterly")).isEmpty();
+		assertThat(ids("the")).isEmpty();
+	}
+
+	@Test
+	void updatesReplaceAndRemovePostings() {
+		index.put(new Event().setId("2").setSummary("Design sync"));
+		assertThat(ids("review")).isEmpty();
+		assertThat(ids("sync")).containsExactly("2");
+
+		index.remove("1");
+		assertThat(ids("quarterly")).isEmpty();
+		assertThat(index.size()).isEqualTo(2);
+	}
+
+	private List<String> ids(String query) {
+		return index.search(query).stream().map(EventTextIndex.Hit::eventId).toList();
+	}
+}
@@ -0,0 +1,90 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.ajisegiri.google_calendar.service.FreeSlotCalculator.Interval;
+import com.ajisegiri.google_calendar.service.FreeSlotCalculator.Participant;
+import com.ajisegiri.google_calendar.service.FreeSlotCalculator.Slot;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FreeSlotCalculatorTests {
+
+	private static final ZoneId LONDON = ZoneId.of("Europe/London");
+	private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+	private final FreeSlotCalculator calculator = new FreeSlotCalculator(LocalTime.of(9, 0), LocalTime.of(17, 0),
+			EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY), Duration.ofMinutes(30));
+
+	@Test
+	void slotsFallInEveryonesWorkingHoursAndAwayFromMeetings() {
+		long monday = millis("2026-10-19T00:00:00Z");
+		// London 09-17 is 08-16 UTC and New York 09-17 is 13-21 UTC; the organiser is busy 13-14 UTC
+		Participant organiser = new Participant(List.of(new Interval(millis("2026-10-19T13:00:00Z"), millis("2026-10-19T14:00:00Z"))), LONDON);
+		Participant attendee = new Participant(List.of(), NEW_YORK);
+
+		List<Slot> slots = calculator.find(List.of(organiser, attendee), monday, monday + Duration.ofDays(1).toMillis(),
+				Duration.ofMinutes(30), 3);
+
+		assertThat(slots).extracting(slot -> Instant.ofEpochMilli(slot.start()).toString())
+				.containsExactly("2026-10-19T15:00:00Z", "2026-10-19T15:30:00Z", "2026-10-19T14:30:00Z");
+	}
+
+	@Test
+	void weekendsAreSkippedAndSlotsDoNotOverlap() {
+		long saturday = millis("2026-10-17T00:00:00Z");
+		List<Slot> slots = calculator.find(List.of(new Participant(List.of(), LONDON)), saturday,
+				saturday + Duration.ofDays(3).toMillis(), Duration.ofMinutes(45), 20);
+
+		assertThat(slots).hasSize(8).allSatisfy(slot -> {
+			assertThat(Instant.ofEpochMilli(slot.start()).atZone(LONDON).getDayOfWeek()).isEqualTo(DayOfWeek.MONDAY);
+			assertThat(slot.end() - slot.start()).isEqualTo(Duration.ofMinutes(45).toMillis());
+		});
+		for (int i = 0; i < slots.size(); i++) {
+			for (int j = i + 1; j < slots.size(); j++) {
+				assertThat(slots.get(i).start() < slots.get(j).end() && slots.get(j).start() < slots.get(i).end()).isFalse();
+			}
+		}
+	}
+
+	@Test
+	void intervalArithmeticMatchesPointwiseCheck() {
+		Random random = new Random(3);
+		for (int round = 0; round < 200; round++) {
+			List<Interval> a = FreeSlotCalculator.merge(randomIntervals(random));
+			List<Interval> b = FreeSlotCalculator.merge(randomIntervals(random));
+			List<Interval> difference = FreeSlotCalculator.subtract(a, b);
+			List<Interval> intersection = FreeSlotCalculator.intersect(a, b);
+			for (long point = 0; point < 200; point++) {
+				assertThat(covers(difference, point)).isEqualTo(covers(a, point) && !covers(b, point));
+				assertThat(covers(intersection, point)).isEqualTo(covers(a, point) && covers(b, point));
+			}
+		}
+	}
+
+	private static List<Interval> randomIntervals(Random random) {
+		List<Interval> intervals = new ArrayList<>();
+		for (int i = random.nextInt(8); i > 0; i--) {
+			long start = random.nextInt(190);
+			intervals.add(new Interval(start, start + 1 + random.nextInt(30)));
+		}
+		return intervals;
+	}
+
+	private static boolean covers(List<Interval> intervals, long point) {
+		return intervals.stream().anyMatch(interval -> interval.start() <= point && point < interval.end());
+	}
+
+	private static long millis(String instant) {
+		return Instant.parse(instant).toEpochMilli();
+	}
+}
@@ -0,0 +1,80 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GoogleIoExecutorTests {
+
+	private static final int MAX_CONCURRENCY = 4;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final GoogleIoExecutor executor = new GoogleIoExecutor(meterRegistry, ObservationRegistry.NOOP,
+			new GoogleRequestScheduler(meterRegistry, 10_000, 10_000, 10_000, 10_000, Duration.ofSeconds(10)),
+			MAX_CONCURRENCY, 3, Duration.ofMillis(50), Duration.ofMillis(100));
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	@Test
+	void moreCallersThanPermitsAllComplete() throws Exception {
+		int callers = MAX_CONCURRENCY * 8;
+		List<Future<String>> results = new ArrayList<>();
+		try (ExecutorService callerThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < callers; i++) {
+				String userId = "user" + i;
+				results.add(callerThreads.submit(() -> executor.execute(userId, "events.list", () -> slowCall(userId))));
+			}
+			for (int i = 0; i < callers; i++) {
+				assertThat(results.get(i).get(10, TimeUnit.SECONDS)).isEqualTo("user" + i);
+			}
+		}
+		assertThat(maxInFlight.get()).isLessThanOrEqualTo(MAX_CONCURRENCY);
+	}
+
+	@Test
+	void throttledAttemptsAreCountedByOperation() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+
+		String result = executor.execute("user", "events.list", () -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new HttpResponseException.Builder(429, "Too Many Requests", new HttpHeaders()).build();
+			}
+			return "ok";
+		});
+
+		assertThat(result).isEqualTo("ok");
+		assertThat(meterRegistry.counter("google.api.rate.limited", "operation", "events.list", "reason", "tooManyRequests").count())
+				.isEqualTo(1);
+		assertThat(meterRegistry.counter("google.api.retries", "operation", "events.list", "reason", "tooManyRequests").count())
+				.isEqualTo(1);
+	}
+
+	private String slowCall(String userId) throws InterruptedIOException {
+		int now = inFlight.incrementAndGet();
+		maxInFlight.accumulateAndGet(now, Math::max);
+		try {
+			Thread.sleep(20);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} finally {
+			inFlight.decrementAndGet();
+		}
+		return userId;
+	}
+}
@@ -0,0 +1,54 @@
+package com.ajisegiri.google_calendar.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class GoogleRequestSchedulerTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	// Ten calls per user that never refill, and a project-wide bucket that never runs dry
+	private final GoogleRequestScheduler scheduler = new GoogleRequestScheduler(meterRegistry, 10_000, 10_000, 0.001, 10,
+			Duration.ofSeconds(10));
+
+	@Test
+	void waitingInteractiveCallHoldsBackOnlyItsOwnUser() throws Exception {
+		scheduler.acquire("bob", RequestPriority.INTERACTIVE, 5);
+		try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+			// Needs more than the five calls bob has left, so it waits
+			Future<?> interactive = callers.submit(() -> {
+				scheduler.acquire("bob", RequestPriority.INTERACTIVE, 10);
+				return null;
+			});
+			await().atMost(Duration.ofSeconds(2)).until(() -> waiting(RequestPriority.INTERACTIVE) == 1);
+
+			Future<?> sameUser = callers.submit(() -> {
+				scheduler.acquire("bob", RequestPriority.BACKGROUND, 1);
+				return null;
+			});
+			Future<?> otherUser = callers.submit(() -> {
+				scheduler.acquire("alice", RequestPriority.BACKGROUND, 1);
+				return null;
+			});
+
+			otherUser.get(1, TimeUnit.SECONDS);
+			Thread.sleep(200);
+			assertThat(sameUser).isNotDone();
+
+			interactive.cancel(true);
+			sameUser.get(1, TimeUnit.SECONDS);
+		}
+	}
+
+	private double waiting(RequestPriority priority) {
+		return meterRegistry.get("google.api.quota.waiting").tag("priority", priority.name().toLowerCase()).gauge().value();
+	}
+}
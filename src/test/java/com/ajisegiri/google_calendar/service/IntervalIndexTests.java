@@ -0,0 +1,53 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntervalIndexTests {
+
+	record Interval(int id, long start, long end) {
+	}
+
+	@Test
+	void overlappingMatchesLinearScanInStartOrder() {
+		Random random = new Random(7);
+		List<Interval> intervals = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			long start = random.nextInt(100_000);
+			intervals.add(new Interval(i, start, start + random.nextInt(random.nextInt(50) == 0 ? 20_000 : 500)));
+		}
+		IntervalIndex<Interval> index = IntervalIndex.build(intervals, Interval::start, Interval::end,
+				Comparator.comparingInt(Interval::id));
+
+		for (int q = 0; q < 500; q++) {
+			long from = random.nextInt(100_000);
+			long to = from + random.nextInt(5_000);
+			List<Interval> expected = intervals.stream()
+					.filter(interval -> interval.start() < to && interval.end() > from)
+					.sorted(Comparator.comparingLong(Interval::start).thenComparingInt(Interval::id))
+					.toList();
+			assertThat(index.overlapping(from, to)).containsExactlyElementsOf(expected);
+		}
+	}
+
+	@Test
+	void startingWithinIsHalfOpen() {
+		List<Interval> intervals = List.of(new Interval(1, 10, 20), new Interval(2, 20, 30), new Interval(3, 30, 40));
+		IntervalIndex<Interval> index = IntervalIndex.build(intervals, Interval::start, Interval::end,
+				Comparator.comparingInt(Interval::id));
+
+		assertThat(index.startingWithin(10, 30)).extracting(Interval::id).containsExactly(1, 2);
+		assertThat(index.overlapping(20, 30)).extracting(Interval::id).containsExactly(2);
+	}
+
+	@Test
+	void emptyIndexReturnsNothing() {
+		assertThat(IntervalIndex.<Interval>empty().overlapping(0, Long.MAX_VALUE)).isEmpty();
+	}
+}
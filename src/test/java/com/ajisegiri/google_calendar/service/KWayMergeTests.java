@@ -0,0 +1,56 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KWayMergeTests {
+
+	record Item(String key, long start, int source) {
+	}
+
+	private static final Comparator<Item> BY_START = Comparator.comparingLong(Item::start);
+
+	@Test
+	void mergeMatchesStableSortWithFirstOccurrenceKept() {
+		Random random = new Random(11);
+		List<List<Item>> lists = new ArrayList<>();
+		for (int source = 0; source < 6; source++) {
+			List<Item> items = new ArrayList<>();
+			for (int i = 0; i < 300; i++) {
+				long start = random.nextInt(10_000);
+				// Shared keys across sources stand in for events on several calendars
+				items.add(new Item("k" + start % 997, start, source));
+			}
+			items.sort(BY_START);
+			lists.add(items);
+		}
+
+		Map<String, Item> expected = new LinkedHashMap<>();
+		lists.stream().flatMap(List::stream)
+				.sorted(BY_START.thenComparingInt(Item::source))
+				.forEach(item -> expected.putIfAbsent(item.key(), item));
+
+		assertThat(KWayMerge.merge(lists, BY_START, Item::key, Integer.MAX_VALUE))
+				.containsExactlyElementsOf(expected.values());
+	}
+
+	@Test
+	void stopsAtLimitAndSkipsEmptyLists() {
+		List<List<Item>> lists = List.of(
+				List.of(),
+				List.of(new Item("a", 1, 1), new Item("c", 3, 1)),
+				List.of(new Item("a", 1, 2), new Item("b", 2, 2), new Item("d", 4, 2)));
+
+		assertThat(KWayMerge.merge(lists, BY_START, Item::key, 3))
+				.extracting(Item::key)
+				.containsExactly("a", "b", "c");
+	}
+}
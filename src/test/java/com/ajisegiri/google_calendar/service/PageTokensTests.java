@@ -0,0 +1,27 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageTokensTests {
+
+	@Test
+	void missingTokenIsFirstPage() {
+		assertThat(PageTokens.offset(null)).isZero();
+		assertThat(PageTokens.offset(" ")).isZero();
+	}
+
+	@Test
+	void offsetTokenIsParsed() {
+		assertThat(PageTokens.offset("40")).isEqualTo(40);
+	}
+
+	@Test
+	void foreignOrNegativeTokensAreRejected() {
+		assertThatThrownBy(() -> PageTokens.offset("CiAKGjBpNDd2")).isInstanceOf(PageTokens.InvalidPageTokenException.class);
+		assertThatThrownBy(() -> PageTokens.offset("-1")).isInstanceOf(PageTokens.InvalidPageTokenException.class);
+		assertThatThrownBy(() -> PageTokens.offset("99999999999")).isInstanceOf(PageTokens.InvalidPageTokenException.class);
+	}
+}
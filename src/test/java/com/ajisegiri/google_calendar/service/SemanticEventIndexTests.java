@@ -0,0 +1,81 @@
+package com.ajisegiri.google_calendar.service;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+
+class SemanticEventIndexTests {
+
+	private static final long HOUR = Duration.ofHours(1).toMillis();
+	private static final long DAY_START = Instant.parse("2026-10-17T00:00:00Z").toEpochMilli();
+
+	@SuppressWarnings("unchecked")
+	private final SemanticEventIndex index = new SemanticEventIndex(mock(ObjectProvider.class), new SimpleMeterRegistry(),
+			"hashing", 384, 0.3, 1000);
+
+	@AfterEach
+	void tearDown() {
+		index.destroy();
+	}
+
+	@Test
+	void windowIsAppliedBeforeTopK() {
+		CalendarReplica replica = new CalendarReplica("scope", "primary", index.listener("scope", "primary"));
+		// Twenty matching standups on earlier days, one in the searched day
+		for (int day = 1; day <= 20; day++) {
+			replica.apply(event("old" + day, "Team standup", DAY_START - day * 24 * HOUR));
+		}
+		replica.apply(event("today", "Team standup", DAY_START + 9 * HOUR));
+		replica.apply(event("other", "Dentist appointment", DAY_START + 11 * HOUR));
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(index.search("scope", "primary", "standup", Long.MIN_VALUE, Long.MAX_VALUE, 100)).hasSize(21));
+
+		assertThat(index.search("scope", "primary", "standup", DAY_START, DAY_START + 24 * HOUR, 5))
+				.containsExactly("today");
+	}
+
+	@Test
+	void removedAndClearedEventsLeaveTheIndex() {
+		CalendarReplica replica = new CalendarReplica("scope", "primary", index.listener("scope", "primary"));
+		replica.apply(event("a", "Quarterly planning", DAY_START + 9 * HOUR));
+		replica.apply(event("b", "Planning review", DAY_START + 10 * HOUR));
+		replica.remove("a");
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(index.search("scope", "primary", "planning", DAY_START, DAY_START + 24 * HOUR, 10))
+						.containsExactly("b"));
+
+		replica.reset();
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(index.search("scope", "primary", "planning", DAY_START, DAY_START + 24 * HOUR, 10)).isEmpty());
+	}
+
+	@Test
+	void replicasInOtherScopesAreNotSearched() {
+		CalendarReplica replica = new CalendarReplica("writer", "team", index.listener("writer", "team"));
+		replica.apply(event("a", "Budget review", DAY_START + 9 * HOUR));
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(index.search("writer", "team", "budget", DAY_START, DAY_START + 24 * HOUR, 10)).containsExactly("a"));
+		assertThat(index.search("reader", "team", "budget", DAY_START, DAY_START + 24 * HOUR, 10)).isEmpty();
+	}
+
+	static Event event(String id, String summary, long startMillis) {
+		return new Event().setId(id).setSummary(summary)
+				.setStart(new EventDateTime().setDateTime(new DateTime(startMillis)))
+				.setEnd(new EventDateTime().setDateTime(new DateTime(startMillis + HOUR)));
+	}
+}
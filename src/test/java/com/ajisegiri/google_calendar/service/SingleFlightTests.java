@@ -0,0 +1,90 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTests {
+
+	private final SingleFlight<String, String> flights = new SingleFlight<>();
+	private final AtomicInteger calls = new AtomicInteger();
+
+	@Test
+	void concurrentCallersShareOneCall() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<String> leader = executor.submit(() -> flights.run("week", () -> {
+				calls.incrementAndGet();
+				started.countDown();
+				await(release);
+				return "events";
+			}));
+			started.await();
+			Future<String> follower = executor.submit(() -> flights.run("week", () -> {
+				calls.incrementAndGet();
+				return "other";
+			}));
+			waitForFollower();
+			release.countDown();
+
+			assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("events");
+			assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("events");
+		}
+		assertThat(calls).hasValue(1);
+		assertThat(flights.inFlight()).isZero();
+	}
+
+	@Test
+	void failureIsSharedAndNotKept() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<String> leader = executor.submit(() -> flights.run("week", () -> {
+				started.countDown();
+				await(release);
+				throw new IOException("quota");
+			}));
+			started.await();
+			Future<String> follower = executor.submit(() -> flights.run("week", () -> "unused"));
+			waitForFollower();
+			release.countDown();
+
+			assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("quota");
+			assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("quota");
+		}
+		assertThat(flights.run("week", () -> "retried")).isEqualTo("retried");
+	}
+
+	@Test
+	void differentKeysRunSeparately() throws IOException {
+		assertThat(flights.run("week", () -> "a" + calls.incrementAndGet())).isEqualTo("a1");
+		assertThat(flights.run("month", () -> "b" + calls.incrementAndGet())).isEqualTo("b2");
+		assertThat(flights.run("week", () -> "a" + calls.incrementAndGet())).isEqualTo("a3");
+	}
+
+	private void waitForFollower() {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (flights.followers() < 1) {
+			assertThat(System.nanoTime()).as("follower joined in time").isLessThan(deadline);
+			Thread.yield();
+		}
+	}
+
+	private static void await(CountDownLatch latch) throws IOException {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+	}
+}
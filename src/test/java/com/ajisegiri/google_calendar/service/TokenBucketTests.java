@@ -0,0 +1,58 @@
+package com.ajisegiri.google_calendar.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTests {
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	void burstThenRefillAtRate() {
+		TokenBucket bucket = new TokenBucket(10, 5, now::get);
+		for (int i = 0; i < 10; i++) {
+			assertThat(bucket.tryAcquire(1, 0)).isZero();
+		}
+		assertThat(bucket.tryAcquire(1, 0)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+		assertThat(bucket.tryAcquire(1, 0)).isZero();
+	}
+
+	@Test
+	void lowerPrioritiesLeaveTheReservedShare() {
+		TokenBucket bucket = new TokenBucket(10, 5, now::get);
+		int background = 0;
+		while (bucket.tryAcquire(1, RequestPriority.BACKGROUND.reservedFraction()) == 0) {
+			background++;
+		}
+		assertThat(background).isEqualTo(7);
+		assertThat(bucket.tryAcquire(1, RequestPriority.INTERACTIVE.reservedFraction())).isZero();
+	}
+
+	@Test
+	void batchCostIsCappedAtCapacity() {
+		TokenBucket bucket = new TokenBucket(10, 5, now::get);
+		assertThat(bucket.tryAcquire(50, RequestPriority.PREFETCH.reservedFraction())).isZero();
+		assertThat(bucket.available()).isZero();
+	}
+
+	@Test
+	void throttlingPausesAndHalvesTheRateUntilSuccessesRestoreIt() {
+		TokenBucket bucket = new TokenBucket(10, 8, now::get);
+		bucket.onThrottled(TimeUnit.SECONDS.toNanos(2));
+		assertThat(bucket.rate()).isEqualTo(4);
+		assertThat(bucket.tryAcquire(1, 0)).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertThat(bucket.tryAcquire(1, 0)).isZero();
+		for (int i = 0; i < 100; i++) {
+			bucket.onSuccess();
+		}
+		assertThat(bucket.rate()).isEqualTo(8);
+	}
+}